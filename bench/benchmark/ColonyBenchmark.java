@@ -0,0 +1,251 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks for advancing, loading, saving and populating
+ * a Colony. Build and run them with:
+ * <pre>
+ * mvn -P jmh package
+ * java -jar target/benchmarks.jar
+ * </pre>
+ * Each benchmark counts the cells it goes through in an auxiliary
+ * counter, so that JMH reports "cells" in cells per second next to
+ * the raw operations per second. The save files are looked up in the
+ * directory given by the life.dir property, by default the current one.
+ *
+ * JMH does not allow benchmarks in the default package, where the
+ * game itself is, so the Colony methods are called through method
+ * handles that are looked up once per trial.
+ */
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ColonyBenchmark
+{
+	private static final Class<?> COLONY = colonyClass ("Colony");
+	private static final Class<?> ENGINE = colonyClass ("Colony$Engine");
+	private static final Class<?> VIEW = colonyClass ("Colony$View");
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup ();
+
+	/** Counts the cells processed by each benchmark. JMH reports
+	 * the public fields of this class as rates.
+	 */
+	@AuxCounters (AuxCounters.Type.OPERATIONS)
+	@State (Scope.Thread)
+	public static class Cells
+	{
+		public long cells;
+
+		@Setup (Level.Iteration)
+		public void reset ()
+		{
+			cells = 0;
+		}
+	}
+
+	/** A random soup to be advanced one generation at a time.
+	 * A soup gets faster to advance as it dies down, so every
+	 * iteration starts from a fresh one. Once the soup settles into
+	 * a cycle, advancing it would only skip ahead, so the benchmark
+	 * itself also populates it again then, since setting up before
+	 * every invocation would cost more than the short calls being
+	 * timed.
+	 */
+	@State (Scope.Thread)
+	public static class Soup
+	{
+		@Param ({"100", "1024", "4096", "8192"})
+		public int size;
+
+		@Param ({"0.05", "0.3", "0.5"})
+		public double density;
+
+		@Param ({"BITBOARD", "VECTOR"})
+		public String engine;
+
+		Object colony;
+		MethodHandle advance;
+		MethodHandle populate;
+		MethodHandle getPeriod;
+
+		@Setup (Level.Trial)
+		public void create () throws Throwable
+		{
+			colony = newColony (density, size, size);
+			handle ("setEngine", MethodType.methodType (void.class, ENGINE)).invoke (colony, engine (engine));
+			advance = handle ("advance", MethodType.methodType (void.class)).bindTo (colony);
+			populate = handle ("populate", MethodType.methodType (void.class, double.class)).bindTo (colony);
+			getPeriod = handle ("getPeriod", MethodType.methodType (int.class)).bindTo (colony);
+		}
+
+		@Setup (Level.Iteration)
+		public void refresh () throws Throwable
+		{
+			populate.invokeExact (density);
+		}
+	}
+
+	/** One of the bundled save files, loaded into a colony.
+	 */
+	@State (Scope.Thread)
+	public static class Save
+	{
+		@Param ({"1561.txt", "Test.txt"})
+		public String file;
+
+		String text;
+		Object colony;
+		long cells;
+		MethodHandle load;
+		MethodHandle toString;
+
+		@Setup (Level.Trial)
+		public void read () throws Throwable
+		{
+			byte[] bytes = Files.readAllBytes (Paths.get (System.getProperty ("life.dir", "."), file));
+			text = new String (bytes, StandardCharsets.UTF_8);
+
+			colony = newColony (0, 1, 1);
+			load = handle ("load", MethodType.methodType (VIEW, String.class)).bindTo (colony)
+				.asType (MethodType.methodType (void.class, String.class)); // the view is not needed
+			toString = handle ("toString", MethodType.methodType (String.class)).bindTo (colony);
+			load.invokeExact (text);
+
+			int width = (int) handle ("getWidth", MethodType.methodType (int.class)).bindTo (colony).invokeExact ();
+			int height = (int) handle ("getHeight", MethodType.methodType (int.class)).bindTo (colony).invokeExact ();
+			cells = (long) width * height;
+		}
+	}
+
+	/** An empty colony to be populated at random.
+	 */
+	@State (Scope.Thread)
+	public static class Field
+	{
+		@Param ({"1024"})
+		public int size;
+
+		@Param ({"0.05", "0.3", "0.5"})
+		public double density;
+
+		MethodHandle populate;
+
+		@Setup (Level.Trial)
+		public void create () throws Throwable
+		{
+			Object colony = newColony (0, size, size);
+			populate = handle ("populate", MethodType.methodType (void.class, double.class)).bindTo (colony);
+		}
+	}
+
+	@Benchmark
+	public void advance (Soup soup, Cells cells) throws Throwable
+	{
+		soup.advance.invokeExact ();
+		cells.cells += (long) soup.size * soup.size;
+
+		// Populating takes about as long as a few generations, and only
+		// happens once the soup has died down
+
+		if ((int) soup.getPeriod.invokeExact () > 0)
+			soup.populate.invokeExact (soup.density);
+	}
+
+	@Benchmark
+	public void load (Save save, Cells cells) throws Throwable
+	{
+		save.load.invokeExact (save.text);
+		cells.cells += save.cells;
+	}
+
+	@Benchmark
+	public String toString (Save save, Cells cells) throws Throwable
+	{
+		cells.cells += save.cells;
+		return (String) save.toString.invokeExact ();
+	}
+
+	@Benchmark
+	public void populate (Field field, Cells cells) throws Throwable
+	{
+		field.populate.invokeExact (field.density);
+		cells.cells += (long) field.size * field.size;
+	}
+
+	/** Finds Colony or one of its nested classes, which are in the
+	 * default package.
+	 *
+	 * @param name	the binary name of the class
+	 * @return the class
+	 */
+	private static Class<?> colonyClass (String name)
+	{
+		try
+		{
+			return Class.forName (name);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IllegalStateException (name + " is not on the class path", e);
+		}
+	}
+
+	/** Gets one of the engines of Colony by name.
+	 *
+	 * @param name	the name of the engine
+	 * @return the engine
+	 */
+	private static Object engine (String name) throws Throwable
+	{
+		return LOOKUP.findStatic (ENGINE, "valueOf", MethodType.methodType (ENGINE, String.class)).invoke (name);
+	}
+
+	/** Creates a colony through its (density, width, height) constructor.
+	 *
+	 * @param density	the probability of a cell being alive
+	 * @param width		the width of the colony
+	 * @param height	the height of the colony
+	 * @return the colony
+	 */
+	private static Object newColony (double density, int width, int height) throws Throwable
+	{
+		MethodHandle create = LOOKUP.findConstructor (COLONY,
+				MethodType.methodType (void.class, double.class, int.class, int.class));
+		return create.invoke (density, width, height);
+	}
+
+	/** Looks up a public method of Colony, with the colony as its
+	 * first parameter, ready to be bound to a particular colony.
+	 *
+	 * @param name	the name of the method
+	 * @param type	the type of the method, without the colony
+	 * @return the method handle, typed to take any Object as the colony
+	 */
+	private static MethodHandle handle (String name, MethodType type) throws Throwable
+	{
+		MethodHandle handle = LOOKUP.findVirtual (COLONY, name, type);
+		return handle.asType (handle.type ().changeParameterType (0, Object.class));
+	}
+}
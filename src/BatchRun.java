@@ -0,0 +1,142 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/** Runs a colony from a save file without any user interface, for
+ * batch jobs on machines without a display. The colony is loaded,
+ * advanced by the given number of generations as fast as possible,
+ * and saved again, and the time taken is printed along with the
+ * throughput in generations per second, and for a bounded colony in
+ * cells per second. An unbounded colony has no fixed area to count
+ * cells over, so its population is printed instead.
+ * <pre>
+ * java -cp bin LifeSimulation input.txt generations [engine [threads [output.txt]]]
+ * </pre>
+ * The engine is one of BITBOARD, VECTOR or HASHLIFE, and defaults to
+ * BITBOARD. HASHLIFE only jumps unbounded saves; bounded ones are
+ * stepped as with BITBOARD, so every engine gives the same result.
+ * The number of threads defaults to 1. If no output file is given,
+ * the result is written next to the input, with the final iteration
+ * added to its name. Binary saves are told apart from text saves by
+ * their first bytes, and inputs ending with .rle are read as RLE
+ * patterns. The result is written as a binary save if the output
+ * file ends with .life, which is the default for a binary input, as
+ * an RLE pattern if it ends with .rle, and as a text save otherwise.
+ */
+public class BatchRun
+{
+	public static void main (String[] args)
+	{
+		System.setProperty ("java.awt.headless", "true");
+
+		if (args.length < 2 || args.length > 5)
+		{
+			System.err.println ("Usage: LifeSimulation input.txt generations [engine [threads [output.txt]]]");
+			System.err.println ("Engines: BITBOARD, VECTOR, HASHLIFE");
+			System.exit (2);
+		}
+
+		try
+		{
+			File input = new File (args[0]);
+			long generations = Long.parseLong (args[1]);
+			Colony.Engine engine = args.length > 2 ? Colony.Engine.valueOf (args[2].toUpperCase ()) : Colony.Engine.BITBOARD;
+			int threads = args.length > 3 ? Integer.parseInt (args[3]) : 1;
+
+			// Load the colony
+
+			Colony colony = new Colony (0, 0);
+			boolean binary = false;
+			try (InputStream in = new BufferedInputStream (new FileInputStream (input), 1 << 16))
+			{
+				binary = Colony.isBinary (in);
+				if (binary)
+					colony.setView (colony.loadBinary (in));
+				else if (input.getName ().toLowerCase ().endsWith (".rle"))
+					colony.loadRLE (in);
+				else
+					colony.setView (colony.load (in));
+			}
+			catch (IOException e)
+			{
+				throw new IOException ("Could not read file: " + input, e);
+			}
+			catch (Exception e)
+			{
+				String where = binary ? ": " : " at line and column ";
+				throw new IllegalArgumentException ("Corrupt save file" + where + e.getMessage (), e);
+			}
+
+			colony.setEngine (engine);
+			colony.setParallelism (threads);
+
+			File output = args.length > 4 ? new File (args[4]) : outputFor (input, colony.getItt () + generations, binary);
+
+			// Run it
+
+			long start = System.nanoTime ();
+			colony.advance (generations);
+			double seconds = (System.nanoTime () - start) / 1e9;
+
+			colony.setParallelism (1);
+			try (OutputStream out = new FileOutputStream (output))
+			{
+				if (output.getName ().endsWith (".life"))
+					colony.writeBinary (out, Colony.Compression.DEFLATE);
+				else if (output.getName ().endsWith (".rle"))
+					colony.writeRLE (new BufferedWriter (new OutputStreamWriter (out, StandardCharsets.UTF_8), 1 << 16));
+				else
+					colony.writeTo (out);
+			}
+
+			// Report the throughput; the grid of an unbounded colony is only a window
+
+			double cells = (double) colony.getWidth () * colony.getHeight ();
+			if (colony.getBoundary () == Colony.Boundary.UNBOUNDED)
+				System.out.printf ("%s: unbounded, %d live cells, %s, %d thread(s)%n", input, colony.getPopulation (), engine, threads);
+			else
+				System.out.printf ("%s: %d x %d, %s, %d thread(s)%n", input, colony.getWidth (), colony.getHeight (), engine, threads);
+			System.out.printf ("%d generations in %.3f s%n", generations, seconds);
+			if (colony.getBoundary () == Colony.Boundary.UNBOUNDED)
+				System.out.printf ("%.1f generations/s%n", generations / seconds);
+			else
+				System.out.printf ("%.1f generations/s, %.4g cells/s%n", generations / seconds, generations * cells / seconds);
+			if (colony.getPeriod () > 0)
+				System.out.printf ("stable since iteration %d, period %d%n", colony.getCycleStart (), colony.getPeriod ());
+			System.out.println ("Wrote " + output);
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println ("Error: Invalid number. " + e.getMessage ());
+			System.exit (2);
+		}
+		catch (Exception e)
+		{
+			System.err.println ("Error: " + e.getMessage ());
+			System.exit (1);
+		}
+	}
+
+	/** Works out where to write the result of a run by default,
+	 * by adding the final iteration to the name of the input.
+	 *
+	 * @param input			the save file that was loaded
+	 * @param iteration		the iteration reached
+	 * @param binary		whether to write a binary save
+	 * @return the file to write to
+	 */
+	private static File outputFor (File input, long iteration, boolean binary)
+	{
+		String name = input.getName ();
+		int dot = name.lastIndexOf ('.');
+		String base = dot > 0 ? name.substring (0, dot) : name;
+		return new File (input.getAbsoluteFile ().getParentFile (), base + "-" + iteration + (binary ? ".life" : ".txt"));
+	}
+}
@@ -0,0 +1,1469 @@
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/** A rectangular grid of cells, packed 64 to a long.
+ *
+ * Each row occupies a whole number of words, so that a row
+ * always starts on a word boundary. Within a word, the cell
+ * in column (64 * w + j) is stored in bit j. The unused bits
+ * at the end of the last word of each row are always kept at 0,
+ * so that they can safely be read as dead neighbours.
+ *
+ * The next generation is computed a word at a time, by treating
+ * the eight neighbours of 64 cells as eight words and adding them
+ * together with bitwise full adders. The resulting counts are then
+ * turned into the next generation by the bitwise formula of a Rule.
+ *
+ * The grid is also divided into tiles of one word by 64 rows, and
+ * each tile is flagged when any of its cells changes, whether by
+ * stepping or by editing. A tile is only recomputed when it or one
+ * of its neighbours changed in the previous generation; otherwise it
+ * is left alone. This relies on the grid being stepped back and forth
+ * with the same partner grid, which then already holds the cells of
+ * every tile that did not change.
+ *
+ * Each tile also keeps a summary of its live cells: how many there are,
+ * which of its rows and which of its columns have any, and a hash of
+ * its words. The population, bounding box and hash of the whole grid
+ * are added up from these, and only the tiles that changed are
+ * summarised again after a step. Stepping is
+ * then limited to the bounding boxes of the current and the previous
+ * generation, plus a margin of one cell, so a small pattern on a large
+ * grid costs little more than the pattern itself.
+ *
+ * The edges of the grid can either be dead or wrap around into a
+ * torus. On a torus, the rows above and below each row are picked
+ * once per row, and only the first and last word of each row need
+ * the cells from the far side of the grid; every other word is
+ * stepped by exactly the same loop as with dead edges.
+ *
+ * The words are normally kept in a long array on the heap. A grid
+ * can instead be kept off the heap, in direct buffers of up to 1 GB
+ * of whole rows each, so that its size is limited by native memory
+ * rather than by the maximum heap size, and the garbage collector
+ * never has to scan it. The buffers can also be mapped from a file,
+ * so that the grid can be larger than physical memory, and only the
+ * rows in use are paged in. Such rows are copied into small arrays on
+ * the heap to be stepped by the same kernel, one row after another,
+ * so that the file is read and written in order.
+ */
+public class BitGrid
+{
+	/** The base 2 logarithm of the number of rows in a tile */
+	private static final int TILE_SHIFT = 6;
+
+	/** The number of rows in a tile */
+	public static final int TILE_ROWS = 1 << TILE_SHIFT;
+
+	/** Whether the incubating Vector API can be used by VectorKernel */
+	public static final boolean VECTOR_API = isVectorApiPresent ();
+
+	private final int width;
+	private final int height;
+	private final int stride;
+	private final long lastMask;
+
+	/** The most words kept in a single off-heap buffer */
+	private static final int SLAB_WORDS = 1 << 27;
+
+	private final long[] words;
+	private final LongBuffer[] slabs;
+	private final int slabRows;
+	private final long[] blank;
+
+	/** The rows that stepBuffered works in, for each band by its first tile row */
+	private final long[][][] scratch;
+
+	private final int tileRows;
+	private final boolean[] changed;
+	private final boolean[] active;
+
+	private final long[] tileCols;
+	private final long[] tileRowBits;
+	private final int[] tilePop;
+	private final long[] tileHash;
+
+	private long population = 0;
+	private boolean populationStale = false;
+	private int top, left, bottom, right;
+	private boolean boundsStale = false;
+	private final boolean[] unsummarized;
+	private boolean summariesStale = false;
+
+	private int stepTop, stepBottom, stepLeft, stepRight;
+
+	/** Creates an empty grid with the specified dimensions.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @throws IllegalArgumentException if either dimension is negative
+	 */
+	public BitGrid (int width, int height)
+	{
+		this (width, height, false);
+	}
+
+	/** Creates an empty grid with the specified dimensions, either
+	 * on the heap or off the heap.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @param offHeap	true to keep the cells in direct buffers
+	 * @throws IllegalArgumentException if either dimension is negative
+	 * @throws OutOfMemoryError if there is not enough native memory
+	 */
+	public BitGrid (int width, int height, boolean offHeap)
+	{
+		this (width, height, offHeap ? allocate (width, height) : null);
+	}
+
+	/** Creates an empty grid with the specified dimensions, whose cells
+	 * are kept in the given file, mapped into memory. The file is
+	 * overwritten, and grown to the size of the grid. Only the parts
+	 * of the file that are in use need to be in memory, so the grid 
+	 * can be larger than the physical memory of the machine.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @param file		the file in which to keep the cells
+	 * @throws IllegalArgumentException if either dimension is negative
+	 * @throws IOException if the file could not be mapped
+	 */
+	public BitGrid (int width, int height, File file) throws IOException
+	{
+		this (width, height, map (width, height, file));
+	}
+
+	/** Creates an empty grid with the specified dimensions, whose cells
+	 * are kept in the given buffers, or on the heap if there are none.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @param slabs		the buffers of rows, or null
+	 * @throws IllegalArgumentException if either dimension is negative
+	 */
+	private BitGrid (int width, int height, LongBuffer[] slabs)
+	{
+		checkSize (width, height);
+
+		this.width = width;
+		this.height = height;
+		stride = (width + 63) >>> 6;
+		lastMask = (width & 63) == 0 ? -1L : (1L << width) - 1;
+		blank = new long [stride];
+
+		this.slabs = slabs;
+		slabRows = slabRows (width);
+		words = slabs == null ? new long [stride * height] : null;
+
+		tileRows = (height + (1 << TILE_SHIFT) - 1) >>> TILE_SHIFT;
+		changed = new boolean [tileRows * stride];
+		scratch = new long [tileRows][][];
+		active = new boolean [tileRows * stride];
+		tileCols = new long [tileRows * stride];
+		tileRowBits = new long [tileRows * stride];
+		tilePop = new int [tileRows * stride];
+		tileHash = new long [tileRows * stride];
+		unsummarized = new boolean [tileRows * stride];
+		emptyBounds ();
+		markAll ();
+	}
+
+	/** Replaces some of the cells of a row with the given packed
+	 * cells, word by word: where a bit of the mask is set, the cell
+	 * is taken from the bits, and elsewhere it is left alone. Bits
+	 * past the last column are ignored.
+	 *
+	 * Unlike setCell and setWord, this does not summarise the tiles
+	 * it writes straight away, but only the next time the population
+	 * or the bounding box is needed. So different threads may blend
+	 * different rows at the same time, as long as nothing else reads
+	 * or writes the grid until they are all done.
+	 *
+	 * @param row	the row to write
+	 * @param bits	the packed cells, one word for each word of the row
+	 * @param mask	the cells to replace, or null to replace all of them
+	 */
+	public void blendRow (int row, long[] bits, long[] mask)
+	{
+		for (int w = 0; w < stride; w++)
+		{
+			long m = mask == null ? -1L : mask[w];
+			if (w == stride - 1)
+				m &= lastMask;
+			if (m == 0)
+				continue;
+
+			long old = getWord (row, w);
+			blendWord (row, w, old, old & ~m | bits[w] & m);
+		}
+	}
+
+	/** Sets every cell of this grid to dead.
+	 */
+	public void clear ()
+	{
+		if (words != null)
+			Arrays.fill (words, 0);
+		else
+			for (int row = 0; row < height; row++)
+				writeRow (row, blank);
+
+		Arrays.fill (tileCols, 0);
+		Arrays.fill (tileRowBits, 0);
+		Arrays.fill (tilePop, 0);
+		Arrays.fill (tileHash, 0);
+		Arrays.fill (unsummarized, false);
+		summariesStale = false;
+		population = 0;
+		populationStale = false;
+		emptyBounds ();
+		markAll ();
+	}
+
+	/** Copies a rectangle of cells into a new pattern, a word at a
+	 * time. Cells of the rectangle outside of this grid are dead.
+	 *
+	 * @param row		the top row of the rectangle
+	 * @param col		the left column of the rectangle
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @return the pattern
+	 */
+	public Pattern copy (int row, int col, int width, int height)
+	{
+		Pattern pattern = new Pattern (width, height);
+
+		for (int r = 0; r < height; r++)
+		{
+			long y = (long) row + r;
+			if (y < 0 || y >= this.height)
+				continue;
+
+			for (int w = 0; w < pattern.getStride (); w++)
+				pattern.setWord (r, w, getBits ((int) y, col + 64L * w));
+		}
+		return pattern;
+	}
+
+	/** Copies the cells of the given grid into this one, using (0,0)
+	 * as an anchor point. Cells of the source that fall outside of this
+	 * grid are dropped, and cells of this grid that fall outside of the
+	 * source are set to dead.
+	 *
+	 * @param src	the grid to copy from
+	 */
+	public void copyFrom (BitGrid src)
+	{
+		int rows = Math.min (height, src.height);
+		int count = Math.min (stride, src.stride);
+		long[] buffer = new long [Math.max (stride, src.stride)];
+
+		clear ();
+		for (int row = 0; row < rows; row++)
+		{
+			src.readRow (row, buffer);
+			Arrays.fill (buffer, count, buffer.length, 0);
+			if (count > 0)
+				buffer[count - 1] &= count == stride ? lastMask : -1L;
+			writeRow (row, buffer);
+		}
+
+		for (int tile = 0; tile < tilePop.length; tile++)
+			summarize (tile);
+		populationStale = true;
+		boundsStale = true;
+	}
+
+	/** Inverts the state of the cell at the specified location.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	public void flipCell (int row, int col)
+	{
+		setCell (row, col, !getCell (row, col));
+	}
+
+	/** Gets the smallest rectangle that contains every live cell,
+	 * with x as the column and y as the row. This takes constant time,
+	 * except after stepping or after killing a cell on the edge of the
+	 * rectangle, when it is worked out again from the summaries of the
+	 * tiles.
+	 *
+	 * @return the bounding box, or null if there are no live cells
+	 */
+	public Rectangle getBounds ()
+	{
+		updateBounds ();
+		if (bottom < top)
+			return null;
+		return new Rectangle (left, top, right - left + 1, bottom - top + 1);
+	}
+
+	/** Gets the cell at the specified location.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return true if the cell is alive; false otherwise
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	public boolean getCell (int row, int col)
+	{
+		return (getWord (row, index (row, col)) >>> col & 1) != 0;
+	}
+
+	/** Copies the words of a row into the start of the given array.
+	 *
+	 * @param row	the row to read
+	 * @param dst	the array to copy into, of at least stride words
+	 */
+	public void getRow (int row, long[] dst)
+	{
+		readRow (row, dst);
+	}
+
+	/** Gets the number of live cells. This takes constant time,
+	 * except after stepping, when the populations of the tiles
+	 * are added up again.
+	 *
+	 * @return the population
+	 */
+	public long getPopulation ()
+	{
+		flushSummaries ();
+		if (populationStale)
+		{
+			population = 0;
+			for (int pop : tilePop)
+				population += pop;
+			populationStale = false;
+		}
+		return population;
+	}
+
+	/** Gets the number of rows in this grid.
+	 *
+	 * @return the height of this grid
+	 */
+	public int getHeight ()
+	{
+		return height;
+	}
+
+	/** Gets the number of tiles that the grid is divided into.
+	 *
+	 * @return the number of tiles
+	 */
+	public int getTileCount ()
+	{
+		return changed.length;
+	}
+
+	/** Gets the number of words used to store each row.
+	 *
+	 * @return the number of words per row
+	 */
+	public int getStride ()
+	{
+		return stride;
+	}
+
+	/** Gets the number of columns in this grid.
+	 *
+	 * @return the width of this grid
+	 */
+	public int getWidth ()
+	{
+		return width;
+	}
+
+	/** Gets the packed word holding the cells in columns
+	 * 64 * w to 64 * w + 63 of the given row.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @return the packed cells
+	 */
+	public long getWord (int row, int w)
+	{
+		if (words != null)
+			return words[row * stride + w];
+		return slabs[row / slabRows].get ((row % slabRows) * stride + w);
+	}
+
+	/** Determines whether any cell of the given tile changed in the
+	 * generation this grid was stepped into, or was edited since.
+	 * The tiles are numbered a row of tiles at a time, with one tile
+	 * for each word of a row, each TILE_ROWS rows high. Every tile is
+	 * flagged when the grid is created or cleared.
+	 *
+	 * @param tile	the index of the tile
+	 * @return true if the tile may have changed; false otherwise
+	 * @see #TILE_ROWS
+	 */
+	public boolean isChanged (int tile)
+	{
+		return changed[tile];
+	}
+
+	/** Determines whether this grid is kept off the heap.
+	 *
+	 * @return true if the cells are in direct buffers; false otherwise
+	 */
+	public boolean isOffHeap ()
+	{
+		return words == null;
+	}
+
+	/** Computes a 64-bit hash of the cells of this grid. Grids with
+	 * the same dimensions and cells always have the same hash, and grids
+	 * that differ are very unlikely to. Since each word is mixed with its
+	 * position on its own, and the results are added up, the hashes of
+	 * the tiles are kept along with their other summaries, so this only
+	 * adds up one number per tile rather than reading every word.
+	 *
+	 * @return the hash of the cells
+	 */
+	public long hashCells ()
+	{
+		flushSummaries ();
+
+		long h = (long) width << 32 | height;
+		for (long tile : tileHash)
+			h += tile;
+		h *= 0xD6E8FEB86659FD93L;
+		return h ^ h >>> 32;
+	}
+
+	/** Sets the state of the cell at the specified location.
+	 *
+	 * @param row		the row of the cell
+	 * @param col		the column of the cell
+	 * @param state		the state to which to set the cell
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	public void setCell (int row, int col, boolean state)
+	{
+		int w = index (row, col);
+		long word = getWord (row, w);
+		long bit = 1L << col;
+		if (((word & bit) != 0) == state)
+			return;
+
+		int tile = (row >>> TILE_SHIFT) * stride + w;
+		changed[tile] = true;
+
+		if (state)
+		{
+			putWord (row, w, word | bit);
+			tileCols[tile] |= bit;
+			tileRowBits[tile] |= 1L << row;
+			tilePop[tile]++;
+			tileHash[tile] += mix (row, w, word | bit) - mix (row, w, word);
+			population++;
+			extendBounds (row, col, row, col);
+		}
+		else
+		{
+			putWord (row, w, word & ~bit);
+			summarize (tile);
+			population--;
+			boundsStale = true;
+		}
+	}
+
+	/** Pastes a pattern into this grid, a word at a time, combining
+	 * its cells with the cells under them in the given way. Cells of
+	 * the pattern that fall outside of this grid are dropped.
+	 *
+	 * Like blendRow, this leaves the summaries of the tiles it writes
+	 * until the population or the bounding box is next needed.
+	 *
+	 * @param pattern	the pattern to paste
+	 * @param row		the row at which to put the top of the pattern
+	 * @param col		the column at which to put the left of the pattern
+	 * @param mode		the way in which to combine the cells
+	 */
+	public void paste (Pattern pattern, int row, int col, Pattern.Mode mode)
+	{
+		long from = Math.max (col, 0);
+		long to = Math.min ((long) col + pattern.getWidth (), width);
+		if (from >= to)
+			return;
+
+		int first = (int) (from >>> 6);
+		int last = (int) ((to - 1) >>> 6);
+		long head = -1L << from;
+		long tail = -1L >>> (63 - ((to - 1) & 63));
+
+		for (int r = 0; r < pattern.getHeight (); r++)
+		{
+			long y = (long) row + r;
+			if (y < 0 || y >= height)
+				continue;
+
+			for (int w = first; w <= last; w++)
+			{
+				long mask = (w == first ? head : -1L) & (w == last ? tail : -1L);
+				long cells = pattern.getBits (r, 64L * w - col);
+				long old = getWord ((int) y, w);
+				blendWord ((int) y, w, old, old & ~mask | mode.apply (old, cells) & mask);
+			}
+		}
+	}
+
+	/** Sets the packed word holding the cells in columns
+	 * 64 * w to 64 * w + 63 of the given row. Bits past the
+	 * last column are ignored.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @param bits	the packed cells
+	 */
+	public void setWord (int row, int w, long bits)
+	{
+		long old = getWord (row, w);
+		if (w == stride - 1)
+			bits &= lastMask;
+		putWord (row, w, bits);
+		mark (row, w);
+
+		// Cells that are only born can be added to the summaries directly
+
+		int tile = (row >>> TILE_SHIFT) * stride + w;
+		if ((old & ~bits) == 0)
+		{
+			if (bits != old)
+			{
+				tileCols[tile] |= bits;
+				tileRowBits[tile] |= 1L << row;
+				tilePop[tile] += Long.bitCount (bits) - Long.bitCount (old);
+				tileHash[tile] += mix (row, w, bits) - mix (row, w, old);
+				population += Long.bitCount (bits) - Long.bitCount (old);
+				extendBounds (row, (w << 6) + Long.numberOfTrailingZeros (bits),
+						row, (w << 6) + 63 - Long.numberOfLeadingZeros (bits));
+			}
+		}
+		else
+		{
+			population += summarize (tile);
+			boundsStale = true;
+		}
+	}
+
+	/** Prepares for stepping this grid into the given grid, by working
+	 * out which tiles need to be recomputed. This must be called before
+	 * stepping by bands; stepping the whole grid does it automatically.
+	 *
+	 * @param next	the grid in which the next generation will be stored
+	 * @param torus	true if the edges of the grid wrap around
+	 * @return the number of tiles that will be skipped
+	 * @throws IllegalArgumentException if the dimensions differ
+	 */
+	public int prepareStep (BitGrid next, boolean torus)
+	{
+		if (next.width != width || next.height != height)
+			throw new IllegalArgumentException ("Grid sizes differ");
+
+		limitStep (next, torus);
+
+		int skipped = active.length;
+		Arrays.fill (active, false);
+
+		int tyEnd = stepBottom > stepTop ? ((stepBottom - 1) >>> TILE_SHIFT) + 1 : 0;
+		for (int ty = stepTop >>> TILE_SHIFT; ty < tyEnd; ty++)
+			for (int tx = stepLeft; tx < stepRight; tx++)
+			{
+				boolean busy = false;
+				for (int dy = -1; dy <= 1 && !busy; dy++)
+					for (int dx = -1; dx <= 1 && !busy; dx++)
+					{
+						int y = ty + dy;
+						int x = tx + dx;
+						if (torus)
+						{
+							y = Math.floorMod (y, tileRows);
+							x = Math.floorMod (x, stride);
+						}
+						else if (y < 0 || y >= tileRows || x < 0 || x >= stride)
+							continue;
+						busy = changed[y * stride + x];
+					}
+
+				active[ty * stride + tx] = busy;
+				if (busy)
+					skipped--;
+			}
+
+		Arrays.fill (next.changed, false);
+		next.populationStale = true;
+		next.boundsStale = true;
+		return skipped;
+	}
+
+	/** Works out the part of the grid that needs to be stepped into the
+	 * given grid: the union of the bounding boxes of both grids, with a
+	 * margin of one cell. Cells outside of the first box stay dead, and
+	 * cells outside of the second box are already dead in the given grid.
+	 * On a torus, a margin that crosses an edge takes in the whole width
+	 * or height, since it comes back in on the other side.
+	 *
+	 * @param next	the grid in which the next generation will be stored
+	 * @param torus	true if the edges of the grid wrap around
+	 */
+	private void limitStep (BitGrid next, boolean torus)
+	{
+		// The boxes are read from the fields rather than through getBounds,
+		// so that stepping does not allocate. An empty box has its bottom
+		// above its top, so it drops out of the union by itself
+
+		updateBounds ();
+		next.updateBounds ();
+
+		int boxTop = Math.min (top, next.top);
+		int boxBottom = Math.max (bottom, next.bottom);
+		if (boxBottom < boxTop)
+		{
+			stepTop = stepBottom = stepLeft = stepRight = 0;
+			return;
+		}
+
+		int r0 = boxTop - 1;
+		int r1 = boxBottom + 2;
+		int c0 = Math.min (left, next.left) - 1;
+		int c1 = Math.max (right, next.right) + 2;
+
+		if (torus && (r0 < 0 || r1 > height))
+		{
+			r0 = 0;
+			r1 = height;
+		}
+		if (torus && (c0 < 0 || c1 > width))
+		{
+			c0 = 0;
+			c1 = width;
+		}
+
+		stepTop = Math.max (r0, 0);
+		stepBottom = Math.min (r1, height);
+		stepLeft = Math.max (c0, 0) >>> 6;
+		stepRight = ((Math.min (c1, width) - 1) >>> 6) + 1;
+	}
+
+	/** Computes the next generation of this grid and writes it into
+	 * the given grid, which must have the same dimensions, using
+	 * the given rule. Cells outside of the grid are treated as dead.
+	 * No memory is allocated, so that a pair of grids can be stepped
+	 * back and forth indefinitely without producing any garbage.
+	 *
+	 * @param next	the grid in which to store the next generation
+	 * @param rule	the rule to apply
+	 * @return the number of tiles that were skipped
+	 * @throws IllegalArgumentException if the dimensions differ
+	 */
+	public int step (BitGrid next, Rule rule)
+	{
+		int skipped = prepareStep (next, false);
+		step (next, 0, height, rule, false, false);
+		return skipped;
+	}
+
+	/** Computes the next generation of the given band of rows of this
+	 * grid and writes it into the same rows of the given grid, which
+	 * must have the same dimensions. Rows outside of the band are read
+	 * but never written, so that disjoint bands may be stepped at the
+	 * same time by different threads, as long as they are split at
+	 * multiples of 64 rows so that no tile is shared between them. Only
+	 * the rows and words within the part found by prepareStep are
+	 * stepped, so prepareStep must have been called first. The band can optionally be stepped by the SIMD
+	 * kernel of VectorKernel; the scalar kernel is used instead if
+	 * the Vector API is not available.
+	 *
+	 * If the grid is a torus, the first row is below the last, and
+	 * the first column is to the right of the last. Only the first
+	 * and last word of each row are handled separately, by stepWrapped;
+	 * the words in between go through the same kernel as dead edges.
+	 *
+	 * @param next		the grid in which to store the next generation
+	 * @param fromRow	the first row of the band, inclusive
+	 * @param toRow		the last row of the band, exclusive
+	 * @param rule		the rule to apply
+	 * @param vector	true to use the Vector API if possible
+	 * @param torus		true if the edges of the grid wrap around
+	 * @throws IllegalArgumentException if the dimensions differ
+	 * @see #VECTOR_API
+	 */
+	public void step (BitGrid next, int fromRow, int toRow, Rule rule, boolean vector, boolean torus)
+	{
+		if (next.width != width || next.height != height)
+			throw new IllegalArgumentException ("Grid sizes differ");
+
+		int first = Math.max (fromRow, stepTop);
+		int last = Math.min (toRow, stepBottom);
+
+		if (words == null || next.words == null)
+			stepBuffered (next, fromRow >>> TILE_SHIFT, first, last, rule, vector, torus);
+		else
+		{
+			for (int row = first; row < last; row++)
+			{
+				int above = (row > 0 ? row : height) - 1;
+				int below = row < height - 1 ? row + 1 : 0;
+
+				long[] up = torus || row > 0 ? words : blank;
+				long[] down = torus || row < height - 1 ? words : blank;
+				int upOff = up == words ? above * stride : 0;
+				int downOff = down == words ? below * stride : 0;
+
+				stepRow (row, up, upOff, words, row * stride, down, downOff, next.words, next.changed,
+						rule, vector, torus);
+			}
+		}
+
+		// Summarise the tiles that were stepped, which only this band can have
+		// written; the ones that did not change are the same as in this grid
+
+		if (first < last)
+			for (int ty = first >>> TILE_SHIFT; ty <= (last - 1) >>> TILE_SHIFT; ty++)
+			{
+				for (int tx = stepLeft; tx < stepRight; tx++)
+				{
+					int tile = ty * stride + tx;
+					if (!next.changed[tile] && active[tile])
+					{
+						next.tileCols[tile] = tileCols[tile];
+						next.tileRowBits[tile] = tileRowBits[tile];
+						next.tilePop[tile] = tilePop[tile];
+						next.tileHash[tile] = tileHash[tile];
+					}
+				}
+				next.summarizeRow (ty, stepLeft, stepRight, next.changed);
+			}
+	}
+
+	/** Steps a band of rows like step, for grids that are not both on
+	 * the heap. Each row is read into an array along with the rows
+	 * around it, stepped there, and written back. The rows slide along
+	 * so that each one is only read once, and rows whose tiles are all
+	 * inactive are neither read nor written.
+	 *
+	 * The arrays are kept from one generation to the next, with a set
+	 * for each band, so that stepping allocates nothing once each band
+	 * has been stepped. Since bands are split at multiples of 64 rows,
+	 * the bands stepped at the same time all start in different tiles.
+	 *
+	 * @param next		the grid in which to store the next generation
+	 * @param band		the row of tiles in which the band starts
+	 * @param fromRow	the first row of the band, inclusive
+	 * @param toRow		the last row of the band, exclusive
+	 * @param rule		the rule to apply
+	 * @param vector	true to use the Vector API if possible
+	 * @param torus		true if the edges of the grid wrap around
+	 */
+	private void stepBuffered (BitGrid next, int band, int fromRow, int toRow, Rule rule, boolean vector, boolean torus)
+	{
+		if (fromRow >= toRow)
+			return;
+
+		if (scratch[band] == null)
+			scratch[band] = new long [4][stride];
+
+		long[] up = scratch[band][0];
+		long[] mid = scratch[band][1];
+		long[] down = scratch[band][2];
+		long[] out = scratch[band][3];
+		int loaded = -2;
+
+		for (int row = fromRow; row < toRow; row++)
+		{
+			int tileOff = (row >>> TILE_SHIFT) * stride;
+			boolean busy = false;
+			for (int w = 0; w < stride && !busy; w++)
+				busy = active[tileOff + w];
+			if (!busy)
+				continue;
+
+			int above = (row > 0 ? row : height) - 1;
+			int below = row < height - 1 ? row + 1 : 0;
+
+			// Slide the rows along if the last row was stepped; otherwise start afresh
+
+			if (loaded == row - 1)
+			{
+				long[] temp = up;
+				up = mid;
+				mid = down;
+				down = temp;
+			}
+			else
+			{
+				readRow (above, up);
+				readRow (row, mid);
+				if (!torus && row == 0)
+					Arrays.fill (up, 0);
+			}
+			readRow (below, down);
+			if (!torus && row == height - 1)
+				Arrays.fill (down, 0);
+			loaded = row;
+
+			// Inactive words keep their cells, which the other grid also holds
+
+			System.arraycopy (mid, 0, out, 0, stride);
+			stepRow (row, up, 0, mid, 0, down, 0, out, next.changed, rule, vector, torus);
+			next.writeRow (row, out);
+		}
+	}
+
+	/** Steps a single row with whichever kernel is asked for, and
+	 * then the wrapped words at either end of the row of a torus.
+	 * The next generation is stored at the same offset as the row.
+	 *
+	 * @param row			the index of the row in the grid
+	 * @param up			the words of the row above
+	 * @param upOff			the index of the first word of the row above
+	 * @param mid			the words of the row itself
+	 * @param midOff		the index of the first word of the row itself
+	 * @param down			the words of the row below
+	 * @param downOff		the index of the first word of the row below
+	 * @param out			the array in which to store the next generation
+	 * @param nextChanged	the tile flags of the next generation
+	 * @param rule			the rule to apply
+	 * @param vector		true to use the Vector API if possible
+	 * @param torus			true if the edges of the grid wrap around
+	 */
+	private void stepRow (int row, long[] up, int upOff, long[] mid, int midOff, long[] down, int downOff,
+			long[] out, boolean[] nextChanged, Rule rule, boolean vector, boolean torus)
+	{
+		// Words 0 and (stride - 1) of a torus are done separately
+
+		int from = Math.max (torus ? 1 : 0, stepLeft);
+		int to = Math.min (torus ? stride - 1 : stride, stepRight);
+		int tileOff = (row >>> TILE_SHIFT) * stride;
+
+		if (vector && VECTOR_API)
+			VectorKernel.stepRow (up, upOff, mid, midOff, down, downOff, out, midOff,
+					stride, lastMask, rule, active, nextChanged, tileOff, from, to);
+		else
+			stepRow (up, upOff, mid, midOff, down, downOff, out, midOff,
+					stride, lastMask, rule, active, nextChanged, tileOff, from, to);
+
+		if (torus && stride > 0)
+		{
+			if (stepLeft == 0)
+				stepWrapped (up, upOff, mid, midOff, down, downOff, out, nextChanged, tileOff, 0, rule);
+			if (stride > 1 && stepRight == stride)
+				stepWrapped (up, upOff, mid, midOff, down, downOff, out, nextChanged, tileOff, stride - 1, rule);
+		}
+	}
+
+	/** Computes the next generation of a single row of packed cells.
+	 * The three source rows and the destination row are given as arrays
+	 * and offsets, so that rows may either be taken directly from a grid
+	 * or from separate buffers. Words whose tile is not active are
+	 * skipped, and the tiles of words that change are flagged. Only 
+	 * the given range of words is computed, but the words on either 
+	 * side of the range are still read.
+	 *
+	 * @param up		the words of the row above
+	 * @param upOff		the index of the first word of the row above
+	 * @param mid		the words of the row itself
+	 * @param midOff	the index of the first word of the row itself
+	 * @param down		the words of the row below
+	 * @param downOff	the index of the first word of the row below
+	 * @param out		the array in which to store the next generation
+	 * @param outOff	the index at which to store the first word
+	 * @param words		the number of words in each row
+	 * @param lastMask	the mask of valid bits in the last word
+	 * @param rule		the rule to apply
+	 * @param active	the tiles to recompute, or null to recompute all of them
+	 * @param changed	the tile flags to set for changed words, or null
+	 * @param tileOff	the index of the tile holding the first word of the row
+	 * @param from		the first word to compute, inclusive
+	 * @param to		the last word to compute, exclusive
+	 */
+	static void stepRow (long[] up, int upOff, long[] mid, int midOff, long[] down, int downOff,
+			long[] out, int outOff, int words, long lastMask, Rule rule,
+			boolean[] active, boolean[] changed, int tileOff, int from, int to)
+	{
+		if (from >= to)
+			return;
+
+		// Slide a window of three words along each of the three rows
+
+		long uw, u = from > 0 ? up[upOff + from - 1] : 0, ue = up[upOff + from];
+		long cw, c = from > 0 ? mid[midOff + from - 1] : 0, ce = mid[midOff + from];
+		long dw, d = from > 0 ? down[downOff + from - 1] : 0, de = down[downOff + from];
+
+		int end = Math.min (to, words - 1);
+		int w = from;
+
+		for (; w < end; w++)
+		{
+			uw = u; u = ue; ue = up[upOff + w + 1];
+			cw = c; c = ce; ce = mid[midOff + w + 1];
+			dw = d; d = de; de = down[downOff + w + 1];
+
+			if (active != null && !active[tileOff + w])
+				continue;
+
+			long next = evolve (rule, uw, u, ue, cw, c, ce, dw, d, de);
+			if (changed != null && next != c)
+				changed[tileOff + w] = true;
+			out[outOff + w] = next;
+		}
+
+		// The last word of the row has nothing to its right
+
+		if (w < to && (active == null || active[tileOff + w]))
+		{
+			long next = evolve (rule, u, ue, 0, c, ce, 0, d, de, 0) & lastMask;
+			if (changed != null && next != ce)
+				changed[tileOff + w] = true;
+			out[outOff + w] = next;
+		}
+	}
+
+	/** Computes the next generation of the first or last word of a row
+	 * of a torus, reading the cells across the edges from the far side
+	 * of the grid. The rows are given as in stepRow.
+	 *
+	 * @param up			the words of the row above
+	 * @param upOff			the index of the first word of the row above
+	 * @param mid			the words of the row itself
+	 * @param midOff		the index of the first word of the row itself
+	 * @param down			the words of the row below
+	 * @param downOff		the index of the first word of the row below
+	 * @param out			the array in which to store the next generation
+	 * @param nextChanged	the tile flags of the next generation
+	 * @param tileOff		the index of the tile holding the first word of the row
+	 * @param w				the index of the word within the row
+	 * @param rule			the rule to apply
+	 */
+	private void stepWrapped (long[] up, int upOff, long[] mid, int midOff, long[] down, int downOff,
+			long[] out, boolean[] nextChanged, int tileOff, int w, Rule rule)
+	{
+		if (!active[tileOff + w])
+			return;
+
+		long c = mid[midOff + w];
+		long bits = evolve (rule,
+				wrapWest (up, upOff, w), wrapWord (up, upOff, w), wrapEast (up, upOff, w),
+				wrapWest (mid, midOff, w), wrapWord (mid, midOff, w), wrapEast (mid, midOff, w),
+				wrapWest (down, downOff, w), wrapWord (down, downOff, w), wrapEast (down, downOff, w));
+
+		if (w == stride - 1)
+			bits &= lastMask;
+		if (bits != c)
+			nextChanged[tileOff + w] = true;
+		out[midOff + w] = bits;
+	}
+
+	/** Gets the word to the left of the given word of a torus. Left
+	 * of the first word, the last column is moved into bit 63.
+	 *
+	 * @param src	the words of the row
+	 * @param off	the index of the first word of the row
+	 * @param w		the index of the word within the row
+	 * @return the word to the left
+	 */
+	private long wrapWest (long[] src, int off, int w)
+	{
+		if (w > 0)
+			return src[off + w - 1];
+		return src[off + stride - 1] >>> (width - 1) << 63;
+	}
+
+	/** Gets the given word of a torus. If it is the last word and the
+	 * row does not fill it, the first column is copied into the bit just
+	 * past the last column, where it is read as the right-hand neighbour.
+	 *
+	 * @param src	the words of the row
+	 * @param off	the index of the first word of the row
+	 * @param w		the index of the word within the row
+	 * @return the word
+	 */
+	private long wrapWord (long[] src, int off, int w)
+	{
+		if (w == stride - 1 && (width & 63) != 0)
+			return src[off + w] | (src[off] & 1) << width;
+		return src[off + w];
+	}
+
+	/** Gets the word to the right of the given word of a torus. Right
+	 * of the last word, this is the first word if the row fills the last
+	 * word exactly; otherwise wrapWord has already put the first column
+	 * in the right place.
+	 *
+	 * @param src	the words of the row
+	 * @param off	the index of the first word of the row
+	 * @param w		the index of the word within the row
+	 * @return the word to the right
+	 */
+	private long wrapEast (long[] src, int off, int w)
+	{
+		if (w < stride - 1)
+			return src[off + w + 1];
+		return (width & 63) == 0 ? src[off] : 0;
+	}
+
+	/** Computes the next generation of 64 cells at once. Each argument
+	 * is a word of packed cells; the middle word (c) holds the cells
+	 * themselves, and the other words are the ones directly around it.
+	 * Only the nearest bit of each of the diagonal and side words is used.
+	 *
+	 * @param rule	the rule to apply
+	 * @param uw	the word above and to the left
+	 * @param u		the word above
+	 * @param ue	the word above and to the right
+	 * @param cw	the word to the left
+	 * @param c		the word holding the cells
+	 * @param ce	the word to the right
+	 * @param dw	the word below and to the left
+	 * @param d		the word below
+	 * @param de	the word below and to the right
+	 * @return the next generation of the cells in c
+	 */
+	static long evolve (Rule rule, long uw, long u, long ue, long cw, long c, long ce, long dw, long d, long de)
+	{
+		// Line up the eight neighbours of every cell
+
+		long a0 = u << 1 | uw >>> 63;
+		long a1 = u;
+		long a2 = u >>> 1 | ue << 63;
+		long b0 = c << 1 | cw >>> 63;
+		long b2 = c >>> 1 | ce << 63;
+		long d0 = d << 1 | dw >>> 63;
+		long d1 = d;
+		long d2 = d >>> 1 | de << 63;
+
+		// Add them together with a tree of full adders
+
+		long s0 = a0 ^ a1 ^ a2;
+		long k0 = a0 & a1 | a2 & (a0 ^ a1);
+		long s1 = b0 ^ b2 ^ d0;
+		long k1 = b0 & b2 | d0 & (b0 ^ b2);
+		long s2 = d1 ^ d2;
+		long k2 = d1 & d2;
+
+		long ones = s0 ^ s1 ^ s2;
+		long k3 = s0 & s1 | s2 & (s0 ^ s1);
+
+		long t = k0 ^ k1 ^ k2;
+		long k4 = k0 & k1 | k2 & (k0 ^ k1);
+		long twos = t ^ k3;
+		long k5 = t & k3;
+
+		long fours = k4 ^ k5;
+		long eights = k4 & k5;
+
+		return rule.apply (c, ones, twos, fours, eights);
+	}
+
+	/** Determines whether the jdk.incubator.vector module has been
+	 * added to the running VM, and VectorKernel could be loaded.
+	 *
+	 * @return true if the Vector API is available; false otherwise
+	 */
+	private static boolean isVectorApiPresent ()
+	{
+		if (!ModuleLayer.boot ().findModule ("jdk.incubator.vector").isPresent ())
+			return false;
+
+		try
+		{
+			Class.forName ("VectorKernel");
+			return true;
+		}
+		catch (Throwable e)
+		{
+			return false;
+		}
+	}
+
+	/** Allocates the direct buffers for the rows of an off-heap grid.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @return the buffers, each holding up to slabRows rows
+	 * @throws IllegalArgumentException if either dimension is negative
+	 */
+	private static LongBuffer[] allocate (int width, int height)
+	{
+		checkSize (width, height);
+
+		int stride = (width + 63) >>> 6;
+		int slabRows = slabRows (width);
+		LongBuffer[] slabs = new LongBuffer [(height + slabRows - 1) / slabRows];
+
+		for (int i = 0; i < slabs.length; i++)
+		{
+			int rows = Math.min (slabRows, height - i * slabRows);
+			slabs[i] = ByteBuffer.allocateDirect (rows * stride * 8)
+					.order (ByteOrder.nativeOrder ()).asLongBuffer ();
+		}
+		return slabs;
+	}
+
+	/** Maps the rows of a grid onto consecutive regions of a file.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @param file		the file to map
+	 * @return the buffers, each holding up to slabRows rows
+	 * @throws IllegalArgumentException if either dimension is negative
+	 * @throws IOException if the file could not be mapped
+	 */
+	private static LongBuffer[] map (int width, int height, File file) throws IOException
+	{
+		checkSize (width, height);
+
+		int stride = (width + 63) >>> 6;
+		int slabRows = slabRows (width);
+		LongBuffer[] slabs = new LongBuffer [(height + slabRows - 1) / slabRows];
+
+		try (RandomAccessFile raf = new RandomAccessFile (file, "rw"))
+		{
+			FileChannel channel = raf.getChannel ();
+			channel.truncate (0);
+
+			for (int i = 0; i < slabs.length; i++)
+			{
+				int rows = Math.min (slabRows, height - i * slabRows);
+				long position = (long) i * slabRows * stride * 8;
+				slabs[i] = channel.map (FileChannel.MapMode.READ_WRITE, position, (long) rows * stride * 8)
+						.order (ByteOrder.nativeOrder ()).asLongBuffer ();
+			}
+		}
+		return slabs;
+	}
+
+	/** Makes sure that the dimensions of a grid are not negative.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @throws IllegalArgumentException if either dimension is negative
+	 */
+	private static void checkSize (int width, int height)
+	{
+		if (width < 0 || height < 0)
+			throw new IllegalArgumentException ("Negative grid size: " + width + " x " + height);
+	}
+
+	/** Calculates how many rows of a grid go in each buffer
+	 * when it is kept off the heap.
+	 *
+	 * @param width		the number of columns
+	 * @return the number of rows per buffer
+	 */
+	private static int slabRows (int width)
+	{
+		return Math.max (SLAB_WORDS / Math.max ((width + 63) >>> 6, 1), 1);
+	}
+
+	/** Summarises the tiles written by blendRow since the
+	 * summaries were last read.
+	 */
+	private void flushSummaries ()
+	{
+		if (!summariesStale)
+			return;
+
+		for (int ty = 0; ty < tileRows; ty++)
+			summarizeRow (ty, 0, stride, unsummarized);
+		Arrays.fill (unsummarized, false);
+		summariesStale = false;
+		populationStale = true;
+		boundsStale = true;
+	}
+
+	/** Writes a word for blendRow or paste, flagging its tile as
+	 * changed and as waiting to be summarised if it is different.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @param old	the word as it was
+	 * @param cells	the word to write
+	 */
+	private void blendWord (int row, int w, long old, long cells)
+	{
+		if (cells != old)
+		{
+			int tile = (row >>> TILE_SHIFT) * stride + w;
+			putWord (row, w, cells);
+			changed[tile] = true;
+			unsummarized[tile] = true;
+			summariesStale = true;
+		}
+	}
+
+	/** Brings the bounding box of the live cells up to date.
+	 */
+	private void updateBounds ()
+	{
+		flushSummaries ();
+		if (boundsStale)
+			computeBounds ();
+	}
+
+	/** Works out the bounding box of the live cells again from the
+	 * summaries of the tiles.
+	 */
+	private void computeBounds ()
+	{
+		emptyBounds ();
+
+		for (int ty = 0; ty < tileRows; ty++)
+			for (int tx = 0; tx < stride; tx++)
+			{
+				int tile = ty * stride + tx;
+				long rows = tileRowBits[tile];
+				if (rows == 0)
+					continue;
+
+				long cols = tileCols[tile];
+				int y = ty << TILE_SHIFT;
+				int x = tx << 6;
+				top = Math.min (top, y + Long.numberOfTrailingZeros (rows));
+				bottom = Math.max (bottom, y + 63 - Long.numberOfLeadingZeros (rows));
+				left = Math.min (left, x + Long.numberOfTrailingZeros (cols));
+				right = Math.max (right, x + 63 - Long.numberOfLeadingZeros (cols));
+			}
+
+		boundsStale = false;
+	}
+
+	/** Sets the bounding box to hold no cells at all.
+	 */
+	private void emptyBounds ()
+	{
+		top = left = Integer.MAX_VALUE;
+		bottom = right = -1;
+		boundsStale = false;
+	}
+
+	/** Grows the bounding box to take in the given cells, unless
+	 * it is going to be worked out again anyway.
+	 *
+	 * @param row1	the top row of the cells
+	 * @param col1	the left column of the cells
+	 * @param row2	the bottom row of the cells
+	 * @param col2	the right column of the cells
+	 */
+	private void extendBounds (int row1, int col1, int row2, int col2)
+	{
+		if (!boundsStale)
+		{
+			top = Math.min (top, row1);
+			left = Math.min (left, col1);
+			bottom = Math.max (bottom, row2);
+			right = Math.max (right, col2);
+		}
+	}
+
+	/** Summarises the live cells of a tile again from its words.
+	 *
+	 * @param tile	the index of the tile
+	 * @return the change in the population of the tile
+	 */
+	private int summarize (int tile)
+	{
+		int ty = tile / Math.max (stride, 1);
+		int w = tile - ty * stride;
+		int end = Math.min ((ty + 1) << TILE_SHIFT, height);
+
+		long cols = 0;
+		long rows = 0;
+		int pop = 0;
+		long hash = 0;
+
+		for (int row = ty << TILE_SHIFT; row < end; row++)
+		{
+			long word = getWord (row, w);
+			if (word != 0)
+			{
+				cols |= word;
+				rows |= 1L << row;
+				pop += Long.bitCount (word);
+				hash += mix (row, w, word);
+			}
+		}
+
+		int delta = pop - tilePop[tile];
+		tileCols[tile] = cols;
+		tileRowBits[tile] = rows;
+		tilePop[tile] = pop;
+		tileHash[tile] = hash;
+		return delta;
+	}
+
+	/** Summarises some of the tiles of a row of tiles again from
+	 * their words, going through the words row by row.
+	 *
+	 * @param ty	the row of tiles
+	 * @param from	the first word to look at, inclusive
+	 * @param to	the last word to look at, exclusive
+	 * @param which	the flags of the tiles to summarise
+	 */
+	private void summarizeRow (int ty, int from, int to, boolean[] which)
+	{
+		int tileOff = ty * stride;
+		for (int w = from; w < to; w++)
+			if (which[tileOff + w])
+			{
+				tileCols[tileOff + w] = 0;
+				tileRowBits[tileOff + w] = 0;
+				tilePop[tileOff + w] = 0;
+				tileHash[tileOff + w] = 0;
+			}
+
+		int end = Math.min ((ty + 1) << TILE_SHIFT, height);
+		for (int row = ty << TILE_SHIFT; row < end; row++)
+		{
+			int off = row * stride;
+			for (int w = from; w < to; w++)
+			{
+				int tile = tileOff + w;
+				if (!which[tile])
+					continue;
+
+				long word = words != null ? words[off + w] : getWord (row, w);
+				if (word != 0)
+				{
+					tileCols[tile] |= word;
+					tileRowBits[tile] |= 1L << row;
+					tilePop[tile] += Long.bitCount (word);
+					tileHash[tile] += mix (row, w, word);
+				}
+			}
+		}
+	}
+
+	/** Gets 64 cells of a row, starting at any column. Cells
+	 * to either side of the grid are dead.
+	 *
+	 * @param row	the row of the cells
+	 * @param col	the column of the first cell, which may be negative
+	 * @return the packed cells, with the cell in column col in bit 0
+	 */
+	private long getBits (int row, long col)
+	{
+		if (col >= width || col <= -64)
+			return 0;
+
+		int w = (int) Math.floorDiv (col, 64);
+		int shift = Math.floorMod (col, 64);
+
+		long lo = w >= 0 ? getWord (row, w) : 0;
+		if (shift == 0)
+			return lo;
+
+		long hi = w + 1 < stride ? getWord (row, w + 1) : 0;
+		return lo >>> shift | hi << (64 - shift);
+	}
+
+	/** Mixes a word with its position, for the hash of the cells.
+	 * Dead words count for nothing, so an empty tile hashes to 0.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @param word	the packed cells
+	 * @return the part of the hash for the word
+	 */
+	private long mix (int row, int w, long word)
+	{
+		if (word == 0)
+			return 0;
+
+		long m = (word ^ ((long) row * stride + w) * 0xC2B2AE3D27D4EB4FL) * 0x9E3779B97F4A7C15L;
+		m = (m ^ m >>> 32) * 0xD6E8FEB86659FD93L;
+		return m ^ m >>> 32;
+	}
+
+	/** Flags the tile containing the given word as changed.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 */
+	private void mark (int row, int w)
+	{
+		changed[(row >>> TILE_SHIFT) * stride + w] = true;
+	}
+
+	/** Flags every tile as changed, so that the whole grid is
+	 * recomputed on the next step. This is needed whenever the
+	 * grid is to be stepped differently, as when the edges change.
+	 */
+	public void markAll ()
+	{
+		Arrays.fill (changed, true);
+	}
+
+	/** Calculates the index of the word containing the given cell,
+	 * within its row.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return the index of the word
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	private int index (int row, int col)
+	{
+		if (row < 0 || row >= height || col < 0 || col >= width)
+			throw new IndexOutOfBoundsException ("Cell out of bounds: " + row + ", " + col);
+		return col >>> 6;
+	}
+
+	/** Stores a packed word without masking it or flagging its tile.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @param bits	the packed cells
+	 */
+	private void putWord (int row, int w, long bits)
+	{
+		if (words != null)
+			words[row * stride + w] = bits;
+		else
+			slabs[row / slabRows].put ((row % slabRows) * stride + w, bits);
+	}
+
+	/** Copies the words of a row into the start of the given array.
+	 *
+	 * @param row	the row to read
+	 * @param dst	the array to copy into, of at least stride words
+	 */
+	private void readRow (int row, long[] dst)
+	{
+		if (words != null)
+			System.arraycopy (words, row * stride, dst, 0, stride);
+		else
+			slabs[row / slabRows].get ((row % slabRows) * stride, dst, 0, stride);
+	}
+
+	/** Copies the start of the given array into the words of a row.
+	 *
+	 * @param row	the row to write
+	 * @param src	the array to copy from, of at least stride words
+	 */
+	private void writeRow (int row, long[] src)
+	{
+		if (words != null)
+			System.arraycopy (src, 0, words, row * stride, stride);
+		else
+			slabs[row / slabRows].put ((row % slabRows) * stride, src, 0, stride);
+	}
+}
@@ -1,646 +1,3495 @@
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Graphics;
-import java.awt.Point;
-import java.awt.Rectangle;
-import java.awt.Shape;
-
-/** The life representing the grid
- * of alive or dead cells.
- * 
- * @author Jiayin Huang
- * @date CE 2013-12-12
- */
-public class Colony 
-{
-	private boolean grid [][];	
-
-	public Point offset = new Point ();
-
-	public Color dead = Color.black;	
-	public Color alive = Color.green;
-	public Color deadSelect = Color.blue;
-	public Color aliveSelect = Color.yellow;	
-	public Color gridLines = new Color (128, 128, 128);	
-
-	private int iteration = 0;
-	private int zoom = 7;
-
-	/** Creates a colony of the specified density.
-	 * A density of 1.0 or greater will set all of the cells to alive.
-	 * A density of 0.0 or less will set all of the cells to dead.
-	 * 
-	 * @param density		the probability of any individual cell being alive
-	 */
-	public Colony (double density)
-	{		
-		this (density, 100, 100); // default size is 100 x 100
-	}
-
-	/** Creates an empty colony with the
-	 * specified dimensions.
-	 * 
-	 * @param width		the width of the colony
-	 * @param height	the height of the colony
-	 */
-	public Colony (int width, int height)
-	{
-		this (0, width, height);
-	}		
-
-	/** Creates a colony of the specified density and 
-	 * dimensions.
-	 * 
-	 * @param density		the probability of a cell being alive
-	 * @param width			the width of the colony
-	 * @param height		the height of the colony
-	 */
-	public Colony (double density, int width, int height)
-	{
-		grid = new boolean [height] [width];	
-
-		if (density > 0)
-			populate (density);
-	}
-
-	/** Advances the colony by one iteration, or generation. 
-	 */
-	public void advance ()
-	{		
-		boolean[][] temp = new boolean [grid.length][grid[0].length];
-
-		for (int i = 0; i < grid.length; i++)		
-			for (int j = 0; j < grid[0].length; j++)
-				temp[i][j] = live (i, j);
-
-		grid = temp;
-		iteration++;
-	}
-
-
-	/** Attempts to eliminate all of the cells within the bounds of the 
-	 * given shape. In the given shape, x represents the column and y
-	 * represents the row. Any coordinates that are not within the bounds
-	 * of this colony are ignored.
-	 * 
-	 * The efficiency states the probability that any cell will be
-	 * successfully eradicated. 1.0 indicates complete extermination
-	 * within the given shape. 0.0 indicates the change of absolutely 
-	 * nothing.
-	 * 
-	 * @param select		the shape within which to eradicate cells
-	 * @param efficiency	the probability of any individual cell being successfully eradicated
-	 */
-	public void eradicate (Shape select, double efficiency)
-	{
-		Rectangle bound = select.getBounds();
-		int left = bound.x;
-		int right = bound.x + bound.width;
-		int up = bound.y;
-		int down = bound.y + bound.height;
-
-		for (int col = left; col < right; col++)		
-			for (int row = up; row < down; row++)			
-				if (select.contains(col, row))
-					if (colValid (col) && rowValid (row))
-						if (Math.random () < efficiency)
-							grid[row][col] = false;			
-	}
-
-	/** Attempts to populate all of the cells within the bounds of the 
-	 * given shape. In the given shape, x represents the column and y
-	 * represents the row. Any coordinates that are not within the bounds 
-	 * of this colony are ignored.
-	 * 
-	 * The efficiency states the probability that any cell will be
-	 * successfully populated. 1.0 indicates certainty. 0.0
-	 * indicates definite failure.
-	 * 
-	 * @param select		the shape within which to populate cells
-	 * @param efficiency	the probability of any individual cell being successfully populated
-	 */
-	public void populate (Shape select, double efficiency)
-	{
-		Rectangle bound = select.getBounds();
-		int left = bound.x;
-		int right = bound.x + bound.width;
-		int up = bound.y;
-		int down = bound.y + bound.height;
-
-		for (int col = left; col < right; col++)		
-			for (int row = up; row < down; row++)			
-				if (select.contains(col, row))
-					if (colValid (col) && rowValid (row))
-						if (Math.random () < efficiency)
-							grid[row][col] = true;				
-	}
-
-	/** Populates the entire colony based on the specified weight factor.
-	 * A density of 1.0 will set all of the cells to alive.
-	 * A density of 0.0 will set all of the cells to dead.
-	 * 
-	 * @param density	the probability of a cell being alive
-	 */
-	public void populate (double density)
-	{		
-		for (int row = 0 ; row < grid.length ; row++)
-			for (int col = 0 ; col < grid [0].length ; col++)
-				grid [row] [col] = Math.random () < density;
-	}	
-
-	/** Inverts the state of the cell at the specified location.
-	 * If it was alive, it will be set to dead. If it was dead,
-	 * it will be set to alive.
-	 * 
-	 * @param row	the row of the cell
-	 * @param col	the column of the cell 
-	 * @throws IndexOutOfBoundsException if the column or
-	 * row is out of bounds
-	 */
-	public void flipCell (int row, int col)
-	{
-		grid[row][col] = !grid[row][col];
-	}
-
-	/** Gets the cell at the specified location.
-	 * 
-	 * @param row	the row of the cell
-	 * @param col	the column of the cell
-	 * @return true if the cell is alive; false otherwise
-	 * @throws IndexOutOfBoundsException if the column or
-	 * row is out of bounds
-	 */
-	public boolean getCell (int row, int col)
-	{		
-		return grid[row][col];
-	}
-
-	/** Calculates the index of the column that contains 
-	 * the given x-coordinate, using the colony's current 
-	 * x-offset value.
-	 *  
-	 * @param x			the x-coordinate
-	 * @return the column index
-	 */
-	public int getCol (int x)
-	{
-		return (x - offset.x) / zoom; 
-	}
-
-	/** Gets the number of rows in this colony.
-	 * 
-	 * @return the height of this colony
-	 */
-	public int getHeight ()
-	{
-		return grid.length;
-	}
-
-	/** Gets the current iteration, or generation,
-	 * of this colony.
-	 * 
-	 * @return the current iteration
-	 */
-	public int getItt ()
-	{
-		return iteration;
-	}
-
-	/** Calculates the index of the row that contains 
-	 * the given y-coordinate, using the colony's current 
-	 * y-offset value.
-	 * 	 
-	 * @param y			the y-coordinate
-	 * @return the row index
-	 */
-	public int getRow (int y)
-	{
-		return (y - offset.y) / zoom; 
-	}
-
-	/** Returns the dimensions of this colony in terms of width and height.
-	 * In other words, the number of columns by the number of rows.
-	 * 
-	 * @return the size of this colony
-	 */
-	public Dimension getSize ()
-	{
-		return new Dimension (grid[0].length, grid.length);
-	}
-
-	/** Returns the number of columns in this colony.
-	 * 
-	 * @return the width of this colony
-	 */
-	public int getWidth ()
-	{
-		return grid[0].length;
-	}
-
-	/** Calculates the x-coordinate of the given column, using
-	 * the current x-offset value.
-	 *  
-	 * @param col		the column index
-	 * @return the x-coordinate
-	 */
-	public int getX (int col)
-	{
-		return (int)Math.round(col * zoom) + offset.x;
-	}
-
-	/** Calculates the y-coordinate of the given row, using 
-	 * the current y-offset value.
-	 * 	 
-	 * @param row		the row index
-	 * @return the y-coordinate
-	 */
-	public int getY (int row)
-	{
-		return (int)Math.round(row * zoom) + offset.y;
-	}		
-
-	
-	/** Gets the current zoom for this colony.
-	 * 
-	 * @return the current zoom
-	 */
-	public int getZoom ()
-	{
-		return zoom;
-	}
-
-	/** Determines whether the given column is
-	 * within the boundaries of this colony.
-	 * 
-	 * @param col	the column to be checked
-	 * @return true if within bounds; false otherwise
-	 */
-	public boolean colValid (int col)
-	{
-		return col >= 0 && col < grid[0].length;
-	}
-
-	/** Determines whether the given row is
-	 * within the boundaries of this colony.
-	 * 
-	 * @param row	the row to be checked
-	 * @return true if within bounds; false otherwise
-	 */
-	public boolean rowValid (int row)
-	{
-		return row >= 0 && row < grid.length;
-	}
-
-	
-	
-
-	/** Determines whether the indicated cell will be alive
-	 * in the next iteration, based on its surrounding cells.
-	 * 
-	 * @param row	the row of the cell
-	 * @param col	the column of the cell
-	 * @return true if the cell will live; false otherwise
-	 */
-	private boolean live (int row, int col)
-	{
-		int liveCounter = 0;		
-
-		// Iterate through surrounding 3x3 grid
-
-		for (int i = row - 1; i <= row + 1; i++)		
-			for (int j = col - 1; j <= col + 1; j++)			
-				if (rowValid(i) && colValid(j))				
-					if (grid[i][j])
-						liveCounter++;						
-
-		// Subtract a count if the cell itself was counted
-
-		if (grid[row][col])
-			liveCounter--;
-
-		return grid[row][col] && liveCounter == 2 || liveCounter == 3;
-	}	
-
-	/** Attempts to load all of the data structures and variables from
-	 * the specified save String. Throws an exception if there is a 
-	 * formatting error.
-	 * 
-	 * @param save	the correctly formated save String
-	 * @return the last line processed
-	 */
-	public void load (String save) throws Exception
-	{
-		// Declaration of Variables
-
-		String[] parameters = save.split("\n");		
-		int line = 0;		
-		int col = 0;
-
-		// Iterate through save String
-
-		try
-		{
-			for ( ; line < parameters.length; line++)
-			{				
-				String text = parameters[line];	
-				if (!text.startsWith (";")) // Line starting with ";" are comments
-				{
-					if (text.startsWith("grid :")) // This is the grid portion
-					{	
-						line++;
-						int index = line;
-						int height = 0;
-
-						// Find height of grid
-
-						while (index < parameters.length && Character.isDigit(parameters[index].charAt(0)))
-							index++;
-						height = index - line;
-						index = line;
-
-						// Initialize new grid
-
-						grid = new boolean [height][parameters[line].length()];
-
-						// Iterate through rows of grid
-
-						for (; line < index + height; line++)
-						{
-							String slice = parameters[line];	
-							int row = line - index;
-
-							// Iterate through columns of grid, setting cells to the indicated values
-
-							for (col = 0; col < grid[row].length; col++)
-								grid[row][col] = slice.charAt(col) == '1' ? true : false;
-						}							
-					}						
-					else
-						parseLine (text);
-				}
-			}	
-		}
-		catch (Exception e)
-		{
-			throw new Exception ("" + (line + 1) + "," + (col + 1) + " :\n" + e.getMessage());
-		}
-	}
-
-	/** Called by the load method. This method interprets and acts upon 
-	 * lines of data concerning variable assignments.
-	 * 
-	 * @param line			the line to be interpreted
-	 * @throws Exception thrown if there was a parsing error; some possibilities
-	 * include attempting to parse a letter to an integer, or trying to access a
-	 * parameter that is out of bounds because there was an incorrect number of parameters
-	 * in a line.
-	 */
-	private void parseLine (String line) throws Exception
-	{
-		String[] parameters = line.split(" ");
-
-		// Zoom input: "zoom = [int]"
-		if (parameters[0].equals ("zoom"))					
-			zoom = Integer.parseInt(parameters[2]);
-
-		// Iteration input: "iteration = [int]"
-		else if (parameters[0].equals("iteration"))
-			iteration = Integer.parseInt(parameters[2]);
-
-		// Offset input: "offset = [int x] [int y]"
-		else if (parameters[0].equals("offset"))
-		{
-			offset.x = Integer.parseInt (parameters[2]);
-			offset.y = Integer.parseInt (parameters[3]);
-		}
-
-		// Color input: "colorName = [int red] [int green] [int blue]"
-		else if (parameters.length == 5)
-		{
-			int r = Integer.parseInt (parameters[2]);
-			int g = Integer.parseInt(parameters[3]);
-			int b = Integer.parseInt(parameters[4]);
-
-			Color color = new Color (r,g,b);			
-
-			if (parameters[0].equals ("alive"))
-				alive = color;
-			else if (parameters[0].equals("dead"))
-				dead = color;
-			else if (parameters[0].equals("aliveSelect"))
-				aliveSelect = color;
-			else if (parameters[0].equals("deadSelect"))
-				deadSelect = color;
-			else if (parameters[0].equals("gridLines"))
-				gridLines = color;
-		}
-		else
-		{
-			throw new Exception ("Unrecognized command");
-		}
-	}
-	
-	/** Sets the state of the cell at the specified location.
-	 * 
-	 * @param row		the row of the cell
-	 * @param col	 	the column of the cell
-	 * @param state		the state to which to set the cell
-	 * @throws IndexOutOfBoundsException if the column or
-	 * row is out of bounds
-	 */
-	public void setCell (int row, int col, boolean state)
-	{		
-		grid[row][col] = state;
-	}
-
-	/** Sets the current iteration, or generation.
-	 * 
-	 * @param itt	the new iteration value
-	 */
-	public void setItt (int itt)
-	{
-		iteration = itt;
-	}
-
-	/** Resizes the colony using (0,0) as an anchor point. Any
-	 * existing cells that are within the bounds of the new colony
-	 * grid will be copied over. Does nothing if any of the dimensions
-	 * are less than or equal to 0.
-	 * 
-	 * @param size	the dimensions of the new colony
-	 */
-	public void setSize (Dimension size)
-	{		
-		if (size.width > 0 && size.height > 0)
-		{
-			if (size.width != getWidth() || size.height != getHeight())
-			{
-				boolean[][] temp = new boolean [size.height][size.width];
-				for (int row = 0; row < temp.length && row < getHeight(); row++)
-					for (int col = 0; col < temp[0].length && col < getWidth(); col++)
-						temp[row][col] = grid[row][col];
-				grid = temp;
-			}
-		}
-	}
-
-	/** Sets the zoom value. 
-	 * Ignores values less than or equal to 0.
-	 * 
-	 * @param zoom	the new zoom value
-	 */
-	public void setZoom (int zoom)
-	{
-		if (zoom > 0)
-			this.zoom = zoom;
-	}
-
-	/** Draws the colony on the specified Graphics object, using
-	 * the colony's current offset value. Draws the colony only to
-	 * the extent of the given dimensions. These dimensions are
-	 * meant to be the size of the component to which the Graphics
-	 * object belongs. This is to save on processing power by 
-	 * only drawing the visible portion of the colony.
-	 * 
-	 * @param g			the Graphics context in which to paint
-	 * @param size		the Dimensions in which to paint
-	 */
-	public void show (Graphics g, Dimension size)
-	{       
-		// Initialize bounds of drawing area
-
-		int left = Math.max(getCol (0), 0);
-		int right = Math.min(getCol (size.width) + 1, grid[0].length);
-		int up = Math.max(getRow (0), 0);
-		int down = Math.min (getRow (size.height) + 1, grid.length);
-
-		// Iterate through grid selection and draw cells
-
-		for (int row = up ; row < down ; row++)
-		{
-			int y = getY (row);
-			for (int col = left ; col < grid [row].length && col < right; col++)
-			{
-				int x = getX (col);
-
-				Color color = grid [row][col] ? alive : dead;
-				g.setColor (color);                     
-				g.fillRect (x, y, zoom, zoom); // draw life form
-			}
-		}
-	} 
-
-	/** Draws the grid lines for the colony. Draws the grid lines
-	 * only up to the extent of the indicated dimensions.
-	 * 
-	 * @param g			the Graphics context in which to paint
-	 * @param size		the Dimensions in which to paint
-	 */
-	public void showGrid (Graphics g, Dimension size)
-	{	
-		// Initialize bounds of drawing area
-
-		int left = Math.max(getCol (0), 0);
-		int right = Math.min(getCol (size.width) + 1, grid[0].length);
-		int up = Math.max(getRow (0), 0);
-		int down = Math.min (getRow (size.height) + 1, grid.length);
-
-		int width = right - left;
-		int height = down - up;
-		
-		g.setColor(gridLines);
-
-		// Iterate through x-values and y-values, and draw grid lines
-
-		for (int row = up; row < down; row++)           
-			g.fillRect(getX(left), getY (row), width * zoom, 1);
-
-		for (int col = left; col < right; col++)
-			g.fillRect(getX (col), getY(up), 1, height * zoom);                 
-	}
-
-
-	/** Draws the cells that are contained within the bounds of the
-	 * given shape. Uses the "aliveSelect" and "deadSelect" color
-	 * schemes for these cells.
-	 * 
-	 * @param g			the Graphics context in which to paint
-	 * @param select	the Shape representing the boundary of the selection
-	 */
-	public void showSelection (Graphics g, Shape select)
-	{
-		// Initialize bounds of checking area
-
-		Rectangle bounds = select.getBounds ();
-		int left = bounds.x;
-		int up = bounds.y;
-		int right = left + bounds.width;
-		int down = up + bounds.height;
-
-		// Iterate through grid selection and draw cells, if within shape
-
-		for (int col = left; col < right; col++)
-		{
-			int x = getX (col);
-
-			for (int row = up; row < down; row++)
-			{			
-				if (select.contains(col, row) && rowValid (row) && colValid(col))
-				{
-					int y = getY (row);
-					Color color = grid[row][col] ? aliveSelect : deadSelect;
-					g.setColor (color);
-					g.fillRect (x, y, zoom, zoom); // draw life form										
-				}
-			}
-		}
-	}		
-
-	/** Returns a String representation of the current state
-	 * of this colony. The output of this method is used for
-	 * loading and writing saves. 
-	 * 
-	 * Note that in the resulting String, all of the lines 
-	 * are separated by a LF ("\n") character. However, in 
-	 * Windows, CRLF ("\r\n") is usually used for a new line. 
-	 * Thus, if this String were to be output to a file, and 
-	 * that file were to be opened in Notepad, a user wouldn't 
-	 * see any line breaks.
-	 * 
-	 * However, most other programs such as Wordpad and Notepad++
-	 * interpret and display the new lines correctly. 
-	 * 
-	 * @return the String representation of this colony
-	 */
-	@Override
-	public String toString ()
-	{
-		String str = "iteration = " + iteration + "\n";
-		str += "offset = " + offset.x + " " + offset.y + "\n";
-		str += "zoom = " + zoom + "\n";
-		str += "alive = " + getStringRGB (alive) + "\n";
-		str += "aliveSelect = " + getStringRGB (aliveSelect) + "\n";
-		str += "dead = " + getStringRGB (dead) + "\n";		
-		str += "deadSelect = " + getStringRGB (deadSelect) + "\n";
-		str += "gridLines = " + getStringRGB (gridLines) + "\n";
-		str += "grid :\n";
-		for (int row = 0; row < grid.length; row++)
-		{
-			for (int col = 0; col < grid[0].length; col++)
-				str += grid[row][col] ? "1" : "0";
-			str += "\n";
-		}
-		return str;		
-	}		
-
-	/** Returns a String representation of a sRGB value
-	 * in the format "[int red] [int green] [int blue]"
-	 * 
-	 * @param color		the color to codify
-	 * @return the String representation of the color
-	 */
-	private String getStringRGB (Color color)
-	{
-		return color.getRed() + " " + color.getGreen() + " " + color.getBlue();
-	}
-}
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** The life representing the grid
+ * of alive or dead cells.
+ * 
+ * @author Jiayin Huang
+ * @date CE 2013-12-12
+ */
+public class Colony 
+{
+	/** The ways in which the edges of a colony can behave.
+	 */
+	public enum Boundary
+	{
+		/** Cells outside of the grid are always dead. */
+		DEAD,
+
+		/** The edges wrap around, so that the top row is next to
+		 * the bottom row and the left column to the right column. */
+		TORUS,
+
+		/** There are no edges; the grid only marks out the initial
+		 * field, and cells can live at any long coordinates. */
+		UNBOUNDED
+	}
+
+	/** The algorithms that can be used to advance a colony.
+	 */
+	public enum Engine
+	{
+		/** Steps one generation at a time on the packed grid. */
+		BITBOARD,
+
+		/** Steps like BITBOARD, but with a kernel that works on whole
+		 * SIMD registers of words using the incubating Vector API. Falls
+		 * back to BITBOARD if the jdk.incubator.vector module is not 
+		 * available; see VectorKernel. */
+		VECTOR,
+
+		/** Jumps many generations at a time using HashLife. Only an
+		 * unbounded colony can be jumped this way, since HashLife has no
+		 * edges; a colony with dead edges or a torus is stepped one
+		 * generation at a time like BITBOARD, so that the engine never
+		 * changes the result. */
+		HASHLIFE
+	}
+
+	/** Where the cells of a colony are kept.
+	 */
+	public enum Storage
+	{
+		/** In long arrays on the heap. */
+		HEAP,
+
+		/** In direct buffers outside of the heap, so that the size
+		 * of the grid is only limited by native memory, and the 
+		 * garbage collector never scans it. Slightly slower to step,
+		 * since rows are copied onto the heap to be stepped. */
+		OFF_HEAP,
+
+		/** In temporary files mapped into memory, so that the grid 
+		 * can be larger than physical memory. The files are made in
+		 * the directory given by the java.io.tmpdir property, and are
+		 * stepped through one row after another. Cycles are not looked
+		 * for, since that would read the whole grid an extra time for
+		 * every generation, and nothing is recorded in the timeline. */
+		MAPPED
+	}
+
+	/** The ways in which the rows of a binary save can be compressed.
+	 */
+	public enum Compression
+	{
+		/** The rows are written as they are, 8 cells to a byte. */
+		NONE,
+
+		/** Each row is run-length encoded a byte at a time, which
+		 * is quick and shrinks the empty areas to almost nothing. */
+		RLE,
+
+		/** The rows are compressed as a whole with deflate, which
+		 * is slower but also shrinks repeated patterns. */
+		DEFLATE
+	}
+
+	/** The first bytes of a binary save, which can never start a text save */
+	private static final byte[] MAGIC = {(byte) 0x89, 'L', 'F', 'B'};
+
+	/** The version of the binary saves that are written */
+	private static final int VERSION = 2;
+
+	private BitGrid grid;	
+	private BitGrid next;
+	private Storage storage = Storage.HEAP;
+
+	// The view, which the event dispatch thread owns in the user interface
+
+	public Point offset = new Point ();
+
+	public Color dead = Color.black;	
+	public Color alive = Color.green;
+	public Color deadSelect = Color.blue;
+	public Color aliveSelect = Color.yellow;	
+	public Color gridLines = new Color (128, 128, 128);	
+
+	private long iteration = 0;
+	private int zoom = 7;
+
+	private Rule rule = Rule.LIFE;
+
+	private int parallelism = 1;
+	private ForkJoinPool pool;
+
+	private Engine engine = Engine.BITBOARD;
+	private HashLife hashLife;
+
+	private int skippedTiles = 0;
+
+	private SplittableRandom random = new SplittableRandom ();
+
+	private Boundary boundary = Boundary.DEAD;
+	private SparseUniverse universe;
+
+	private static final int HISTORY = 1024;
+	private final long[] history = new long [HISTORY];
+	private int historySize = 0;
+	private int historyHead = 0;
+	private int period = 0;
+	private long cycleStart = -1;
+
+	private int candidate = 0;
+	private long candidateItt;
+	private Rectangle candidateBox;
+	private Pattern candidateCells;
+	private SparseUniverse candidateUniverse;
+
+	private Timeline timeline;
+	private long timelineBudget = 0;
+	private boolean edited = false;
+
+	/** Creates a colony of the specified density.
+	 * A density of 1.0 or greater will set all of the cells to alive.
+	 * A density of 0.0 or less will set all of the cells to dead.
+	 * 
+	 * @param density		the probability of any individual cell being alive
+	 */
+	public Colony (double density)
+	{		
+		this (density, 100, 100); // default size is 100 x 100
+	}
+
+	/** Creates an empty colony with the
+	 * specified dimensions.
+	 * 
+	 * @param width		the width of the colony
+	 * @param height	the height of the colony
+	 */
+	public Colony (int width, int height)
+	{
+		this (0, width, height);
+	}		
+
+	/** Creates an empty colony with the specified dimensions,
+	 * whose cells are kept in the given storage. This allows a
+	 * colony too large for the heap to be created off the heap
+	 * in the first place.
+	 * 
+	 * @param width		the width of the colony
+	 * @param height	the height of the colony
+	 * @param storage	where to keep the cells
+	 */
+	public Colony (int width, int height, Storage storage)
+	{
+		if (storage != null)
+			this.storage = storage;
+		grid = newGrid (width, height);
+	}
+
+	/** Creates a colony of the specified density and 
+	 * dimensions.
+	 * 
+	 * @param density		the probability of a cell being alive
+	 * @param width			the width of the colony
+	 * @param height		the height of the colony
+	 */
+	public Colony (double density, int width, int height)
+	{
+		grid = newGrid (width, height);	
+
+		if (density > 0)
+			populate (density);
+	}
+
+	/** Advances the colony by one iteration, or generation. 
+	 */
+	public void advance ()
+	{		
+		advance (1);
+	}
+
+	/** Advances the colony by the specified number of iterations,
+	 * or generations, using the current engine. With the HashLife
+	 * engine, an unbounded colony is jumped all at once, which takes
+	 * time in proportion to the number of bits in the given number 
+	 * rather than to the number itself. Does nothing if the number
+	 * is not positive.
+	 * 
+	 * Once the colony is found to repeat itself, whole periods
+	 * are skipped by just adding them to the iteration, and only
+	 * the remaining generations are actually stepped.
+	 * 
+	 * @param generations	the number of generations to advance by
+	 * @see #getPeriod()
+	 * @see #setTimelineBudget(long)
+	 */
+	public void advance (long generations)
+	{
+		if (generations <= 0)
+			return;
+
+		syncTimeline ();
+
+		if (engine == Engine.HASHLIFE && universe != null && period == 0)
+		{
+			if (hashLife == null || !hashLife.getRule ().equals (rule))
+				hashLife = new HashLife (rule);
+			hashLife.load (universe);
+			hashLife.advance (generations);
+			hashLife.store (universe);
+			iteration += generations;
+			skippedTiles = 0;
+			forgetHistory ();
+		}
+		else
+		{
+			while (generations > 0)
+			{
+				if (period > 0)
+				{
+					iteration += generations - generations % period;
+					generations %= period;
+				}
+
+				if (generations > 0)
+				{
+					step ();
+					generations--;
+				}
+			}
+		}
+
+		// Jumps and skipped periods go in as a single entry
+
+		syncTimeline ();
+	}
+
+	/** Advances the colony by one generation on the packed grid. 
+	 * The next generation is written into a second buffer of
+	 * the same size, which then swaps places with the current
+	 * one, so that stepping does not allocate any memory once
+	 * the second buffer exists. Tiles of the grid around which
+	 * nothing changed in the last generation are skipped.
+	 * On a torus, the edges of the grid wrap around.
+	 * If the colony is unbounded, the sparse universe is 
+	 * stepped instead. Until a cycle is found, every generation
+	 * is added to the history, and every generation is recorded
+	 * in the timeline, if there is one.
+	 */
+	private void step ()
+	{		
+		if (period == 0 && historySize == 0)
+			record ();
+
+		if (universe != null)
+		{
+			universe.step (rule);
+			skippedTiles = 0;
+			iteration++;
+			if (period == 0)
+				record ();
+			return;
+		}
+
+		if (next == null || next.getWidth () != grid.getWidth () || next.getHeight () != grid.getHeight ())
+			next = newGrid (grid.getWidth (), grid.getHeight ());
+
+		skippedTiles = grid.prepareStep (next, boundary == Boundary.TORUS);
+		if (pool != null)
+			pool.invoke (new StepBand (0, grid.getHeight ()));
+		else
+			grid.step (next, 0, grid.getHeight (), rule, engine == Engine.VECTOR, boundary == Boundary.TORUS);
+
+		BitGrid temp = grid;
+		grid = next;
+		next = temp;
+		iteration++;
+		if (period == 0)
+			record ();
+		recordTimeline ();
+	}
+
+	/** Adds the hash of the current generation to the history,
+	 * and looks for an earlier generation with the same hash.
+	 * The nearest one gives the period of a possible cycle, but since
+	 * hashes can collide, the cells are copied, and the cycle is only
+	 * taken as found once they come back exactly a period later. Since
+	 * the hashes match as soon as the cycle first repeats, the generation
+	 * it started at is one period before that.
+	 */
+	private void record ()
+	{
+		if (storage == Storage.MAPPED && universe == null)
+			return;
+
+		if (candidate > 0 && iteration == candidateItt + candidate)
+		{
+			if (isCandidate ())
+			{
+				period = candidate;
+				cycleStart = candidateItt - candidate;
+				dropCandidate ();
+				return;
+			}
+			dropCandidate ();
+		}
+
+		long hash = universe != null ? universe.hashCells () : grid.hashCells ();
+
+		for (int age = 1; age <= historySize && candidate == 0; age++)
+		{
+			if (history[Math.floorMod (historyHead - age + 1, HISTORY)] == hash)
+			{
+				candidate = age;
+				candidateItt = iteration;
+				if (universe != null)
+					candidateUniverse = universe.copy ();
+				else
+				{
+					candidateBox = grid.getBounds ();
+					if (candidateBox != null)
+						candidateCells = grid.copy (candidateBox.y, candidateBox.x, candidateBox.width, candidateBox.height);
+				}
+			}
+		}
+
+		historyHead = (historyHead + 1) % HISTORY;
+		history[historyHead] = hash;
+		historySize = Math.min (historySize + 1, HISTORY);
+	}
+
+	/** Clears the history of generations, along with any cycle
+	 * found in it. Called whenever the cells or the rule change
+	 * other than by advancing.
+	 */
+	private void forgetHistory ()
+	{
+		historySize = 0;
+		period = 0;
+		cycleStart = -1;
+		dropCandidate ();
+	}
+
+	/** Lets go of the copy of the cells of a possible cycle.
+	 */
+	private void dropCandidate ()
+	{
+		candidate = 0;
+		candidateBox = null;
+		candidateCells = null;
+		candidateUniverse = null;
+	}
+
+	/** Determines whether the cells are the same as those copied
+	 * when the hashes of a possible cycle matched.
+	 * 
+	 * @return true if the cells are the same; false otherwise
+	 */
+	private boolean isCandidate ()
+	{
+		if (universe != null)
+			return universe.sameCells (candidateUniverse);
+
+		Rectangle box = grid.getBounds ();
+		if (box == null || candidateBox == null)
+			return box == candidateBox;
+		if (!box.equals (candidateBox))
+			return false;
+
+		Pattern cells = grid.copy (box.y, box.x, box.width, box.height);
+		for (int row = 0; row < box.height; row++)
+			for (int w = 0; w < cells.getStride (); w++)
+				if (cells.getWord (row, w) != candidateCells.getWord (row, w))
+					return false;
+		return true;
+	}
+
+	/** Starts an edit of the cells, first recording the cells as they
+	 * were before it in the timeline, unless an edit is already going.
+	 */
+	private void beginEdit ()
+	{
+		forgetHistory ();
+		if (!edited)
+		{
+			recordTimeline ();
+			edited = true;
+		}
+	}
+
+	/** Removes every entry from the timeline. Called whenever the grid
+	 * or the iteration change in a way that cannot be undone.
+	 */
+	private void forgetTimeline ()
+	{
+		if (timeline != null)
+			timeline.clear ();
+		edited = false;
+	}
+
+	/** Goes to the entry that the timeline has just moved to.
+	 *
+	 * @param itt	the generation of the entry, or -1 if it did not move
+	 * @return true if it moved; false otherwise
+	 */
+	private boolean jumpTo (long itt)
+	{
+		if (itt < 0)
+			return false;
+
+		iteration = itt;
+		skippedTiles = 0;
+		forgetHistory ();
+		return true;
+	}
+
+	/** Records the cells in the timeline, if there is one and the
+	 * colony is kept in a grid that is not mapped from a file. A
+	 * new timeline is started if the grid has changed size.
+	 */
+	private void recordTimeline ()
+	{
+		edited = false;
+		if (timelineBudget <= 0 || universe != null || storage == Storage.MAPPED)
+			return;
+
+		if (timeline == null || !timeline.fits (grid))
+			timeline = new Timeline (grid.getStride (), grid.getHeight (), timelineBudget);
+		timeline.record (grid, iteration);
+	}
+
+	/** Records the cells in the timeline if they may have changed
+	 * since they were last recorded, so that the current entry of
+	 * the timeline matches the grid.
+	 */
+	private void syncTimeline ()
+	{
+		if (edited || timeline == null || timeline.getCurrent () != iteration)
+			recordTimeline ();
+	}
+
+	/** Ends an edit of the cells, recording them in the timeline as 
+	 * they are after it, so that the whole edit can be undone at once.
+	 * Edits that are not ended here are recorded before the next
+	 * generation, or the next undo.
+	 */
+	public void commitEdit ()
+	{
+		if (edited)
+			recordTimeline ();
+	}
+
+	/** Goes forward to the entry of the timeline after the current
+	 * one, after an undo or a rewind.
+	 *
+	 * @return true if there was an entry to go to; false otherwise
+	 * @see #undo()
+	 */
+	public boolean redo ()
+	{
+		syncTimeline ();
+		return timeline != null && jumpTo (timeline.redo (grid));
+	}
+
+	/** Goes back, or forward after an undo, to the last generation 
+	 * recorded in the timeline at or before the given one. This only
+	 * writes the rows that differ from the current generation, so it 
+	 * takes milliseconds even for large grids. The next generation or
+	 * edit drops the entries after the one gone to.
+	 *
+	 * @param itt	the generation to go to
+	 * @return true if there was an entry to go to; false otherwise
+	 * @see #getTimelineStart()
+	 */
+	public boolean rewind (long itt)
+	{
+		syncTimeline ();
+		return timeline != null && jumpTo (timeline.rewind (grid, itt));
+	}
+
+	/** Goes back to the entry of the timeline before the current one,
+	 * which is the generation before, or the cells as they were before
+	 * the last edit.
+	 *
+	 * @return true if there was an entry to go to; false otherwise
+	 */
+	public boolean undo ()
+	{
+		syncTimeline ();
+		return timeline != null && jumpTo (timeline.undo (grid));
+	}
+
+
+	/** Copies the cells within the given rectangle into a new pattern.
+	 * In the rectangle, x represents the column and y represents the
+	 * row. Cells outside of the bounds of this colony are dead. The
+	 * cells are copied a word of 64 at a time.
+	 * 
+	 * @param area	the cells to copy
+	 * @return the pattern
+	 */
+	public Pattern copy (Rectangle area)
+	{
+		if (universe == null)
+			return grid.copy (area.y, area.x, area.width, area.height);
+
+		Pattern pattern = new Pattern (area.width, area.height);
+		for (int row = 0; row < area.height; row++)
+			for (int w = 0; w < pattern.getStride (); w++)
+				pattern.setWord (row, w, universe.getBits ((long) area.y + row, area.x + 64L * w));
+		return pattern;
+	}
+
+	/** Copies the cells of the given selection into a new pattern the
+	 * size of its bounds. Cells outside of the selection are dead.
+	 * 
+	 * @param select	the cells to copy
+	 * @return the pattern
+	 */
+	public Pattern copy (Selection select)
+	{
+		Rectangle bounds = select.getBounds ();
+		Pattern pattern = copy (bounds);
+		long[] mask = new long [pattern.getStride ()];
+
+		for (int row = 0; row < pattern.getHeight (); row++)
+		{
+			select.getRow (bounds.y + row, mask, bounds.x, null);
+			for (int w = 0; w < mask.length; w++)
+				pattern.setWord (row, w, pattern.getWord (row, w) & mask[w]);
+		}
+		return pattern;
+	}
+
+	/** Copies the cells within the given rectangle into a new pattern,
+	 * then kills them.
+	 * 
+	 * @param area	the cells to cut
+	 * @return the pattern
+	 */
+	public Pattern cut (Rectangle area)
+	{
+		// Pasting the live cells back with XOR kills them
+
+		Pattern pattern = copy (area);
+		paste (pattern, area.y, area.x, Pattern.Mode.XOR);
+		return pattern;
+	}
+
+	/** Copies the cells of the given selection into a new pattern,
+	 * then kills them.
+	 * 
+	 * @param select	the cells to cut
+	 * @return the pattern
+	 */
+	public Pattern cut (Selection select)
+	{
+		Rectangle bounds = select.getBounds ();
+		Pattern pattern = copy (select);
+		paste (pattern, bounds.y, bounds.x, Pattern.Mode.XOR);
+		return pattern;
+	}
+
+	/** Attempts to eliminate all of the cells within the bounds of the 
+	 * given shape. In the given shape, x represents the column and y
+	 * represents the row. Any coordinates that are not within the bounds
+	 * of this colony are ignored.
+	 * 
+	 * The efficiency states the probability that any cell will be
+	 * successfully eradicated. 1.0 indicates complete extermination
+	 * within the given shape. 0.0 indicates the change of absolutely 
+	 * nothing.
+	 * 
+	 * @param select		the shape within which to eradicate cells
+	 * @param efficiency	the probability of any individual cell being successfully eradicated
+	 * @see #setSeed(long)
+	 */
+	public void eradicate (Shape select, double efficiency)
+	{
+		eradicate (select, efficiency, random.nextLong ());
+	}
+
+	/** Attempts to eliminate all of the cells within the bounds of the 
+	 * given shape, in the same way as eradicate (Shape, double), but 
+	 * with the given seed. The same seed always eradicates the same
+	 * cells from the same shape.
+	 * 
+	 * @param select		the shape within which to eradicate cells
+	 * @param efficiency	the probability of any individual cell being successfully eradicated
+	 * @param seed			the seed of the random numbers
+	 */
+	public void eradicate (Shape select, double efficiency, long seed)
+	{
+		fill (select, null, efficiency, false, seed);
+	}
+
+	/** Attempts to eliminate all of the cells of the given selection,
+	 * in the same way as eradicate (Shape, double), but using the
+	 * cells already rasterised by the selection instead of testing every
+	 * cell of its bounding box.
+	 * 
+	 * @param select		the selection within which to eradicate cells
+	 * @param efficiency	the probability of any individual cell being successfully eradicated
+	 * @see #setSeed(long)
+	 */
+	public void eradicate (Selection select, double efficiency)
+	{
+		eradicate (select, efficiency, random.nextLong ());
+	}
+
+	/** Attempts to eliminate all of the cells of the given selection,
+	 * in the same way as eradicate (Shape, double, long), but using the
+	 * cells already rasterised by the selection instead of testing every
+	 * cell of its bounding box.
+	 * 
+	 * @param select		the selection within which to eradicate cells
+	 * @param efficiency	the probability of any individual cell being successfully eradicated
+	 * @param seed			the seed of the random numbers
+	 */
+	public void eradicate (Selection select, double efficiency, long seed)
+	{
+		fill (null, select, efficiency, false, seed);
+	}
+
+	/** Pastes a pattern into this colony, combining its cells with the
+	 * cells under them in the given way. Cells of the pattern that fall
+	 * outside of the bounds of this colony are dropped.
+	 * 
+	 * @param pattern	the pattern to paste
+	 * @param row		the row at which to put the top of the pattern
+	 * @param col		the column at which to put the left of the pattern
+	 * @param mode		the way in which to combine the cells
+	 */
+	public void paste (Pattern pattern, int row, int col, Pattern.Mode mode)
+	{
+		beginEdit ();
+		if (universe == null)
+		{
+			grid.paste (pattern, row, col, mode);
+			commitEdit ();
+			return;
+		}
+
+		// Blend the pattern into each word of the chunks under it
+
+		if (pattern.getWidth () == 0)
+			return;
+
+		long from = col;
+		long to = (long) col + pattern.getWidth ();
+		long first = from >> SparseUniverse.SHIFT;
+		long last = (to - 1) >> SparseUniverse.SHIFT;
+		long head = -1L << from;
+		long tail = -1L >>> -to;
+
+		for (int r = 0; r < pattern.getHeight (); r++)
+		{
+			long y = (long) row + r;
+			for (long cx = first; cx <= last; cx++)
+			{
+				long mask = (cx == first ? head : -1L) & (cx == last ? tail : -1L);
+				long cells = pattern.getBits (r, 64 * cx - col);
+				long old = universe.getWord (y, cx);
+				universe.setWord (y, cx, old & ~mask | mode.apply (old, cells) & mask);
+			}
+		}
+	}
+
+	/** Attempts to populate all of the cells within the bounds of the 
+	 * given shape. In the given shape, x represents the column and y
+	 * represents the row. Any coordinates that are not within the bounds 
+	 * of this colony are ignored.
+	 * 
+	 * The efficiency states the probability that any cell will be
+	 * successfully populated. 1.0 indicates certainty. 0.0
+	 * indicates definite failure.
+	 * 
+	 * @param select		the shape within which to populate cells
+	 * @param efficiency	the probability of any individual cell being successfully populated
+	 * @see #setSeed(long)
+	 */
+	public void populate (Shape select, double efficiency)
+	{
+		populate (select, efficiency, random.nextLong ());
+	}
+
+	/** Attempts to populate all of the cells within the bounds of the 
+	 * given shape, in the same way as populate (Shape, double), but
+	 * with the given seed. The same seed always populates the same
+	 * cells of the same shape.
+	 * 
+	 * @param select		the shape within which to populate cells
+	 * @param efficiency	the probability of any individual cell being successfully populated
+	 * @param seed			the seed of the random numbers
+	 */
+	public void populate (Shape select, double efficiency, long seed)
+	{
+		fill (select, null, efficiency, true, seed);
+	}
+
+	/** Attempts to populate all of the cells of the given selection,
+	 * in the same way as populate (Shape, double), but using the
+	 * cells already rasterised by the selection instead of testing every
+	 * cell of its bounding box.
+	 * 
+	 * @param select		the selection within which to populate cells
+	 * @param efficiency	the probability of any individual cell being successfully populated
+	 * @see #setSeed(long)
+	 */
+	public void populate (Selection select, double efficiency)
+	{
+		populate (select, efficiency, random.nextLong ());
+	}
+
+	/** Attempts to populate all of the cells of the given selection,
+	 * in the same way as populate (Shape, double, long), but using the
+	 * cells already rasterised by the selection instead of testing every
+	 * cell of its bounding box.
+	 * 
+	 * @param select		the selection within which to populate cells
+	 * @param efficiency	the probability of any individual cell being successfully populated
+	 * @param seed			the seed of the random numbers
+	 */
+	public void populate (Selection select, double efficiency, long seed)
+	{
+		fill (null, select, efficiency, true, seed);
+	}
+
+	/** Populates the entire colony based on the specified weight factor.
+	 * If the colony is unbounded, the grid marks out the area to fill.
+	 * A density of 1.0 will set all of the cells to alive.
+	 * A density of 0.0 will set all of the cells to dead.
+	 * 
+	 * @param density	the probability of a cell being alive
+	 * @see #setSeed(long)
+	 */
+	public void populate (double density)
+	{		
+		populate (density, random.nextLong ());
+	}	
+
+	/** Populates the entire colony based on the specified weight factor,
+	 * in the same way as populate (double), but with the given seed. The 
+	 * same seed always gives the same soup on a colony of the same size,
+	 * no matter how many threads the colony uses.
+	 * 
+	 * @param density	the probability of a cell being alive
+	 * @param seed		the seed of the random numbers
+	 */
+	public void populate (double density, long seed)
+	{
+		fill (null, null, density, true, seed);
+	}
+
+	/** Inverts the state of the cell at the specified location.
+	 * If it was alive, it will be set to dead. If it was dead,
+	 * it will be set to alive.
+	 * 
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell 
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	public void flipCell (long row, long col)
+	{
+		beginEdit ();
+		if (universe != null)
+			universe.flipCell (row, col);
+		else
+		{
+			checkCell (row, col);
+			grid.flipCell ((int) row, (int) col);
+		}
+	}
+
+	/** Gets the way in which the edges of this colony behave.
+	 * 
+	 * @return the current boundary
+	 */
+	public Boundary getBoundary ()
+	{
+		return boundary;
+	}
+
+	/** Gets the smallest rectangle that contains every live cell,
+	 * with x as the column and y as the row. The box is kept up to
+	 * date as the colony is edited, and is only worked out again
+	 * after a generation or after a cell on its edge dies.
+	 * 
+	 * @return the bounding box, or null if every cell is dead
+	 * @throws ArithmeticException if an unbounded colony has spread
+	 * beyond the range of an int
+	 */
+	public Rectangle getBounds ()
+	{
+		if (universe == null)
+			return grid.getBounds ();
+
+		long[] box = universe.getBounds ();
+		if (box == null)
+			return null;
+		return new Rectangle (Math.toIntExact (box[1]), Math.toIntExact (box[0]),
+				Math.toIntExact (box[3] - box[1] + 1), Math.toIntExact (box[2] - box[0] + 1));
+	}
+
+	/** Gets the cell at the specified location.
+	 * 
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return true if the cell is alive; false otherwise
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	public boolean getCell (long row, long col)
+	{		
+		if (universe != null)
+			return universe.getCell (row, col);
+
+		checkCell (row, col);
+		return grid.getCell ((int) row, (int) col);
+	}
+
+	/** Gets the number of chunks of 64 by 64 cells that are
+	 * allocated for an unbounded colony.
+	 * 
+	 * @return the number of chunks, or 0 if the colony is bounded
+	 */
+	public int getChunkCount ()
+	{
+		return universe != null ? universe.getChunkCount () : 0;
+	}
+
+	
+	
+
+	/** Calculates the index of the column that contains 
+	 * the given x-coordinate, using the colony's current 
+	 * x-offset value.
+	 *  
+	 * @param x			the x-coordinate
+	 * @return the column index
+	 */
+	public int getCol (int x)
+	{
+		return Math.floorDiv (x - offset.x, zoom); 
+	}
+
+	/** Gets the first generation of the cycle that this colony has
+	 * settled into. If the history was cleared after the cycle had
+	 * already begun, this is the first generation seen afterwards.
+	 * 
+	 * @return the generation, or -1 if no cycle has been found
+	 * @see #getPeriod()
+	 */
+	public long getCycleStart ()
+	{
+		return cycleStart;
+	}
+
+	/** Gets the number of rows in this colony.
+	 * 
+	 * @return the height of this colony
+	 */
+	public int getHeight ()
+	{
+		return grid.getHeight ();
+	}
+
+	/** Gets the engine used to advance this colony.
+	 * 
+	 * @return the current engine
+	 */
+	public Engine getEngine ()
+	{
+		return engine;
+	}
+
+	/** Gets the current iteration, or generation,
+	 * of this colony.
+	 * 
+	 * @return the current iteration
+	 */
+	public long getItt ()
+	{
+		return iteration;
+	}
+
+	/** Gets the period of the cycle that this colony has settled
+	 * into, such as 1 for still lifes and 2 for blinkers. A cycle is
+	 * suspected once a generation repeats one of the last 1024 generations,
+	 * which are remembered as 64-bit hashes, and found once the cells
+	 * come back exactly one period later. The history is cleared 
+	 * whenever the colony is edited or its rule is changed, and patterns
+	 * that move, like gliders, never repeat exactly.
+	 * 
+	 * @return the period, or 0 if no cycle has been found
+	 * @see #getCycleStart()
+	 */
+	public int getPeriod ()
+	{
+		return period;
+	}
+
+	/** Gets the number of live cells in this colony. The count is
+	 * kept up to date as the colony is edited and advanced, so this
+	 * takes constant time, apart from adding up the counts of the 
+	 * tiles once after each generation.
+	 * 
+	 * @return the population
+	 */
+	public long getPopulation ()
+	{
+		return universe != null ? universe.getPopulation () : grid.getPopulation ();
+	}
+
+	/** Gets the number of threads used to advance this colony.
+	 * 
+	 * @return the parallelism level
+	 */
+	public int getParallelism ()
+	{
+		return parallelism;
+	}
+
+	/** Gets the number of tiles that were skipped during the last
+	 * generation because nothing around them changed. The grid
+	 * is divided into tiles of 64 by 64 cells.
+	 * 
+	 * @return the number of skipped tiles
+	 * @see #getTileCount()
+	 */
+	public int getSkippedTiles ()
+	{
+		return skippedTiles;
+	}
+
+	/** Gets where the cells of this colony are kept.
+	 * 
+	 * @return the current storage
+	 */
+	public Storage getStorage ()
+	{
+		return storage;
+	}
+
+	/** Gets the number of tiles that this colony is divided into.
+	 * 
+	 * @return the number of tiles
+	 * @see #getSkippedTiles()
+	 */
+	public int getTileCount ()
+	{
+		return grid.getTileCount ();
+	}
+
+	/** Gets the most memory that the timeline may take.
+	 *
+	 * @return the budget, in bytes, or 0 if there is no timeline
+	 */
+	public long getTimelineBudget ()
+	{
+		return timelineBudget;
+	}
+
+	/** Gets the earliest generation still kept in the timeline.
+	 *
+	 * @return the generation, or -1 if nothing has been recorded
+	 */
+	public long getTimelineStart ()
+	{
+		return timeline == null ? -1 : timeline.getFirst ();
+	}
+
+	/** Gets the rule that this colony follows.
+	 * 
+	 * @return the current rule
+	 */
+	public Rule getRule ()
+	{
+		return rule;
+	}
+
+	/** Calculates the index of the row that contains 
+	 * the given y-coordinate, using the colony's current 
+	 * y-offset value.
+	 * 	 
+	 * @param y			the y-coordinate
+	 * @return the row index
+	 */
+	public int getRow (int y)
+	{
+		return Math.floorDiv (y - offset.y, zoom); 
+	}
+
+	/** Returns the dimensions of this colony in terms of width and height.
+	 * In other words, the number of columns by the number of rows.
+	 * 
+	 * @return the size of this colony
+	 */
+	public Dimension getSize ()
+	{
+		return new Dimension (grid.getWidth (), grid.getHeight ());
+	}
+
+	/** Returns the number of columns in this colony.
+	 * 
+	 * @return the width of this colony
+	 */
+	public int getWidth ()
+	{
+		return grid.getWidth ();
+	}
+
+	/** Calculates the x-coordinate of the given column, using
+	 * the current x-offset value.
+	 *  
+	 * @param col		the column index
+	 * @return the x-coordinate
+	 */
+	public int getX (int col)
+	{
+		return (int)Math.round(col * zoom) + offset.x;
+	}
+
+	/** Calculates the y-coordinate of the given row, using 
+	 * the current y-offset value.
+	 * 	 
+	 * @param row		the row index
+	 * @return the y-coordinate
+	 */
+	public int getY (int row)
+	{
+		return (int)Math.round(row * zoom) + offset.y;
+	}		
+
+	
+	/** Gets the current zoom for this colony.
+	 * 
+	 * @return the current zoom
+	 */
+	public int getZoom ()
+	{
+		return zoom;
+	}
+
+	/** Determines whether the given column is
+	 * within the boundaries of this colony. Every 
+	 * column is valid if the colony is unbounded.
+	 * 
+	 * @param col	the column to be checked
+	 * @return true if within bounds; false otherwise
+	 */
+	public boolean colValid (long col)
+	{
+		return universe != null || col >= 0 && col < grid.getWidth ();
+	}
+
+	/** Determines whether the given row is
+	 * within the boundaries of this colony. Every 
+	 * row is valid if the colony is unbounded.
+	 * 
+	 * @param row	the row to be checked
+	 * @return true if within bounds; false otherwise
+	 */
+	public boolean rowValid (long row)
+	{
+		return universe != null || row >= 0 && row < grid.getHeight ();
+	}
+
+	/** Converts a probability into a fraction of 2^32, rounded down,
+	 * for use with randomWord.
+	 * 
+	 * @param p		the probability
+	 * @return the odds, from 0 to 2^32
+	 */
+	private static long odds (double p)
+	{
+		if (p >= 1)
+			return 1L << 32;
+		if (p > 0)
+			return (long) (p * 0x1p32);
+		return 0;
+	}
+
+	/** Generates 64 random cells at once, each of which is alive with
+	 * the given odds. The bits of the odds are gone through from the
+	 * lowest to the highest, combining the cells so far with a random 
+	 * word: OR for a 1 bit, which takes the probability p to (1 + p) / 2,
+	 * and AND for a 0 bit, which takes it to p / 2. This takes one random
+	 * word for each bit from the lowest 1 bit up, so it is fastest for 
+	 * round probabilities such as 0.5 or 0.25.
+	 * 
+	 * @param random	the generator to draw from
+	 * @param odds		the probability of each cell being alive, out of 2^32
+	 * @return the packed cells
+	 */
+	private static long randomWord (SplittableRandom random, long odds)
+	{
+		if (odds >= 1L << 32)
+			return -1L;
+
+		long bits = 0;
+		for (int i = Long.numberOfTrailingZeros (odds); i < 32; i++)
+			if ((odds >>> i & 1) != 0)
+				bits |= random.nextLong ();
+			else
+				bits &= random.nextLong ();
+		return bits;
+	}
+
+	/** Creates an empty grid, kept in the current storage.
+	 * 
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @return the new grid
+	 * @throws UncheckedIOException if a mapped grid could not be created
+	 */
+	private BitGrid newGrid (int width, int height)
+	{
+		if (storage != Storage.MAPPED)
+			return new BitGrid (width, height, storage == Storage.OFF_HEAP);
+
+		// The mapping outlives the file, where the file system allows it
+
+		try
+		{
+			File file = File.createTempFile ("colony", ".grid");
+			BitGrid grid = new BitGrid (width, height, file);
+			if (!file.delete ())
+				file.deleteOnExit ();
+			return grid;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException ("Could not map a grid of " + width + " x " + height, e);
+		}
+	}
+
+	/** Moves the live cells of the grid into the sparse universe,
+	 * at the same coordinates, leaving the grid empty. 
+	 */
+	private void moveGridToUniverse ()
+	{
+		long[] words = new long [grid.getStride ()];
+		for (int row = 0; row < grid.getHeight (); row++)
+		{
+			grid.getRow (row, words);
+			addToUniverse (row, 0, words);
+		}
+		grid.clear ();
+	}
+
+	/** Brings the cells of a packed row to life in the sparse universe,
+	 * a word at a time, with the first cell of the row at the given column.
+	 * 
+	 * @param row		the row of the cells
+	 * @param col		the column of the first cell
+	 * @param words		the packed cells
+	 */
+	private void addToUniverse (long row, long col, long[] words)
+	{
+		long cx = col >> SparseUniverse.SHIFT;
+		int shift = (int) col & 63;
+
+		for (int w = 0; w < words.length; w++, cx++)
+		{
+			long bits = words[w];
+			if (bits == 0)
+				continue;
+
+			universe.setWord (row, cx, universe.getWord (row, cx) | bits << shift);
+			if (shift != 0)
+				universe.setWord (row, cx + 1, universe.getWord (row, cx + 1) | bits >>> -shift);
+		}
+	}
+
+	/** Makes sure that the given cell is within the bounds of
+	 * a bounded colony.
+	 * 
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	private void checkCell (long row, long col)
+	{
+		if (!rowValid (row) || !colValid (col))
+			throw new IndexOutOfBoundsException ("Cell out of bounds: " + row + ", " + col);
+	}
+
+	/** Sets cells at random within the given shape, or within the whole
+	 * grid, a band of 64 rows at a time. Each band draws from its own
+	 * generator, split off from the seed in order, so the cells only
+	 * depend on the seed, and not on how the bands are shared out between
+	 * threads. Packed grids are filled a word of 64 cells at a time.
+	 * 
+	 * @param select		the shape within which to set cells, or null
+	 * @param selection	the selection within which to set cells, or null
+	 * to set every cell of the grid to a random state if select is also null
+	 * @param density		the probability of any individual cell being set
+	 * @param state			the state to which to set cells
+	 * @param seed			the seed of the random numbers
+	 */
+	private void fill (Shape select, Selection selection, double density, boolean state, long seed)
+	{
+		beginEdit ();
+
+		int up = 0;
+		int down = grid.getHeight ();
+		int left = 0;
+		int right = grid.getWidth ();
+
+		if (select != null || selection != null)
+		{
+			Rectangle bound = select != null ? select.getBounds () : selection.getBounds ();
+			if (universe != null)
+			{
+				up = bound.y;
+				down = bound.y + bound.height;
+				left = bound.x;
+				right = bound.x + bound.width;
+			}
+			else
+			{
+				up = Math.max (bound.y, 0);
+				down = Math.min (bound.y + bound.height, down);
+				left = Math.max (bound.x, 0);
+				right = Math.min (bound.x + bound.width, right);
+			}
+		}
+
+		if (up >= down || left >= right)
+			return;
+
+		// Split off one generator for each band of rows
+
+		int first = Math.floorDiv (up, 64);
+		SplittableRandom root = new SplittableRandom (seed);
+		SplittableRandom[] bands = new SplittableRandom [Math.floorDiv (down - 1, 64) - first + 1];
+		for (int i = 0; i < bands.length; i++)
+			bands[i] = root.split ();
+
+		// The sparse universe can only be written by a single thread
+
+		FillBand task = new FillBand (select, selection, odds (density), state, up, down, left, right, bands, first);
+		if (pool != null && universe == null)
+			pool.invoke (task);
+		else
+			task.fill (0, bands.length);
+		commitEdit ();
+	}
+
+	/** Attempts to load all of the data structures and variables from
+	 * the specified save String. Throws an exception if there is a 
+	 * formatting error.
+	 * 
+	 * @param save	the correctly formated save String
+	 * @return the view kept in the save
+	 * @throws Exception if there was a formatting error
+	 * @see #load(Reader)
+	 */
+	public View load (String save) throws Exception
+	{
+		return load (new StringReader (save));
+	}
+
+	/** Attempts to load all of the data structures and variables from
+	 * a save read from the given stream, encoded in UTF-8, in the same
+	 * way as load (Reader). The stream is not closed.
+	 * 
+	 * @param in	the stream of a correctly formated save
+	 * @return the view kept in the save
+	 * @throws IOException if the stream could not be read
+	 * @throws Exception if there was a formatting error
+	 */
+	public View load (InputStream in) throws Exception
+	{
+		return load (new InputStreamReader (in, StandardCharsets.UTF_8));
+	}
+
+	/** Attempts to load all of the data structures and variables from
+	 * a save read from the given Reader, in a single pass. The rows of
+	 * the grid are packed 64 cells to a word as they are read, and
+	 * written straight into a grid in the storage of this colony, so
+	 * only the other lines are ever made into Strings, and neither the
+	 * whole save nor the whole grid is ever held on the heap at once. Throws an exception if there is a 
+	 * formatting error, with a message that starts with the line and
+	 * column at which it was found. The Reader is not closed.
+	 * 
+	 * The offset, zoom and colors of the save are not applied to this
+	 * colony, since they belong to whoever shows it, but are returned
+	 * as a view to be passed to setView. Any that the save leaves out
+	 * keep the values of a new colony.
+	 * 
+	 * The save of an unbounded colony gives the cell at which its grid
+	 * starts as the origin, and the size of the grid of the colony as the
+	 * window, since its rows hold every live cell rather than the grid.
+	 * 
+	 * @param in	the Reader of a correctly formated save
+	 * @return the view kept in the save
+	 * @throws IOException if the Reader could not be read
+	 * @throws Exception if there was a formatting error
+	 */
+	public View load (Reader in) throws Exception
+	{
+		// Declaration of Variables
+
+		SaveReader reader = new SaveReader (in);
+		View view = new View ();
+		Layout layout = new Layout ();
+		BitGrid cells = null;
+		int rows = -1;
+		int width = -1;
+		int line = 0;		
+
+		forgetHistory ();
+		forgetTimeline ();
+		resetSettings ();
+
+		// Iterate through the lines of the save
+
+		try
+		{
+			for (int c = reader.peek (); c >= 0; c = reader.peek ())
+			{
+				line = reader.getLine ();
+
+				if (rows >= 0 && Character.isDigit (c)) // This is a row of the grid
+				{
+					long[] row = reader.readRow (width);
+					if (width < 0)
+						width = reader.getColumn ();
+					cells = addRow (cells, rows++, row, width, layout);
+				}
+				else
+				{
+					if (rows >= 0) // The grid has ended
+					{
+						storeGrid (cells, rows, width, layout);
+						cells = null;
+						rows = -1;
+					}
+
+					String text = reader.readLine ();
+					if (text.startsWith ("grid :")) // The grid follows
+					{
+						rows = 0;
+						width = -1;
+					}
+					else if (!text.startsWith (";") && !text.isEmpty ()) // Line starting with ";" are comments
+						parseLine (text, view, layout);
+				}
+			}
+
+			if (rows >= 0)
+			{
+				line = reader.getLine ();
+				storeGrid (cells, rows, width, layout);
+			}
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new Exception ("" + (line + 1) + "," + (reader.getColumn () + 1) + " :\n" + e.getMessage());
+		}
+		return view;
+	}
+
+	/** Called by the load methods before reading a save. Puts the
+	 * rule back to B3/S23 and the boundary back to dead edges, so that
+	 * a save that leaves them out does not keep the settings of whatever
+	 * was loaded before. The cells are about to be replaced, so the 
+	 * sparse universe of an unbounded colony is simply let go of.
+	 */
+	private void resetSettings ()
+	{
+		rule = Rule.LIFE;
+		universe = null;
+		boundary = Boundary.DEAD;
+	}
+
+	/** Called by the load method for each row of the grid as it is
+	 * read. The row is written straight into a grid in the storage of
+	 * this colony, which starts small and doubles in height whenever
+	 * it fills up, so that loading a grid kept off the heap never needs
+	 * the heap to hold it. If this colony is unbounded, the row is put
+	 * into the sparse universe from the origin instead.
+	 * 
+	 * @param cells		the grid holding the rows read so far, or null
+	 * @param row		the index of the row
+	 * @param bits		the packed cells of the row
+	 * @param width		the number of columns
+	 * @param layout	the origin and window of the save
+	 * @return the grid holding the rows read so far, or null if
+	 * this colony is unbounded
+	 */
+	private BitGrid addRow (BitGrid cells, int row, long[] bits, int width, Layout layout)
+	{
+		if (universe != null)
+		{
+			if (row == 0)
+				universe.clear ();
+			addToUniverse (layout.row + row, layout.col, bits);
+			return null;
+		}
+
+		if (cells == null || row == cells.getHeight ())
+		{
+			BitGrid bigger = newGrid (width, cells == null ? 64 : (int) Math.min (2L * row, Integer.MAX_VALUE));
+			if (cells != null)
+				bigger.copyFrom (cells);
+			cells = bigger;
+		}
+		cells.blendRow (row, bits, null);
+		return cells;
+	}
+
+	/** Called by the load method once the rows of the grid have
+	 * been read. Makes the grid that they were written into the grid
+	 * of this colony, cut down to the rows that were read. If this
+	 * colony is unbounded, the cells are already in the sparse universe,
+	 * and the grid is left empty, with the size of the window.
+	 * 
+	 * @param cells		the grid holding the rows, or null
+	 * @param rows		the number of rows
+	 * @param width		the number of columns
+	 * @param layout	the origin and window of the save
+	 * @throws Exception if there are no rows
+	 */
+	private void storeGrid (BitGrid cells, int rows, int width, Layout layout) throws Exception
+	{
+		if (rows == 0)
+			throw new Exception ("Missing grid rows");
+
+		if (universe != null)
+		{
+			grid = newGrid (layout.width < 0 ? width : layout.width, layout.height < 0 ? rows : layout.height);
+			return;
+		}
+
+		if (cells.getHeight () != rows)
+		{
+			BitGrid exact = newGrid (width, rows);
+			exact.copyFrom (cells);
+			cells = exact;
+		}
+		grid = cells;
+	}
+
+	/** Determines whether a stream holds a binary save rather than a text
+	 * save, by looking at its first bytes. The stream is left where it was.
+	 * 
+	 * @param in	the stream of a save, which must support mark
+	 * @return true if the save is binary; false otherwise
+	 * @throws IOException if the stream could not be read
+	 * @throws IllegalArgumentException if the stream does not support mark
+	 */
+	public static boolean isBinary (InputStream in) throws IOException
+	{
+		if (!in.markSupported ())
+			throw new IllegalArgumentException ("The stream must support mark");
+
+		in.mark (MAGIC.length);
+		try
+		{
+			for (int i = 0; i < MAGIC.length; i++)
+				if (in.read () != (MAGIC[i] & 0xFF))
+					return false;
+			return true;
+		}
+		finally
+		{
+			in.reset ();
+		}
+	}
+
+	/** Attempts to load all of the data structures and variables from
+	 * a binary save, as written by writeBinary. The rows are unpacked
+	 * straight into a new grid one at a time, so the save is never held 
+	 * in memory as a whole. Throws an exception if the save is corrupt
+	 * or was written by a newer version. The stream is not closed.
+	 * Like load, the offset, zoom and colors are returned as a view
+	 * rather than applied to this colony.
+	 * 
+	 * @param in	the stream of a binary save
+	 * @return the view kept in the save
+	 * @throws IOException if the stream could not be read
+	 * @throws Exception if the save is corrupt
+	 */
+	public View loadBinary (InputStream in) throws Exception
+	{
+		DataInputStream data = new DataInputStream (in);
+		View view = new View ();
+		int row = -1;
+
+		forgetHistory ();
+		forgetTimeline ();
+		resetSettings ();
+
+		try
+		{
+			// Header
+
+			for (int i = 0; i < MAGIC.length; i++)
+				if (data.readByte () != MAGIC[i])
+					throw new Exception ("Not a binary save");
+
+			int version = data.readUnsignedByte ();
+			if (version > VERSION)
+				throw new Exception ("Unsupported save version " + version);
+
+			iteration = data.readLong ();
+			view.offset.x = data.readInt ();
+			view.offset.y = data.readInt ();
+			view.zoom = data.readInt ();
+			rule = Rule.parse (data.readUTF ());
+			Boundary edges = Boundary.valueOf (data.readUTF ());
+			view.alive = new Color (data.readInt ());
+			view.aliveSelect = new Color (data.readInt ());
+			view.dead = new Color (data.readInt ());
+			view.deadSelect = new Color (data.readInt ());
+			view.gridLines = new Color (data.readInt ());
+			setBoundary (edges);
+
+			Layout layout = new Layout ();
+			if (universe != null && version > 1)
+			{
+				layout.row = data.readLong ();
+				layout.col = data.readLong ();
+				layout.width = data.readInt ();
+				layout.height = data.readInt ();
+				if (layout.width <= 0 || layout.height <= 0)
+					throw new Exception ("Invalid window size " + layout.width + " x " + layout.height);
+			}
+
+			int width = data.readInt ();
+			int height = data.readInt ();
+			if (width <= 0 || height <= 0)
+				throw new Exception ("Invalid grid size " + width + " x " + height);
+
+			int type = data.readUnsignedByte ();
+			if (type >= Compression.values ().length)
+				throw new Exception ("Unknown compression " + type);
+			Compression compression = Compression.values ()[type];
+			if (compression == Compression.DEFLATE)
+				data = new DataInputStream (new InflaterInputStream (in));
+
+			// Rows, unpacked a byte at a time into words, and put into the
+			// sparse universe from the origin if the colony is unbounded
+
+			BitGrid cells = universe == null ? newGrid (width, height) : null;
+			byte[] bytes = new byte [(width + 7) / 8];
+			long[] words = new long [(width + 63) >>> 6];
+			if (universe != null)
+				universe.clear ();
+
+			for (row = 0; row < height; row++)
+			{
+				if (compression == Compression.RLE)
+					unpackRow (data, bytes);
+				else
+					data.readFully (bytes);
+
+				Arrays.fill (words, 0);
+				for (int i = 0; i < bytes.length; i++)
+					words[i >> 3] |= (bytes[i] & 0xFFL) << ((i & 7) << 3);
+				if ((width & 63) != 0)
+					words[words.length - 1] &= (1L << width) - 1;
+				if (cells != null)
+					cells.blendRow (row, words, null);
+				else
+					addToUniverse (layout.row + row, layout.col, words);
+			}
+
+			if (cells == null)
+				cells = newGrid (layout.width < 0 ? width : layout.width, layout.height < 0 ? height : layout.height);
+			grid = cells;
+		}
+		catch (EOFException e)
+		{
+			throw new Exception (row < 0 ? "The header is cut short" : "The grid is cut short at row " + (row + 1));
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new Exception (row < 0 ? e.getMessage () : "Row " + (row + 1) + " : " + e.getMessage ());
+		}
+		return view;
+	}
+
+	/** Called by the loadBinary method. Reads a row of bytes that 
+	 * was run-length encoded by packRow.
+	 * 
+	 * @param in		the stream to read from
+	 * @param bytes		the row to fill
+	 * @throws IOException if the stream could not be read
+	 * @throws Exception if a run goes past the end of the row
+	 */
+	private static void unpackRow (DataInputStream in, byte[] bytes) throws Exception
+	{
+		for (int i = 0; i < bytes.length;)
+		{
+			int control = in.readUnsignedByte ();
+			int count = control < 128 ? control + 1 : control - 126;
+			if (i + count > bytes.length)
+				throw new Exception ("Run goes past the end of the row");
+
+			if (control < 128)
+				in.readFully (bytes, i, count);
+			else
+				Arrays.fill (bytes, i, i + count, in.readByte ());
+			i += count;
+		}
+	}
+
+	/** Attempts to load a pattern in the RLE format read from the given
+	 * stream, encoded in UTF-8, in the same way as loadRLE (Reader).
+	 * The stream is not closed.
+	 * 
+	 * @param in	the stream of a pattern
+	 * @throws IOException if the stream could not be read
+	 * @throws Exception if there was a formatting error
+	 */
+	public void loadRLE (InputStream in) throws Exception
+	{
+		loadRLE (new InputStreamReader (in, StandardCharsets.UTF_8));
+	}
+
+	/** Attempts to load a pattern in the RLE format used by most
+	 * pattern collections, read from the given Reader in a single pass. 
+	 * Lines starting with "#" are skipped, then the header gives the 
+	 * size of the pattern and, optionally, its rule, which is B3/S23
+	 * if it is left out:
+	 * <pre>
+	 * x = [int width], y = [int height], rule = [rulestring]
+	 * </pre>
+	 * The cells follow as runs of a count and a tag, where "b" is dead,
+	 * "o" or any other letter is alive, and "$" ends a row; a missing
+	 * count is 1, whitespace is ignored, and "!" ends the pattern. The 
+	 * runs are decoded straight into the words of a new grid, a row at 
+	 * a time, without making any Strings.
+	 * 
+	 * The grid is the size of the pattern, or of the current grid if that
+	 * is larger, with the pattern in the middle. The iteration goes back 
+	 * to 0, and the other settings are kept. Throws an exception if there
+	 * is a formatting error, with a message that starts with the line and
+	 * column at which it was found. The Reader is not closed.
+	 * 
+	 * @param in	the Reader of a pattern
+	 * @throws IOException if the Reader could not be read
+	 * @throws Exception if there was a formatting error
+	 */
+	public void loadRLE (Reader in) throws Exception
+	{
+		SaveReader reader = new SaveReader (in);
+		int line = 0;
+
+		forgetHistory ();
+		forgetTimeline ();
+
+		try
+		{
+			// Skip the comments, then read the header
+
+			String header = "";
+			while (reader.peek () >= 0 && header.isEmpty ())
+			{
+				line = reader.getLine ();
+				header = reader.readLine ().trim ();
+				if (header.startsWith ("#"))
+					header = "";
+			}
+
+			int width = -1;
+			int height = -1;
+			Rule pattern = Rule.LIFE;
+
+			int at = header.indexOf ("rule"); // The rule comes last, and may have commas
+			if (at >= 0)
+			{
+				String value = header.substring (header.indexOf ('=', at) + 1);
+				pattern = Rule.parse (value.split (":")[0]); // Ignore any topology after ":"
+				header = header.substring (0, at);
+			}
+
+			for (String item : header.split (","))
+			{
+				String[] parts = item.split ("=");
+				if (parts.length != 2)
+				{
+					if (item.trim ().isEmpty ())
+						continue;
+					throw new Exception ("Invalid RLE header");
+				}
+
+				if (parts[0].trim ().equals ("x"))
+					width = Integer.parseInt (parts[1].trim ());
+				else if (parts[0].trim ().equals ("y"))
+					height = Integer.parseInt (parts[1].trim ());
+			}
+			if (width < 0 || height < 0)
+				throw new Exception ("Missing pattern size in RLE header");
+
+			// Decode the runs into a grid with the pattern in the middle
+
+			BitGrid cells = newGrid (Math.max (width, grid.getWidth ()), Math.max (height, grid.getHeight ()));
+			int top = (cells.getHeight () - height) / 2;
+			int left = (cells.getWidth () - width) / 2;
+			long[] words = new long [cells.getStride ()];
+			boolean empty = true;
+			int row = 0;
+			int col = 0;
+			int count = 0;
+
+			for (int c = reader.read (); c >= 0 && c != '!'; c = reader.read ())
+			{
+				line = reader.getLine ();
+
+				if (c >= '0' && c <= '9')
+				{
+					if (count > (Integer.MAX_VALUE - 9) / 10)
+						throw new Exception ("Run is too long");
+					count = 10 * count + c - '0';
+				}
+				else if (!Character.isWhitespace (c))
+				{
+					int run = Math.max (count, 1);
+					count = 0;
+
+					if (c == '$') // End of the row
+					{
+						if (!empty)
+						{
+							cells.blendRow (top + row, words, null);
+							Arrays.fill (words, 0);
+						}
+						empty = true;
+						row += run;
+						col = 0;
+					}
+					else if (Character.isLetter (c) || c == '.')
+					{
+						if (run > width - col || row >= height)
+							throw new Exception ("Pattern is larger than its header");
+						if (c != 'b' && c != '.') // Any state but 0 is alive
+						{
+							setRun (words, left + col, left + col + run);
+							empty = false;
+						}
+						col += run;
+					}
+					else
+						throw new Exception ("Unexpected character '" + (char) c + "'");
+				}
+			}
+
+			if (!empty)
+				cells.blendRow (top + row, words, null);
+
+			grid = cells;
+			rule = pattern;
+			iteration = 0;
+			if (universe != null)
+			{
+				universe.clear ();
+				moveGridToUniverse ();
+			}
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new Exception ("" + (line + 1) + "," + (reader.getColumn () + 1) + " :\n" + e.getMessage());
+		}
+	}
+
+	/** Called by the loadRLE method. Sets a run of bits in a row.
+	 * 
+	 * @param words		the packed row
+	 * @param from		the first bit, inclusive
+	 * @param to		the last bit, exclusive
+	 */
+	private static void setRun (long[] words, int from, int to)
+	{
+		if (from >= to)
+			return;
+
+		int first = from >>> 6;
+		int last = (to - 1) >>> 6;
+		if (first == last)
+			words[first] |= (-1L << from) & (-1L >>> -to);
+		else
+		{
+			words[first] |= -1L << from;
+			for (int w = first + 1; w < last; w++)
+				words[w] = -1L;
+			words[last] |= -1L >>> -to;
+		}
+	}
+
+	/** Called by the load method. This method interprets and acts upon 
+	 * lines of data concerning variable assignments.
+	 * 
+	 * @param line			the line to be interpreted
+	 * @param view			the view being read, which takes the offset,
+	 * zoom and colors
+	 * @param layout		the origin and window being read
+	 * @throws Exception thrown if there was a parsing error; some possibilities
+	 * include attempting to parse a letter to an integer, or trying to access a
+	 * parameter that is out of bounds because there was an incorrect number of parameters
+	 * in a line.
+	 */
+	private void parseLine (String line, View view, Layout layout) throws Exception
+	{
+		String[] parameters = line.split(" ");
+
+		// Zoom input: "zoom = [int]"
+		if (parameters[0].equals ("zoom"))					
+			view.zoom = Integer.parseInt(parameters[2]);
+
+		// Iteration input: "iteration = [long]"
+		else if (parameters[0].equals("iteration"))
+			iteration = Long.parseLong(parameters[2]);
+
+		// Rule input: "rule = [rulestring]"
+		else if (parameters[0].equals("rule"))
+			rule = Rule.parse (parameters[2]);
+
+		// Boundary input: "boundary = [DEAD|TORUS|UNBOUNDED]"
+		else if (parameters[0].equals("boundary"))
+			setBoundary (Boundary.valueOf (parameters[2]));
+
+		// Offset input: "offset = [int x] [int y]"
+		else if (parameters[0].equals("offset"))
+		{
+			view.offset.x = Integer.parseInt (parameters[2]);
+			view.offset.y = Integer.parseInt (parameters[3]);
+		}
+
+		// Origin input: "origin = [long row] [long col]"
+		else if (parameters[0].equals("origin"))
+		{
+			layout.row = Long.parseLong (parameters[2]);
+			layout.col = Long.parseLong (parameters[3]);
+		}
+
+		// Window input: "window = [int width] [int height]"
+		else if (parameters[0].equals("window"))
+		{
+			layout.width = Integer.parseInt (parameters[2]);
+			layout.height = Integer.parseInt (parameters[3]);
+			if (layout.width <= 0 || layout.height <= 0)
+				throw new Exception ("Invalid window size");
+		}
+
+		// Color input: "colorName = [int red] [int green] [int blue]"
+		else if (parameters.length == 5)
+		{
+			int r = Integer.parseInt (parameters[2]);
+			int g = Integer.parseInt(parameters[3]);
+			int b = Integer.parseInt(parameters[4]);
+
+			Color color = new Color (r,g,b);			
+
+			if (parameters[0].equals ("alive"))
+				view.alive = color;
+			else if (parameters[0].equals("dead"))
+				view.dead = color;
+			else if (parameters[0].equals("aliveSelect"))
+				view.aliveSelect = color;
+			else if (parameters[0].equals("deadSelect"))
+				view.deadSelect = color;
+			else if (parameters[0].equals("gridLines"))
+				view.gridLines = color;
+		}
+		else
+		{
+			throw new Exception ("Unrecognized command");
+		}
+	}
+	
+	/** Sets the way in which the edges of this colony behave. 
+	 * When a colony becomes unbounded, its cells are moved into 
+	 * a sparse universe of 64 by 64 chunks, which only allocates
+	 * memory for the areas that have live cells. When it becomes
+	 * bounded again, cells outside of the grid are dropped.
+	 * A torus keeps the same grid as dead edges, but wraps
+	 * around at the edges when advancing. Ignores null values.
+	 * 
+	 * @param boundary	the new boundary
+	 */
+	public void setBoundary (Boundary boundary)
+	{
+		if (boundary == null || boundary == this.boundary)
+			return;
+
+		if (boundary == Boundary.UNBOUNDED)
+		{
+			universe = new SparseUniverse ();
+			moveGridToUniverse ();
+			next = null;
+		}
+		else if (universe != null)
+		{
+			for (int row = 0; row < grid.getHeight (); row++)
+				for (int col = 0; col < grid.getWidth (); col++)
+					grid.setCell (row, col, universe.getCell (row, col));
+			universe = null;
+		}
+
+		// The edges are stepped differently now, so nothing can be skipped
+
+		grid.markAll ();
+		this.boundary = boundary;
+		forgetHistory ();
+		forgetTimeline ();
+	}
+
+	/** Sets the state of the cell at the specified location.
+	 * 
+	 * @param row		the row of the cell
+	 * @param col	 	the column of the cell
+	 * @param state		the state to which to set the cell
+	 * @throws IndexOutOfBoundsException if the column or
+	 * row is out of bounds
+	 */
+	public void setCell (long row, long col, boolean state)
+	{		
+		beginEdit ();
+		if (universe != null)
+			universe.setCell (row, col, state);
+		else
+		{
+			checkCell (row, col);
+			grid.setCell ((int) row, (int) col, state);
+		}
+	}
+
+	/** Sets the engine used to advance this colony.
+	 * Ignores null values.
+	 * 
+	 * @param engine	the new engine
+	 */
+	public void setEngine (Engine engine)
+	{
+		if (engine != null)
+			this.engine = engine;
+	}
+
+	/** Sets the current iteration, or generation.
+	 * 
+	 * @param itt	the new iteration value
+	 */
+	public void setItt (long itt)
+	{
+		if (period > 0)
+			cycleStart += itt - iteration;
+		candidateItt += itt - iteration;
+		iteration = itt;
+		forgetTimeline ();
+	}
+
+	/** Sets the number of threads used to advance this colony. 
+	 * With a level greater than 1, each generation is split into 
+	 * horizontal bands of rows that are stepped in parallel on a
+	 * ForkJoinPool of that size. The result is identical to that
+	 * of stepping on a single thread. Ignores values less than 1.
+	 * 
+	 * @param threads	the new parallelism level
+	 */
+	public void setParallelism (int threads)
+	{
+		if (threads > 0 && threads != parallelism)
+		{
+			if (pool != null)
+				pool.shutdown ();
+			pool = threads > 1 ? new ForkJoinPool (threads) : null;
+			parallelism = threads;
+		}
+	}
+
+	/** Sets the rule that this colony follows, such as
+	 * Rule.LIFE or Rule.parse ("B36/S23"). Ignores null values.
+	 * 
+	 * @param rule	the new rule
+	 */
+	public void setRule (Rule rule)
+	{
+		if (rule != null && !rule.equals (this.rule))
+		{
+			this.rule = rule;
+			forgetHistory ();
+		}
+	}
+
+	/** Sets the seed from which populate and eradicate draw, when they
+	 * are not given one of their own. After setting the same seed, the 
+	 * same calls give the same cells.
+	 * 
+	 * @param seed	the new seed
+	 */
+	public void setSeed (long seed)
+	{
+		random = new SplittableRandom (seed);
+	}
+
+	/** Resizes the colony using (0,0) as an anchor point. Any
+	 * existing cells that are within the bounds of the new colony
+	 * grid will be copied over. Does nothing if any of the dimensions
+	 * are less than or equal to 0.
+	 * 
+	 * @param size	the dimensions of the new colony
+	 */
+	public void setSize (Dimension size)
+	{		
+		if (size.width > 0 && size.height > 0)
+		{
+			if (size.width != getWidth() || size.height != getHeight())
+			{
+				BitGrid temp = newGrid (size.width, size.height);
+				temp.copyFrom (grid);
+				grid = temp;
+				forgetHistory ();
+				forgetTimeline ();
+			}
+		}
+	}
+
+	/** Sets where the cells of this colony are kept. The cells
+	 * are copied into a grid in the new storage, and the old grid
+	 * is left to be freed. Ignores null values.
+	 * 
+	 * @param storage	the new storage
+	 */
+	public void setStorage (Storage storage)
+	{
+		if (storage != null && storage != this.storage)
+		{
+			this.storage = storage;
+			BitGrid temp = newGrid (grid.getWidth (), grid.getHeight ());
+			temp.copyFrom (grid);
+			grid = temp;
+			next = null;
+		}
+	}
+
+	/** Sets the most memory that the timeline of this colony may take.
+	 * Every generation, and every edit, is recorded in the timeline, so
+	 * that it can be undone or gone back to. Recording reads the whole
+	 * grid, so it takes about as long again as stepping a generation.
+	 * Once the timeline is full, the oldest generations are dropped.
+	 * Unbounded colonies and mapped grids are not recorded. A budget of
+	 * 0 or less drops the timeline.
+	 *
+	 * @param bytes	the new budget, in bytes
+	 * @see Timeline
+	 */
+	public void setTimelineBudget (long bytes)
+	{
+		timelineBudget = Math.max (bytes, 0);
+		if (timelineBudget == 0)
+			timeline = null;
+		else if (timeline != null)
+			timeline.setBudget (timelineBudget);
+	}
+
+	/** Sets the zoom value. 
+	 * Ignores values less than or equal to 0.
+	 * 
+	 * @param zoom	the new zoom value
+	 */
+	public void setZoom (int zoom)
+	{
+		if (zoom > 0)
+			this.zoom = zoom;
+	}
+
+	/** Gets a copy of the offset, zoom and colors of this colony,
+	 * such as to be saved by another thread.
+	 * 
+	 * @return the current view
+	 */
+	public View getView ()
+	{
+		View view = new View ();
+		view.offset.setLocation (offset);
+		view.zoom = zoom;
+		view.alive = alive;
+		view.aliveSelect = aliveSelect;
+		view.dead = dead;
+		view.deadSelect = deadSelect;
+		view.gridLines = gridLines;
+		return view;
+	}
+
+	/** Sets the offset, zoom and colors of this colony, such as
+	 * to those returned by one of the load methods. A zoom that
+	 * is less than or equal to 0 is ignored.
+	 * 
+	 * @param view	the new view
+	 */
+	public void setView (View view)
+	{
+		offset.setLocation (view.offset);
+		setZoom (view.zoom);
+		alive = view.alive;
+		aliveSelect = view.aliveSelect;
+		dead = view.dead;
+		deadSelect = view.deadSelect;
+		gridLines = view.gridLines;
+	}
+
+	/** Copies the cells within the given rectangle, along with the
+	 * iteration and the other state needed to show this colony, into
+	 * an immutable snapshot, which can be read by other threads while
+	 * this colony goes on advancing. For a bounded colony, only the 
+	 * cells of the rectangle that are within the grid are copied.
+	 * 
+	 * @param area	the cells to copy, with x as the column and y as the row
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot (Rectangle area)
+	{
+		if (universe == null)
+			area = area.intersection (new Rectangle (0, 0, grid.getWidth (), grid.getHeight ()));
+		if (area.isEmpty ())
+			area = new Rectangle ();
+		return new Snapshot (this, new Rectangle (area), copy (area));
+	}
+
+	/** Draws the colony on the specified Graphics object, using
+	 * the colony's current offset value. Draws the colony only to
+	 * the extent of the given dimensions. These dimensions are
+	 * meant to be the size of the component to which the Graphics
+	 * object belongs. This is to save on processing power by 
+	 * only drawing the visible portion of the colony.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param size		the Dimensions in which to paint
+	 */
+	public void show (Graphics g, Dimension size)
+	{
+		show (g, size, snapshot (getVisibleCells (size)));
+	}
+
+	/** Draws the cells of a snapshot onto the screen, in the same 
+	 * way as show (Graphics, Dimension), but without touching the
+	 * cells of this colony, so that it can be called while another
+	 * thread is advancing it. Cells outside of the area of the 
+	 * snapshot are drawn as dead.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param size		the Dimensions in which to paint
+	 * @param cells		the snapshot to draw
+	 */
+	public void show (Graphics g, Dimension size, Snapshot cells)
+	{       
+		// Initialize bounds of drawing area
+
+		Rectangle view = getVisibleCells (size, cells);
+		int left = view.x;
+		int right = view.x + view.width;
+		int up = view.y;
+		int down = view.y + view.height;
+
+		// Iterate through grid selection and draw cells
+
+		for (int row = up ; row < down ; row++)
+		{
+			int y = getY (row);
+			for (int col = left ; col < right; col++)
+			{
+				int x = getX (col);
+
+				Color color = cells.getCell (row, col) ? alive : dead;
+				g.setColor (color);                     
+				g.fillRect (x, y, zoom, zoom); // draw life form
+			}
+		}
+	} 
+
+	/** Calculates the range of cells that are visible in an area 
+	 * of the given dimensions, using the colony's current offset
+	 * and zoom. For a bounded colony, the range is limited to the
+	 * cells of the grid.
+	 * 
+	 * @param size		the Dimensions of the area
+	 * @return the visible columns and rows, as x and y
+	 */
+	private Rectangle getVisibleCells (Dimension size)
+	{
+		int left = getCol (0);
+		int right = getCol (size.width) + 1;
+		int up = getRow (0);
+		int down = getRow (size.height) + 1;
+
+		if (universe == null)
+		{
+			left = Math.max (left, 0);
+			right = Math.min (right, grid.getWidth ());
+			up = Math.max (up, 0);
+			down = Math.min (down, grid.getHeight ());
+		}
+
+		return new Rectangle (left, up, Math.max (right - left, 0), Math.max (down - up, 0));
+	}
+
+	/** Calculates the range of cells that are visible in an area
+	 * of the given dimensions, in the same way as getVisibleCells 
+	 * (Dimension), but limited to the grid of a snapshot rather than
+	 * to that of this colony.
+	 * 
+	 * @param size		the Dimensions of the area
+	 * @param cells		the snapshot being drawn
+	 * @return the visible columns and rows, as x and y
+	 */
+	private Rectangle getVisibleCells (Dimension size, Snapshot cells)
+	{
+		Rectangle view = new Rectangle (getCol (0), getRow (0), 0, 0);
+		view.add (getCol (size.width) + 1, getRow (size.height) + 1);
+
+		if (cells.isBounded ())
+			view = view.intersection (new Rectangle (0, 0, cells.getWidth (), cells.getHeight ()));
+		return view.isEmpty () ? new Rectangle () : view;
+	}
+
+	/** Draws the grid lines for the colony. Draws the grid lines
+	 * only up to the extent of the indicated dimensions.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param size		the Dimensions in which to paint
+	 */
+	public void showGrid (Graphics g, Dimension size)
+	{	
+		showGrid (g, getVisibleCells (size));
+	}
+
+	/** Draws the grid lines for the colony, in the same way as 
+	 * showGrid (Graphics, Dimension), but limited to the grid of a 
+	 * snapshot, so that it can be called while another thread is 
+	 * advancing this colony.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param size		the Dimensions in which to paint
+	 * @param cells		the snapshot being drawn
+	 */
+	public void showGrid (Graphics g, Dimension size, Snapshot cells)
+	{
+		showGrid (g, getVisibleCells (size, cells));
+	}
+
+	/** Draws the grid lines around the given cells.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param view		the columns and rows to draw, as x and y
+	 */
+	private void showGrid (Graphics g, Rectangle view)
+	{
+		int left = view.x;
+		int right = view.x + view.width;
+		int up = view.y;
+		int down = view.y + view.height;
+
+		int width = right - left;
+		int height = down - up;
+		
+		g.setColor(gridLines);
+
+		// Iterate through x-values and y-values, and draw grid lines
+
+		for (int row = up; row < down; row++)           
+			g.fillRect(getX(left), getY (row), width * zoom, 1);
+
+		for (int col = left; col < right; col++)
+			g.fillRect(getX (col), getY(up), 1, height * zoom);                 
+	}
+
+
+	/** Draws the live cells of a pattern, as it would be pasted at
+	 * the given location, in the "aliveSelect" color.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param pattern	the pattern to draw
+	 * @param row		the row of the top of the pattern
+	 * @param col		the column of the left of the pattern
+	 */
+	public void showPattern (Graphics g, Pattern pattern, int row, int col)
+	{
+		showPattern (g, pattern, row, col, snapshot (new Rectangle ()));
+	}
+
+	/** Draws the live cells of a pattern, in the same way as showPattern
+	 * (Graphics, Pattern, int, int), but dropping the cells outside of
+	 * the grid of a snapshot rather than that of this colony.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param pattern	the pattern to draw
+	 * @param row		the row of the top of the pattern
+	 * @param col		the column of the left of the pattern
+	 * @param cells		the snapshot being drawn
+	 */
+	public void showPattern (Graphics g, Pattern pattern, int row, int col, Snapshot cells)
+	{
+		g.setColor (aliveSelect);
+
+		for (int r = 0; r < pattern.getHeight (); r++)
+		{
+			if (!cells.rowValid ((long) row + r))
+				continue;
+
+			int y = getY (row + r);
+			for (int w = 0; w < pattern.getStride (); w++)
+				for (long bits = pattern.getWord (r, w); bits != 0; bits &= bits - 1)
+				{
+					int c = col + 64 * w + Long.numberOfTrailingZeros (bits);
+					if (cells.colValid (c))
+						g.fillRect (getX (c), y, zoom, zoom);
+				}
+		}
+	}
+
+	/** Draws the cells that are contained within the bounds of the
+	 * given shape. Uses the "aliveSelect" and "deadSelect" color
+	 * schemes for these cells.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param select	the Shape representing the boundary of the selection
+	 */
+	public void showSelection (Graphics g, Shape select)
+	{
+		// Initialize bounds of checking area
+
+		Rectangle bounds = select.getBounds ();
+		int left = bounds.x;
+		int up = bounds.y;
+		int right = left + bounds.width;
+		int down = up + bounds.height;
+
+		// Iterate through grid selection and draw cells, if within shape
+
+		for (int col = left; col < right; col++)
+		{
+			int x = getX (col);
+
+			for (int row = up; row < down; row++)
+			{			
+				if (select.contains(col, row) && rowValid (row) && colValid(col))
+				{
+					int y = getY (row);
+					Color color = getCell (row, col) ? aliveSelect : deadSelect;
+					g.setColor (color);
+					g.fillRect (x, y, zoom, zoom); // draw life form										
+				}
+			}
+		}
+	}		
+
+	/** Draws the cells of the given selection, in the same way as 
+	 * showSelection (Graphics, Shape), but going through the cells
+	 * already rasterised by the selection a row at a time.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param select	the selection to draw
+	 * @param preview	a point to add to the outline of the selection
+	 * while drawing it, such as the location of the mouse, or null
+	 */
+	public void showSelection (Graphics g, Selection select, Point preview)
+	{
+		Rectangle bounds = select.getBounds ();
+		if (preview != null)
+			bounds = bounds.union (new Rectangle (preview.x, preview.y, 1, 1));
+		showSelection (g, select, preview, snapshot (bounds));
+	}
+
+	/** Draws the cells of the given selection, in the same way as
+	 * showSelection (Graphics, Selection, Point), but taking the
+	 * states of the cells from a snapshot.
+	 * 
+	 * @param g			the Graphics context in which to paint
+	 * @param select	the selection to draw
+	 * @param preview	a point to add to the outline of the selection
+	 * while drawing it, such as the location of the mouse, or null
+	 * @param cells		the snapshot to take the cells from
+	 */
+	public void showSelection (Graphics g, Selection select, Point preview, Snapshot cells)
+	{
+		if (select.getStart () == null)
+			return;
+
+		// Initialize bounds of checking area
+
+		Rectangle bounds = select.getBounds ();
+		if (preview != null)
+			bounds = bounds.union (new Rectangle (preview.x, preview.y, 1, 1));
+		if (cells.isBounded ())
+			bounds = bounds.intersection (new Rectangle (0, 0, cells.getWidth (), cells.getHeight ()));
+		if (bounds.isEmpty ())
+			return;
+
+		// Draw the selected cells of each row
+
+		long[] mask = new long [(bounds.width + 63) >>> 6];
+
+		for (int row = bounds.y; row < bounds.y + bounds.height; row++)
+		{
+			select.getRow (row, mask, bounds.x, preview);
+			int y = getY (row);
+
+			for (int w = 0; w < mask.length; w++)
+				for (long bits = mask[w]; bits != 0; bits &= bits - 1)
+				{
+					int col = bounds.x + 64 * w + Long.numberOfTrailingZeros (bits);
+					if (col >= bounds.x + bounds.width)
+						break;
+
+					g.setColor (cells.getCell (row, col) ? aliveSelect : deadSelect);
+					g.fillRect (getX (col), y, zoom, zoom);
+				}
+		}
+	}
+
+	/** Returns a String representation of the current state
+	 * of this colony. The output of this method can be loaded
+	 * as a save, and is the same as that of writeTo. 
+	 * 
+	 * Note that in the resulting String, all of the lines 
+	 * are separated by a LF ("\n") character. However, in 
+	 * Windows, CRLF ("\r\n") is usually used for a new line. 
+	 * Thus, if this String were to be output to a file, and 
+	 * that file were to be opened in Notepad, a user wouldn't 
+	 * see any line breaks.
+	 * 
+	 * However, most other programs such as Wordpad and Notepad++
+	 * interpret and display the new lines correctly. 
+	 * 
+	 * If the colony is unbounded, the rows cover the smallest
+	 * box that holds both the grid and every live cell. The
+	 * top left cell of the box is saved as the origin, and
+	 * the size of the grid as the window.
+	 * 
+	 * @return the String representation of this colony
+	 * @see #writeTo(Writer)
+	 */
+	@Override
+	public String toString ()
+	{
+		StringWriter str = new StringWriter ();
+		try
+		{
+			writeTo (str);
+		}
+		catch (IOException e) // a StringWriter never throws
+		{
+			throw new UncheckedIOException (e);
+		}
+		return str.toString ();		
+	}
+
+	/** Writes a save of the current state of this colony to the
+	 * given stream, in the same format as toString, encoded in ASCII,
+	 * which is also UTF-8. The save is streamed through a single 
+	 * buffer, so that it never has to be held in memory as a whole;
+	 * the rows of the grid are turned into text a word of 64 cells
+	 * at a time. The stream is not closed.
+	 * 
+	 * @param out	the stream to write to
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeTo (OutputStream out) throws IOException
+	{
+		writeTo (out, null, getView ());
+	}
+
+	/** Writes a save of the current state of this colony to the
+	 * given stream, in the same way as writeTo (OutputStream), but
+	 * with the given view in place of the one of this colony, such
+	 * as one taken by the thread that shows it. The stream is not
+	 * closed.
+	 * 
+	 * @param out	the stream to write to
+	 * @param view	the offset, zoom and colors to save
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeTo (OutputStream out, View view) throws IOException
+	{
+		writeTo (out, null, view);
+	}
+
+	/** Writes a save of the current state of this colony to the
+	 * given Writer, in the same way as writeTo (OutputStream).
+	 * The Writer is not closed.
+	 * 
+	 * @param out	the Writer to write to
+	 * @throws IOException if the Writer could not be written to
+	 */
+	public void writeTo (Writer out) throws IOException
+	{
+		writeTo (null, out, getView ());
+	}
+
+	/** Writes a binary save of the current state of this colony to the
+	 * given stream, which can be read back with loadBinary. It holds the
+	 * same settings as a text save, then the rows of the grid packed 8
+	 * cells to a byte, which takes an eighth of the space before any
+	 * compression. Like a text save, the rows of an unbounded colony 
+	 * cover every live cell as well as the grid. The stream is not closed.
+	 * 
+	 * The save starts with 4 magic bytes and a version byte, followed by 
+	 * the iteration, offset, zoom, rule, boundary, colors, width, height
+	 * and compression in the big-endian layout of DataOutputStream. An
+	 * unbounded colony also has the row and column of the origin, and the
+	 * width and height of the window, after the colors. Each
+	 * row then takes (width + 7) / 8 bytes, with the first column in the 
+	 * lowest bit of the first byte. With RLE, each row is split into runs,
+	 * each of which starts with a control byte: up to 127 is followed by
+	 * that many plus one bytes to copy, and 128 or more by a single byte
+	 * to repeat that many less 126 times. Only bytes repeated at least
+	 * three times are written as repeats, so a row never grows by more
+	 * than a byte for every 128. With DEFLATE, all of the rows
+	 * are deflated together.
+	 * 
+	 * @param out			the stream to write to
+	 * @param compression	the way to compress the rows
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeBinary (OutputStream out, Compression compression) throws IOException
+	{
+		writeBinary (out, compression, getView ());
+	}
+
+	/** Writes a binary save of the current state of this colony to the
+	 * given stream, in the same way as writeBinary (OutputStream, Compression),
+	 * but with the given view in place of the one of this colony.
+	 * The stream is not closed.
+	 * 
+	 * @param out			the stream to write to
+	 * @param compression	the way to compress the rows
+	 * @param view			the offset, zoom and colors to save
+	 * @throws IOException if the stream could not be written to
+	 */
+	public void writeBinary (OutputStream out, Compression compression, View view) throws IOException
+	{
+		DataOutputStream data = new DataOutputStream (new BufferedOutputStream (out, 1 << 16));
+		long[] box = getSavedBox ();
+		int width = Math.toIntExact (box[3] - box[1] + 1);
+		int height = Math.toIntExact (box[2] - box[0] + 1);
+
+		// Header
+
+		data.write (MAGIC);
+		data.writeByte (VERSION);
+		data.writeLong (iteration);
+		data.writeInt (view.offset.x);
+		data.writeInt (view.offset.y);
+		data.writeInt (view.zoom);
+		data.writeUTF (rule.toString ());
+		data.writeUTF (boundary.name ());
+		data.writeInt (view.alive.getRGB ());
+		data.writeInt (view.aliveSelect.getRGB ());
+		data.writeInt (view.dead.getRGB ());
+		data.writeInt (view.deadSelect.getRGB ());
+		data.writeInt (view.gridLines.getRGB ());
+		if (universe != null)
+		{
+			data.writeLong (box[0]);
+			data.writeLong (box[1]);
+			data.writeInt (grid.getWidth ());
+			data.writeInt (grid.getHeight ());
+		}
+		data.writeInt (width);
+		data.writeInt (height);
+		data.writeByte (compression.ordinal ());
+
+		Deflater deflater = null;
+		DeflaterOutputStream deflated = null;
+		if (compression == Compression.DEFLATE)
+		{
+			data.flush ();
+			deflater = new Deflater (Deflater.BEST_SPEED);
+			deflated = new DeflaterOutputStream (out, deflater, 1 << 16);
+			data = new DataOutputStream (deflated);
+		}
+
+		// Rows, packed a word at a time into bytes
+
+		byte[] bytes = new byte [(width + 7) / 8];
+		byte[] packed = new byte [bytes.length + bytes.length / 128 + 1];
+		long[] words = new long [(width + 63) >>> 6];
+
+		try
+		{
+			for (int row = 0; row < height; row++)
+			{
+				readSavedRow (box[0] + row, box[1], width, words);
+				for (int i = 0; i < bytes.length; i++)
+					bytes[i] = (byte) (words[i >> 3] >>> ((i & 7) << 3));
+
+				if (compression == Compression.RLE)
+					data.write (packed, 0, packRow (bytes, packed));
+				else
+					data.write (bytes);
+			}
+
+			if (deflated != null)
+				deflated.finish ();
+			data.flush ();
+		}
+		finally
+		{
+			if (deflater != null)
+				deflater.end ();
+		}
+	}
+
+	/** Called by the writeBinary method. Run-length encodes a row
+	 * of bytes, as runs of repeated bytes and of bytes to copy.
+	 * 
+	 * @param bytes		the row to encode
+	 * @param packed	the array to encode it into, which must have
+	 * room for an extra byte for every 128 bytes of the row
+	 * @return the number of bytes encoded
+	 */
+	private static int packRow (byte[] bytes, byte[] packed)
+	{
+		int n = 0;
+		int i = 0;
+
+		while (i < bytes.length)
+		{
+			int run = 1;
+			while (i + run < bytes.length && run < 129 && bytes[i + run] == bytes[i])
+				run++;
+
+			if (run > 2) // a repeated byte
+			{
+				packed[n++] = (byte) (run + 126);
+				packed[n++] = bytes[i];
+				i += run;
+			}
+			else // bytes to copy, up to the next byte repeated three times
+			{
+				int start = i++;
+				while (i < bytes.length && i - start < 128 && (i + 2 >= bytes.length || bytes[i] != bytes[i + 1] || bytes[i] != bytes[i + 2]))
+					i++;
+				packed[n++] = (byte) (i - start - 1);
+				System.arraycopy (bytes, start, packed, n, i - start);
+				n += i - start;
+			}
+		}
+		return n;
+	}
+
+	/** Writes a save of the current state of this colony, one
+	 * buffer full of bytes at a time, to either a stream or a Writer.
+	 * 
+	 * @param stream	the stream to write to, or null
+	 * @param writer	the Writer to write to if there is no stream
+	 * @param view		the offset, zoom and colors to save
+	 * @throws IOException if the save could not be written
+	 */
+	private void writeTo (OutputStream stream, Writer writer, View view) throws IOException
+	{
+		long[] box = getSavedBox ();
+		int width = Math.toIntExact (box[3] - box[1] + 1);
+		int height = Math.toIntExact (box[2] - box[0] + 1);
+
+		String header = "iteration = " + iteration + "\n"
+				+ "offset = " + view.offset.x + " " + view.offset.y + "\n"
+				+ "zoom = " + view.zoom + "\n"
+				+ "rule = " + rule + "\n"
+				+ "boundary = " + boundary + "\n"
+				+ (universe == null ? "" : "origin = " + box[0] + " " + box[1] + "\n"
+						+ "window = " + grid.getWidth () + " " + grid.getHeight () + "\n")
+				+ "alive = " + getStringRGB (view.alive) + "\n"
+				+ "aliveSelect = " + getStringRGB (view.aliveSelect) + "\n"
+				+ "dead = " + getStringRGB (view.dead) + "\n"
+				+ "deadSelect = " + getStringRGB (view.deadSelect) + "\n"
+				+ "gridLines = " + getStringRGB (view.gridLines) + "\n"
+				+ "grid :\n";
+
+		byte[] buffer = new byte [Math.max (1 << 16, header.length ())];
+		char[] chars = writer == null ? null : new char [buffer.length];
+		int n = header.length ();
+		for (int i = 0; i < n; i++)
+			buffer[i] = (byte) header.charAt (i);
+
+		// Write the rows a word at a time, emptying the buffer whenever it might overflow
+
+		long[] words = new long [universe == null ? grid.getStride () : (width + 63) >>> 6];
+
+		for (int row = 0; row < height; row++)
+		{
+			readSavedRow (box[0] + row, box[1], width, words);
+			for (int w = 0; w < words.length; w++)
+			{
+				if (n + 65 > buffer.length)
+				{
+					drain (stream, writer, buffer, chars, n);
+					n = 0;
+				}
+
+				long bits = words[w];
+				int cells = Math.min (64, width - 64 * w);
+				for (int j = 0; j < cells; j++)
+					buffer[n++] = (byte) ('0' + (bits >>> j & 1));
+			}
+			buffer[n++] = '\n';
+		}
+		drain (stream, writer, buffer, chars, n);
+	}
+
+	/** Writes the live cells of this colony to the given Writer as a
+	 * pattern in the RLE format, which can be read back with loadRLE or
+	 * by most other Life programs. The pattern covers the bounding box
+	 * of the live cells, and the runs are as few as they can be: dead
+	 * cells at the ends of rows are left out, as are counts of 1, and
+	 * empty rows are merged into the end of the row before them. Lines
+	 * are kept to at most 70 characters. The Writer is flushed, but
+	 * not closed.
+	 * 
+	 * @param out	the Writer to write to
+	 * @throws IOException if the Writer could not be written to
+	 */
+	public void writeRLE (Writer out) throws IOException
+	{
+		Rectangle box = getBounds ();
+		if (box == null)
+			box = new Rectangle ();
+
+		out.write ("x = " + box.width + ", y = " + box.height + ", rule = " + rule + "\n");
+
+		// Find the runs of each row a word at a time
+
+		char[] line = new char [80];
+		int length = 0;
+		int ends = 0;
+		int start = universe == null ? box.x : 0;
+		int end = start + box.width;
+		long[] words = new long [universe == null ? grid.getStride () : (box.width + 63) >>> 6];
+
+		for (int row = box.y; row < box.y + box.height; row++)
+		{
+			if (universe == null)
+				grid.getRow (row, words);
+			else
+			{
+				Arrays.fill (words, 0);
+				for (int col = 0; col < box.width; col++)
+					if (universe.getCell (row, (long) box.x + col))
+						words[col >>> 6] |= 1L << col;
+			}
+
+			for (int col = start; col < end;)
+			{
+				boolean alive = (words[col >>> 6] >>> col & 1) != 0;
+				int next = nextChange (words, col, end, alive);
+				if (!alive && next == end) // Dead cells at the end of a row
+					break;
+
+				if (ends > 0)
+				{
+					length = writeRun (out, line, length, ends, '$');
+					ends = 0;
+				}
+				length = writeRun (out, line, length, next - col, alive ? 'o' : 'b');
+				col = next;
+			}
+			ends++;
+		}
+
+		line[length++] = '!';
+		line[length++] = '\n';
+		out.write (line, 0, length);
+		out.flush ();
+	}
+
+	/** Called by the writeRLE method. Finds the next cell in a
+	 * packed row that is not in the given state.
+	 * 
+	 * @param words		the packed row
+	 * @param col		the cell to start from
+	 * @param end		the end of the row
+	 * @param alive		the state of the run
+	 * @return the first cell from col on that is not in the given
+	 * state, or end if there is none
+	 */
+	private static int nextChange (long[] words, int col, int end, boolean alive)
+	{
+		int w = col >>> 6;
+		long flip = alive ? -1L : 0;
+		long word = (words[w] ^ flip) & (-1L << col);
+
+		while (word == 0)
+		{
+			if (++w >= words.length)
+				return end;
+			word = words[w] ^ flip;
+		}
+		return Math.min (end, (w << 6) + Long.numberOfTrailingZeros (word));
+	}
+
+	/** Called by the writeRLE method. Adds a run to the current
+	 * line, first writing out the line if the run would make it
+	 * longer than 70 characters.
+	 * 
+	 * @param out		the Writer to write to
+	 * @param line		the current line
+	 * @param length	the length of the current line
+	 * @param count		the length of the run
+	 * @param tag		the tag of the run
+	 * @return the new length of the current line
+	 * @throws IOException if the Writer could not be written to
+	 */
+	private static int writeRun (Writer out, char[] line, int length, int count, char tag) throws IOException
+	{
+		int digits = count == 1 ? 0 : (int) Math.log10 (count) + 1;
+		if (length + digits + 1 > 70)
+		{
+			line[length] = '\n';
+			out.write (line, 0, length + 1);
+			length = 0;
+		}
+
+		for (int i = length + digits - 1; i >= length; i--, count /= 10)
+			line[i] = (char) ('0' + count % 10);
+		line[length + digits] = tag;
+		return length + digits + 1;
+	}
+
+	/** Works out the cells that a save holds: the grid, or if this
+	 * colony is unbounded, the smallest box that holds both the grid
+	 * and every live cell of the sparse universe.
+	 * 
+	 * @return {top, left, bottom, right}, all inclusive
+	 */
+	private long[] getSavedBox ()
+	{
+		long[] box = {0, 0, grid.getHeight () - 1, grid.getWidth () - 1};
+		long[] live = universe == null ? null : universe.getBounds ();
+		if (live != null)
+		{
+			box[0] = Math.min (box[0], live[0]);
+			box[1] = Math.min (box[1], live[1]);
+			box[2] = Math.max (box[2], live[2]);
+			box[3] = Math.max (box[3], live[3]);
+		}
+		return box;
+	}
+
+	/** Copies a row of the cells of a save into packed words, from
+	 * the grid, or from the sparse universe a word at a time if this
+	 * colony is unbounded.
+	 * 
+	 * @param row		the row
+	 * @param col		the first column, which is 0 for the grid
+	 * @param width		the number of columns
+	 * @param words		the words to copy the cells into
+	 */
+	private void readSavedRow (long row, long col, int width, long[] words)
+	{
+		if (universe == null)
+			grid.getRow ((int) row, words);
+		else
+		{
+			for (int w = 0; w < words.length; w++)
+				words[w] = universe.getBits (row, col + 64L * w);
+			words[words.length - 1] &= -1L >>> -width;
+		}
+	}
+
+	/** Writes out the bytes in a buffer, either as they are
+	 * or widened to chars.
+	 * 
+	 * @param stream	the stream to write to, or null
+	 * @param writer	the Writer to write to if there is no stream
+	 * @param buffer	the bytes to write
+	 * @param chars		room for the bytes as chars, if writing to a Writer
+	 * @param n			the number of bytes to write
+	 * @throws IOException if they could not be written
+	 */
+	private static void drain (OutputStream stream, Writer writer, byte[] buffer, char[] chars, int n) throws IOException
+	{
+		if (stream != null)
+			stream.write (buffer, 0, n);
+		else
+		{
+			for (int i = 0; i < n; i++)
+				chars[i] = (char) buffer[i];
+			writer.write (chars, 0, n);
+		}
+	}		
+
+	/** Returns a String representation of a sRGB value
+	 * in the format "[int red] [int green] [int blue]"
+	 * 
+	 * @param color		the color to codify
+	 * @return the String representation of the color
+	 */
+	private String getStringRGB (Color color)
+	{
+		return color.getRed() + " " + color.getGreen() + " " + color.getBlue();
+	}
+
+	/** Where the rows of a save go: the cell that the first of them
+	 * starts at, and the size of the grid of an unbounded colony,
+	 * which its rows need not match.
+	 */
+	private static class Layout
+	{
+		long row;
+		long col;
+		int width = -1;
+		int height = -1;
+	}
+
+	/** The way a colony is shown on the screen, as it is kept in a save:
+	 * the offset, zoom and colors. In the user interface these belong to
+	 * the event dispatch thread, while saves are read and written on the
+	 * thread that advances the colony, so the two hand views to each
+	 * other instead of sharing the fields of the colony. A view is only
+	 * filled in by the colony that makes it, and never changes once it
+	 * has been handed out.
+	 */
+	public static class View
+	{
+		private final Point offset = new Point ();
+		private int zoom = 7;
+		private Color alive = Color.green;
+		private Color aliveSelect = Color.yellow;
+		private Color dead = Color.black;
+		private Color deadSelect = Color.blue;
+		private Color gridLines = new Color (128, 128, 128);
+
+		/** Creates a view with the offset, zoom and colors of a new colony.
+		 */
+		private View ()
+		{
+		}
+	}
+
+	/** The state of a colony at one generation, as it is shown on the
+	 * screen: the cells within some area, along with the iteration and
+	 * the size of the grid. Snapshots never change once they are made,
+	 * so they can be handed from the thread that advances a colony to
+	 * the threads that draw it without any locking.
+	 */
+	public static class Snapshot
+	{
+		private final long iteration;
+		private final int period;
+		private final long cycleStart;
+		private final long timelineStart;
+		private final boolean bounded;
+		private final int width;
+		private final int height;
+		private final Rectangle area;
+		private final Pattern cells;
+
+		/** Creates a snapshot of the given colony.
+		 * 
+		 * @param colony	the colony
+		 * @param area		the cells that were copied
+		 * @param cells		the copied cells
+		 */
+		private Snapshot (Colony colony, Rectangle area, Pattern cells)
+		{
+			iteration = colony.iteration;
+			period = colony.period;
+			cycleStart = colony.cycleStart;
+			timelineStart = colony.getTimelineStart ();
+			bounded = colony.universe == null;
+			width = colony.grid.getWidth ();
+			height = colony.grid.getHeight ();
+			this.area = area;
+			this.cells = cells;
+		}
+
+		/** Determines whether the given column is within the grid.
+		 * 
+		 * @param col	the column
+		 * @return true if the colony was unbounded, or the column is
+		 * within the grid; false otherwise
+		 */
+		public boolean colValid (long col)
+		{
+			return !bounded || col >= 0 && col < width;
+		}
+
+		/** Gets the cells that were copied into this snapshot.
+		 * 
+		 * @return the area, with x as the column and y as the row
+		 */
+		public Rectangle getArea ()
+		{
+			return new Rectangle (area);
+		}
+
+		/** Gets the cell at the specified location.
+		 * 
+		 * @param row	the row of the cell
+		 * @param col	the column of the cell
+		 * @return true if the cell was alive; false if it was dead,
+		 * or is outside of the area of this snapshot
+		 */
+		public boolean getCell (long row, long col)
+		{
+			row -= area.y;
+			col -= area.x;
+			if (row < 0 || row >= area.height || col < 0 || col >= area.width)
+				return false;
+			return cells.getCell ((int) row, (int) col);
+		}
+
+		/** Gets the iteration at which the colony started to repeat.
+		 * 
+		 * @return the start of the cycle, or -1 if none was found
+		 */
+		public long getCycleStart ()
+		{
+			return cycleStart;
+		}
+
+		/** Gets the number of rows of the grid.
+		 * 
+		 * @return the height
+		 */
+		public int getHeight ()
+		{
+			return height;
+		}
+
+		/** Gets the iteration, or generation, of this snapshot.
+		 * 
+		 * @return the iteration
+		 */
+		public long getItt ()
+		{
+			return iteration;
+		}
+
+		/** Gets the period with which the colony repeats itself.
+		 * 
+		 * @return the period, or 0 if no cycle was found
+		 */
+		public int getPeriod ()
+		{
+			return period;
+		}
+
+		/** Gets the earliest generation that was kept in the timeline.
+		 * 
+		 * @return the generation, or -1 if nothing had been recorded
+		 */
+		public long getTimelineStart ()
+		{
+			return timelineStart;
+		}
+
+		/** Gets the number of columns of the grid.
+		 * 
+		 * @return the width
+		 */
+		public int getWidth ()
+		{
+			return width;
+		}
+
+		/** Determines whether the colony had edges.
+		 * 
+		 * @return true unless the colony was unbounded
+		 */
+		public boolean isBounded ()
+		{
+			return bounded;
+		}
+
+		/** Determines whether the given row is within the grid.
+		 * 
+		 * @param row	the row
+		 * @return true if the colony was unbounded, or the row is
+		 * within the grid; false otherwise
+		 */
+		public boolean rowValid (long row)
+		{
+			return !bounded || row >= 0 && row < height;
+		}
+	}
+
+	/** Reads a save a block of characters at a time, either
+	 * as whole lines or as rows of cells packed into words.
+	 * Lines may end with LF, CR, or CRLF.
+	 */
+	private static class SaveReader
+	{
+		private final Reader in;
+		private final char[] buffer = new char [1 << 16];
+		private final StringBuilder text = new StringBuilder ();
+		private int pos = 0;
+		private int limit = 0;
+		private int line = 0;
+		private int column = 0;
+
+		/** Creates a reader of the given save.
+		 * 
+		 * @param in	the Reader to read from
+		 */
+		public SaveReader (Reader in)
+		{
+			this.in = in;
+		}
+
+		/** Gets the column reached within the current line.
+		 * 
+		 * @return the column, from 0
+		 */
+		public int getColumn ()
+		{
+			return column;
+		}
+
+		/** Gets the number of lines read so far, which is
+		 * also the index of the current line.
+		 * 
+		 * @return the line, from 0
+		 */
+		public int getLine ()
+		{
+			return line;
+		}
+
+		/** Gets the next character without reading it.
+		 * 
+		 * @return the character, or -1 at the end of the save
+		 * @throws IOException if the save could not be read
+		 */
+		public int peek () throws IOException
+		{
+			if (pos == limit && !fill ())
+				return -1;
+			return buffer[pos];
+		}
+
+		/** Reads the next character, keeping count of the lines
+		 * and columns. A line terminator of CR, LF or CRLF is 
+		 * read as a single LF.
+		 * 
+		 * @return the character, or -1 at the end of the save
+		 * @throws IOException if the save could not be read
+		 */
+		public int read () throws IOException
+		{
+			if (pos == limit && !fill ())
+				return -1;
+
+			char c = buffer[pos++];
+			if (c == '\n' || c == '\r')
+			{
+				if (c == '\r' && peek () == '\n')
+					pos++;
+				line++;
+				column = 0;
+				return '\n';
+			}
+			column++;
+			return c;
+		}
+
+		/** Reads the rest of the current line.
+		 * 
+		 * @return the line, without its line terminator
+		 * @throws IOException if the save could not be read
+		 */
+		public String readLine () throws IOException
+		{
+			text.setLength (0);
+			column = 0;
+			while (pos < limit || fill ())
+			{
+				char c = buffer[pos++];
+				if (c == '\n' || c == '\r')
+				{
+					if (c == '\r' && peek () == '\n')
+						pos++;
+					break;
+				}
+				text.append (c);
+			}
+			line++;
+			return text.toString ();
+		}
+
+		/** Reads the rest of the current line as a row of cells,
+		 * where '1' is alive and anything else is dead. Cells past
+		 * the given width are ignored.
+		 * 
+		 * @param width		the number of cells in the row, or -1 to
+		 * take the whole line, in which case its length is left as the
+		 * column reached
+		 * @return the packed cells
+		 * @throws IOException if the save could not be read
+		 * @throws Exception if the row is shorter than the given width
+		 */
+		public long[] readRow (int width) throws Exception
+		{
+			long[] bits = new long [width < 0 ? 16 : (width + 63) >>> 6];
+			column = 0;
+
+			while (pos < limit || fill ())
+			{
+				char c = buffer[pos++];
+				if (c == '\n' || c == '\r')
+				{
+					if (c == '\r' && peek () == '\n')
+						pos++;
+					break;
+				}
+
+				if (width < 0 && column >>> 6 == bits.length)
+					bits = Arrays.copyOf (bits, 2 * bits.length);
+				if (c == '1' && (width < 0 || column < width))
+					bits[column >>> 6] |= 1L << column;
+				column++;
+			}
+
+			if (column < width)
+				throw new Exception ("Row is shorter than the grid");
+			line++;
+			return width < 0 ? Arrays.copyOf (bits, (column + 63) >>> 6) : bits;
+		}
+
+		/** Reads the next block of characters into the buffer.
+		 * 
+		 * @return true if any were read; false at the end of the save
+		 * @throws IOException if the save could not be read
+		 */
+		private boolean fill () throws IOException
+		{
+			int n = 0;
+			while (n == 0)
+				n = in.read (buffer);
+			pos = 0;
+			limit = Math.max (n, 0);
+			return n > 0;
+		}
+	}
+
+	/** Advances a band of rows of the colony into the
+	 * second buffer. Bands larger than the share of a
+	 * single thread are split in half and run in parallel.
+	 * Bands are split at multiples of 64 rows, so that no 
+	 * tile of the grid is shared between two threads.
+	 */
+	private class StepBand extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		/** Creates a task for the given band of rows.
+		 * 
+		 * @param from	the first row of the band, inclusive
+		 * @param to	the last row of the band, exclusive
+		 */
+		public StepBand (int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute ()
+		{
+			int share = (grid.getHeight () + parallelism - 1) / parallelism;
+
+			if (to - from <= Math.max (share, 1))
+				grid.step (next, from, to, rule, engine == Engine.VECTOR, boundary == Boundary.TORUS);
+			else
+			{
+				int mid = ((from + to) >>> 1) & -64;
+				if (mid <= from)
+					grid.step (next, from, to, rule, engine == Engine.VECTOR, boundary == Boundary.TORUS);
+				else
+					invokeAll (new StepBand (from, mid), new StepBand (mid, to));
+			}
+		}
+	}
+
+	/** Sets cells at random in a range of bands of 64 rows, for fill.
+	 * Ranges with more bands than the share of a single thread are
+	 * split in half and run in parallel. 
+	 */
+	private class FillBand extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Shape select;
+		private final Selection selection;
+		private final long odds;
+		private final boolean state;
+		private final int up;
+		private final int down;
+		private final int left;
+		private final int right;
+		private final SplittableRandom[] bands;
+		private final int first;
+		private final int from;
+		private final int to;
+
+		/** Creates a task for every band of the given rows.
+		 * 
+		 * @param select	the shape within which to set cells, or null
+		 * @param selection	the selection within which to set cells, or null
+		 * @param odds		the probability of any individual cell being set, out of 2^32
+		 * @param state		the state to which to set cells
+		 * @param up		the first row, inclusive
+		 * @param down		the last row, exclusive
+		 * @param left		the first column, inclusive
+		 * @param right		the last column, exclusive
+		 * @param bands		the generators of the bands
+		 * @param first		the index of the first band, counting from row 0
+		 */
+		public FillBand (Shape select, Selection selection, long odds, boolean state,
+				int up, int down, int left, int right, SplittableRandom[] bands, int first)
+		{
+			this (select, selection, odds, state, up, down, left, right, bands, first, 0, bands.length);
+		}
+
+		/** Creates a task for a range of the given bands.
+		 * 
+		 * @param from	the first band, inclusive
+		 * @param to	the last band, exclusive
+		 */
+		private FillBand (Shape select, Selection selection, long odds, boolean state,
+				int up, int down, int left, int right, SplittableRandom[] bands, int first, int from, int to)
+		{
+			this.select = select;
+			this.selection = selection;
+			this.odds = odds;
+			this.state = state;
+			this.up = up;
+			this.down = down;
+			this.left = left;
+			this.right = right;
+			this.bands = bands;
+			this.first = first;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute ()
+		{
+			int share = (bands.length + parallelism - 1) / parallelism;
+
+			if (to - from <= Math.max (share, 1))
+				fill (from, to);
+			else
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll (new FillBand (select, selection, odds, state, up, down, left, right, bands, first, from, mid),
+						new FillBand (select, selection, odds, state, up, down, left, right, bands, first, mid, to));
+			}
+		}
+
+		/** Sets cells at random in a range of bands, on this thread.
+		 * 
+		 * @param from	the first band, inclusive
+		 * @param to	the last band, exclusive
+		 */
+		void fill (int from, int to)
+		{
+			// Rows of a bounded colony are lined up with the words of the grid
+
+			int base = universe == null ? 0 : left;
+			int words = universe == null ? grid.getStride () : (right - left + 63) >>> 6;
+			long[] bits = new long [words];
+			long[] mask = select == null && selection == null ? null : new long [words];
+
+			for (int band = from; band < to; band++)
+			{
+				SplittableRandom random = bands[band];
+				int start = Math.max (up, (first + band) * 64);
+				int end = Math.min (down, (first + band + 1) * 64);
+
+				for (int row = start; row < end; row++)
+				{
+					if (selection != null)
+					{
+						// Leave out the selected cells outside of the columns to fill
+
+						selection.getRow (row, mask, base, null);
+						for (int w = 0; w < words; w++)
+						{
+							int lo = left - base - 64 * w;
+							int hi = right - base - 64 * w;
+							if (hi <= 0 || lo >= 64)
+								mask[w] = 0;
+							else
+							{
+								if (lo > 0)
+									mask[w] &= -1L << lo;
+								if (hi < 64)
+									mask[w] &= (1L << hi) - 1;
+							}
+						}
+					}
+					else if (select != null)
+					{
+						Arrays.fill (mask, 0);
+						for (int col = left; col < right; col++)
+							if (select.contains (col, row))
+								mask[(col - base) >>> 6] |= 1L << (col - base);
+					}
+
+					for (int w = 0; w < words; w++)
+						bits[w] = mask == null || mask[w] != 0 ? randomWord (random, odds) : 0;
+
+					// Only the cells picked by the random bits are set within a shape
+
+					if (mask != null)
+						for (int w = 0; w < words; w++)
+						{
+							mask[w] &= bits[w];
+							bits[w] = state ? -1L : 0;
+						}
+
+					if (universe == null)
+						grid.blendRow (row, bits, mask);
+					else
+						for (int col = left; col < right; col++)
+						{
+							int c = col - base;
+							if (mask == null || (mask[c >>> 6] >>> c & 1) != 0)
+								universe.setCell (row, col, (bits[c >>> 6] >>> c & 1) != 0);
+						}
+				}
+			}
+		}
+	}
+}
@@ -1,812 +1,1145 @@
-import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.FlowLayout;
-import java.awt.Insets;
-import java.awt.KeyEventDispatcher;
-import java.awt.KeyboardFocusManager;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.KeyEvent;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.OutputStreamWriter;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import javax.swing.JButton;
-import javax.swing.JFileChooser;
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-import javax.swing.JOptionPane;
-import javax.swing.JPanel;
-import javax.swing.JSlider;
-import javax.swing.JTextArea;
-import javax.swing.JTextField;
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
-import javax.swing.filechooser.FileNameExtensionFilter;
-
-/** The GUI for this implementation of Conway's Game of Life.
- * Contains a LifePlane object, which contains a Colony object,
- * which contains the actual grid of life forms. 
- * 
- * @author Jiayin
- * @date CE 2013-12-12
- */
-public class GraphicUI extends JFrame 
-{	
-	public JPanel content;
-	public LifePlane plane;
-
-	private JLabel iteration;
-	private JButton select;
-	private JButton move;
-	private JButton simulate;
-
-	protected JSlider speed;
-	protected JSlider efficiency;
-	protected JSlider zoom;
-
-	private JTextField _width;
-	private JTextField _height;
-
-	private KeyboardFocusManager manager;
-	private MyDispatcher keyDispatcher;
-	private Timer timer;
-
-	private JTextArea controls;	
-
-	private File directory = new File ("."); // initialize dir to current dir
-
-	/** Creates a new GraphicUI of the specified title, width, 
-	 * and height.
-	 * 
-	 * @param title		the title of the GUI
-	 * @param width		the width of the GUI
-	 * @param height	the height of the GUI
-	 */
-	public GraphicUI (String title, int width, int height)
-	{
-		super (title);	
-
-		setDefaultCloseOperation (EXIT_ON_CLOSE);
-		setExtendedState(MAXIMIZED_BOTH);
-		setSize (width, height);		
-
-		initContent ();			
-		setContentPane (content);
-		setVisible (true);
-		plane.centerOnGrid();
-		toggleShowControls();
-	}
-
-	/** Initializes the content pane, including the LifePlane and 
-	 * the toolbar. Also initializes and sets a custom KeyEventDispatcher
-	 * to deal with inputed keys.
-	 */
-	private void initContent ()
-	{
-		content = new JPanel (new BorderLayout ());
-		plane = new LifePlane (this);		
-		content.add (plane, "Center");	
-
-		initToolBar ();			
-
-		manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
-		keyDispatcher = new MyDispatcher ();
-		manager.addKeyEventDispatcher(keyDispatcher);	
-	}
-
-	/** Initializes the toolbar, including both rows of sliders and
-	 * buttons. Adds the sliders, buttons, as well as action listeners 
-	 * for each individual component as necessary.
-	 */
-	private void initToolBar ()
-	{
-		// Declaration of Variables
-
-		ButtonListener buttonListener = new ButtonListener ();
-
-		JPanel toolbars = new JPanel (new BorderLayout());		
-		JPanel bar1 = new JPanel ();	
-		JPanel bar2 = new JPanel ();
-		bar1.setLayout (new FlowLayout (FlowLayout.LEFT));
-		bar2.setLayout (new FlowLayout (FlowLayout.LEFT));
-
-		JButton button;
-		JLabel label;
-
-		// TOP ROW:			
-		// File Buttons
-
-		button = new JButton ("Save");
-		button.addActionListener (buttonListener);	
-		bar1.add (button);
-
-		button = new JButton ("Load");
-		button.addActionListener (buttonListener);	
-		bar1.add (button);	
-
-		// Simulation Buttons
-
-		button = new JButton ("Next");
-		button.addActionListener (buttonListener);	
-		bar1.add (button);
-
-		simulate = new JButton ("Start Timer");
-		simulate.addActionListener (buttonListener);	
-		bar1.add (simulate);
-
-		// Simulation Speed Slider
-
-		label = new JLabel ("Speed:  Slow");
-		bar1.add (label);
-
-		speed = new JSlider (0, 9, 2);		
-		speed.setMajorTickSpacing (2);
-		speed.setMinorTickSpacing (1);
-		speed.setPaintTicks (true);
-		speed.setPreferredSize (new Dimension (150, 30));
-		speed.addChangeListener(new SliderListener());				
-		bar1.add(speed);
-
-		label = new JLabel ("Fast             ");
-		bar1.add (label);
-
-
-		// Zoom slider
-
-		label = new JLabel ("Zoom:  Small");
-		bar1.add (label);
-
-		zoom = new JSlider (1, 50, 7);
-		zoom.setMajorTickSpacing (5);
-		zoom.setMinorTickSpacing (1);
-		zoom.setPaintTicks (true);
-		zoom.setSnapToTicks(true);
-		zoom.setPreferredSize (new Dimension (150, 30));
-		zoom.addMouseListener(new MyMouseListener ());
-		zoom.addMouseMotionListener(new MyMouseListener ());
-		bar1.add(zoom);
-
-		label = new JLabel ("Large");
-		bar1.add (label);
-
-		// Iteration Counter
-
-		label = new JLabel ("                     Iteration: ");
-		bar1.add (label);
-
-		iteration = new JLabel ("" + plane.colony.getItt());
-		bar1.add (iteration);
-
-
-		// BOTTOM ROW:
-
-		// Move Button
-
-		move = new JButton ("Move");		
-		move.addActionListener (buttonListener);	
-		bar2.add (move);
-
-		// Selection Buttons	
-
-		select = new JButton ("Select");
-		select.addActionListener (buttonListener);	
-		bar2.add (select);
-
-		button = new JButton ("Eradicate");
-		button.addActionListener (buttonListener);	
-		bar2.add (button);
-
-		button = new JButton ("Populate");
-		button.addActionListener (buttonListener);	
-		bar2.add (button);
-
-		// Eradicate and Populate Efficiency Slider
-
-		label = new JLabel ("Efficiency:  0.0");
-		bar2.add (label);
-
-		efficiency = new JSlider (0, 1000, 1000); // Conversion factor = 0.001
-		efficiency.setMajorTickSpacing (200);
-		efficiency.setMinorTickSpacing (50);
-		efficiency.setPaintTicks (true);
-		efficiency.setPreferredSize (new Dimension (150, 30));								
-		bar2.add(efficiency);
-
-		label = new JLabel ("1.0           ");
-		bar2.add (label);	
-		
-		// Colony Grid Size Text Fields
-
-		label = new JLabel ("Width:");
-		bar2.add (label);
-		_width = new JTextField ("" + plane.colony.getWidth(), 3);		
-		bar2.add (_width);
-
-		label = new JLabel ("Height:");
-		bar2.add (label);
-		_height = new JTextField ("" + plane.colony.getHeight(), 3);		
-		bar2.add (_height);
-
-		button = new JButton ("Set Size");
-		button.addActionListener (buttonListener);	
-		bar2.add (button);
-
-		button = new JButton ("Controls...");
-		button.addActionListener (buttonListener);	
-		bar2.add (button);
-
-
-		// Putting Everything Together
-
-		toolbars.add (bar1, "North");
-		toolbars.add (bar2, "South");
-		content.add(toolbars, "North");		
-	}
-	
-	/** Advances the current iteration, or generation,
-	 * of the colony by 1. Then, updates the UI, drawing
-	 * the new colony state onto the screen. 
-	 */
-	public void advance ()
-	{
-		plane.colony.advance();
-		updateUI ();
-	}	
-	
-	/** The class the runs the advance() method. This
-	 * class is used by the simulation timer.
-	 */
-	private class Advance extends TimerTask
-	{
-		@Override
-		public void run() 
-		{
-			advance();
-		}		
-	}
-	
-	/** Eradicates the cells within the area bounded by
-	 * the shape specified by the select Shape in the 
-	 * LifePlane instance. The eradication efficiency
-	 * is specified by the current value of the efficiency
-	 * slider component. 
-	 */
-	public void eradicate ()
-	{
-		double density = efficiency.getValue() / 1000.0;
-
-		boolean successful = plane.eradicateSelection (density);
-		select.setText ("Select");
-		if (!successful)
-		{
-			String message = "Please finish selecting an area first.\n(Double click to finalize a selection.)";
-			int type = JOptionPane.INFORMATION_MESSAGE;
-			JOptionPane.showMessageDialog(GraphicUI.this, message, "Eradicate", type);
-		}
-	}
-	
-	/** Populates the cells within the area bounded by
-	 * the shape specified by the select Shape in the 
-	 * LifePlane instance. The population efficiency
-	 * is specified by the current value of the efficiency
-	 * slider component. 
-	 */
-	public void populate ()
-	{
-		double density = efficiency.getValue() / 1000.0;
-
-		boolean successful = plane.populateSelection (density);
-		select.setText ("Select");
-		if (!successful)
-		{
-			String message = "Please finish selecting an area first.\n(Double click to finalize a selection.)";
-			int type = JOptionPane.INFORMATION_MESSAGE;
-			JOptionPane.showMessageDialog(GraphicUI.this, message, "Populate", type);
-		}
-	}
-
-
-	/** Opens a JFileChooser to select a text file. Attempts
-	 * to load that text file into the Colony object contained
-	 * by the LifePlane panel contained in this JFrame. Pops
-	 * up an alert if there was an error in loading the file.
-	 */
-	public void loadFile ()
-	{	
-		// Set up JFileChooser
-		
-		JFileChooser fc = new JFileChooser ();		
-		fc.setFileFilter(new FileNameExtensionFilter ("Text file (*.txt)", "txt"));		
-		fc.setAcceptAllFileFilterUsed(false);		
-		fc.setCurrentDirectory(directory);
-
-		// Show JFileChooser dialog
-		
-		int result = fc.showOpenDialog(this);
-		
-		// Act upon JFileChooser result
-
-		if (result == JFileChooser.APPROVE_OPTION)
-		{
-			File load = fc.getSelectedFile();
-			directory = load;
-			if (load.canRead())
-			{
-				try // try loading the file
-				{					
-					plane.colony.load(readSave (load));
-				}
-				catch (Exception e) // show error dialog
-				{
-					int type = JOptionPane.INFORMATION_MESSAGE;
-					String message = "Error: Corrupt save file.\n";
-					message += "Could not parse file at line and column " + e.getMessage ();					
-					JOptionPane.showMessageDialog(this, message, "Error", type);
-				}
-			}
-		}		
-	}
-
-	/** Opens a JFileChooser to select a location to save
-	 * a text file. Gets the String representation of the
-	 * current state of the colony, and writes that to the
-	 * indicated path. This method prompts the user for an
-	 * overwrite if a file of the indicated name already
-	 * exists. 
-	 */
-	public void saveFile ()
-	{		
-		// Set up JFileChooser 
-		
-		JFileChooser fc = new JFileChooser ();
-		fc.setFileFilter(new FileNameExtensionFilter ("Text file (*.txt)", "txt"));
-		fc.setAcceptAllFileFilterUsed(false);
-		fc.setCurrentDirectory(directory);
-
-		// Show JFileChosoer dialog
-		
-		int result = fc.showSaveDialog(this);
-		
-		// Act upon JFileChooser result
-		
-		if (result == JFileChooser.APPROVE_OPTION)
-		{
-			File save = fc.getSelectedFile();
-			if (!save.getName().endsWith (".txt"))
-				save = new File (save + ".txt");
-			directory = save;
-
-			if (save.canRead()) // prompt overwrite if file exists
-			{
-				String message = "Overwrite file?";
-				int type = JOptionPane.YES_NO_OPTION;
-				result = JOptionPane.showConfirmDialog(GraphicUI.this, message, "Save file", type);				
-			}
-			
-			// Write the file
-
-			if (result == JFileChooser.APPROVE_OPTION || result == JOptionPane.YES_OPTION)
-				writeSave (save);
-		}
-	}
-		
-
-	/** Reads the file at the indicated path and returns
-	 * a String representation of the contents of the file.
-	 * 
-	 * @param path	the file to be read
-	 * @return the file's contents in String format
-	 */
-	public String readSave (File path)
-	{
-		// Declaration of Variables
-		String save = "";
-		BufferedReader reader = null;
-		boolean reading = true;
-		
-		try	// try reading the file
-		{
-			reader = new BufferedReader (new FileReader (path));
-
-			while (reading)
-			{		
-				String line = reader.readLine();				
-				if (line != null)
-					save += line + "\n";
-				else
-					reading = false;
-			}
-
-			reader.close();
-		}
-		catch (Exception e) // show error dialog
-		{
-			String message = "Error. Could not read file:" + path;
-			int type = JOptionPane.INFORMATION_MESSAGE;
-			JOptionPane.showMessageDialog(this, message, "Load", type);
-		}
-		return save;
-	}
-
-	/** Gets the String representation of the current state 
-	 * of the colony, and writes that to the file at the 
-	 * indicated path. The writer for this format encodes 
-	 * the text in UTF-8 format.
-	 * 
-	 * @param path	the file to write to
-	 */
-	public void writeSave (File path)
-	{
-		BufferedWriter writer = null;
-
-		try // try writing to the file
-		{
-			writer = new BufferedWriter(new OutputStreamWriter(
-					new FileOutputStream(path), "utf-8"));
-			writer.write(plane.colony.toString());
-		} 
-		catch (Exception e) // show error dialog
-		{
-			String message = "Error. Could not write file.";
-			int type = JOptionPane.INFORMATION_MESSAGE;
-			JOptionPane.showMessageDialog(this, message, "Save", type);
-		} 
-		finally 
-		{
-			try 
-			{
-				writer.close();
-			} 
-			catch (Exception ex) {}
-		}
-	}
-	
-	/** Attempts to resize the colony to the dimensions
-	 * specified in the _width and _height JTextFields.
-	 * Sets the text of the two JTextFields to the current
-	 * dimensions of the colony if the text in either of 
-	 * those JTextFields are invalid dimensions. 
-	 */
-	public void setSize ()
-	{
-		int width;
-		int height;
-
-		stopTimer();		
-
-		try
-		{
-			width = Integer.parseInt(_width.getText());
-			height = Integer.parseInt(_height.getText());	
-			if (width <= 0 || height <= 0)
-				throw new NumberFormatException ();						
-			plane.colony.setSize(new Dimension (width, height));
-			plane.centerOnGrid();
-		}
-		catch (NumberFormatException ex)
-		{		
-			width = plane.colony.getWidth();
-			height = plane.colony.getHeight();
-		}	
-
-		_width.setText ("" + width);
-		_height.setText ("" + height);
-		updateUI();	
-	}
-
-	/** Toggles the state of the JTextArea that displays
-	 * the list of keyboard and mouse controls. Removes the
-	 * list from the contentPane if the list is currently visible.
-	 * Adds the list to the contentPane if the list is not 
-	 * currently visible.  
-	 */
-	public void toggleShowControls ()
-	{
-		if (controls == null)
-		{	
-			controls = new JTextArea ();
-			controls.setBackground(new Color (238, 238, 238));
-			controls.setPreferredSize(new Dimension (200, 600));			
-			controls.setMargin(new Insets (2,5,5,2));
-			controls.setEditable(false);
-
-			controls.append("Mouse Functions:\n");
-			controls.append("CLICK\tToggle Cell\n");	
-			controls.append("SCROLL\tZoom\n");
-			controls.append("SHIFT+DRAG\tMove\n");
-			controls.append("CTRL+MOUSE\tSelect\n\n");
-
-
-			controls.append("Keyboard Shortcuts:\n");
-
-			controls.append("=\tZoom in\n");
-			controls.append("-\tZoom out\n");	
-			controls.append("N\tNext iteration\n");
-			controls.append("SPACE\tStart/Stop Timer\n");			
-			controls.append("T\tIncrease speed\n");
-			controls.append("R\tDecrease speed\n");		
-			controls.append("F1\tPopulate\n");
-			controls.append("F2\tEradicate\n");
-
-			content.add (controls, "East");
-		}
-		else
-		{
-			content.remove (controls);
-			controls = null;
-		}
-		setContentPane (content);
-	}
-	
-	/** Starts the simulation timer. The frequency
-	 * of the timer is determined by the current value
-	 * of the speed slider component. Specifically, the
-	 * timer of the delay is equal to 1000 milliseconds 
-	 * divided by 2 to the power of the current slider value. 
-	 */
-	public void startTimer ()
-	{
-		simulate.setText("Stop Timer");
-		timer = new Timer();
-		long delay = 1000 / (long)Math.pow(2, speed.getValue());		
-		timer.scheduleAtFixedRate (new Advance(), 0, delay);		
-	}	
-
-	/** Stops the simulation timer if it is not stopped.
-	 * Sets the simulation timer to null. 
-	 */
-	public void stopTimer ()
-	{
-		if (timer != null)
-		{
-			simulate.setText("Start Timer");
-			timer.cancel();
-			timer = null;
-		}
-	}	
-	
-	/** Enables moving mode if moving mode is disabled.
-	 * Disables moving mode if moving mode is enabled. 
-	 */
-	public void toggleMove ()
-	{
-		if (move.getText().equals ("Move"))
-		{
-			move.setText("Edit");
-			plane.startMoving ();
-		}
-		else if (move.getText().equals("Edit"))
-		{
-			move.setText("Move");
-			plane.stopMoving ();					
-		}
-	}
-
-	/** Starts the simulation timer if it is currently stopped.
-	 * Stops the simulation timer if it is currently running. 
-	 */
-	public void toggleTimer ()
-	{
-		if (simulate.getText().equals("Start Timer"))		
-			startTimer ();		
-		else if (simulate.getText().equals("Stop Timer"))		
-			stopTimer ();		
-	}
-		
-	/** Repaints the LifePlane panel, and updates the
-	 * iteration JLabel in the toolbar with the colony's
-	 * current iteration value. 
-	 */
-	public void updateUI ()
-	{				
-		iteration.setText ("" + plane.colony.getItt());
-		plane.repaint();
-	}
-
-	/** Listens to and acts upon the clicking of various
-	 * buttons in the toolbar.
-	 */
-	private class ButtonListener implements ActionListener
-	{
-		@Override
-		public void actionPerformed(ActionEvent e) 
-		{			
-			JButton button = (JButton) e.getSource();
-
-			if (button.getText().equals("Save"))
-			{
-				stopTimer ();
-				manager.removeKeyEventDispatcher(keyDispatcher);					
-				saveFile ();
-				manager.addKeyEventDispatcher(keyDispatcher);
-			}
-			else if (button.getText().equals("Load"))
-			{
-				stopTimer ();
-				manager.removeKeyEventDispatcher(keyDispatcher);					
-				loadFile ();
-				updateUI ();					
-				manager.addKeyEventDispatcher(keyDispatcher);
-			}				
-			else if (button.getText().equals ("Next"))
-			{
-				advance ();
-			}
-			else if (button.getText().equals("Start Timer")
-					|| button.getText().equals("Stop Timer"))
-			{
-				toggleTimer ();
-			}
-			else if (button.getText().equals("Select"))
-			{
-				button.setText("Cancel");
-				plane.startSelection ();
-			}
-			else if (button.getText().equals("Cancel"))
-			{
-				button.setText("Select");
-				plane.cancelSelection ();					
-			}
-			else if (button.getText().equals("Move")
-					|| button.getText().equals("Edit"))
-			{
-				toggleMove();
-			}			
-			else if (button.getText().equals("Eradicate"))
-			{
-				eradicate ();
-			}
-			else if (button.getText().equals("Populate"))
-			{
-				populate ();
-			}
-			else if (button.getText().equals("Set Size"))
-			{
-				setSize();										
-			}
-			else if (button.getText().equals("Controls..."))
-			{
-				toggleShowControls();
-			}
-		}		
-	}
-	
-	/** Listens to and acts upon changes in the speed slider component.
-	 */
-	private class SliderListener implements ChangeListener
-	{
-		@Override
-		public void stateChanged(ChangeEvent e) 
-		{
-			JSlider source = (JSlider)e.getSource();
-			if (source.equals(speed))
-			{
-				if (timer != null)
-				{
-					// Reset timer to update Timer delay
-					stopTimer();
-					startTimer();
-				}
-			}
-		}
-	}
-
-	/** Listens to and acts upon changes in the zoom slider component.
-	 */
-	private class MyMouseListener extends MouseAdapter
-	{
-		@Override
-		public void mouseClicked (MouseEvent e)	
-		{
-			plane.setZoom (zoom.getValue());
-		}
-
-		@Override
-		public void mouseDragged (MouseEvent e)
-		{
-			plane.setZoom(zoom.getValue());
-		}
-	}
-
-	/** Listens to and acts upon keyboard inputs. This KeyEventDispatcher
-	 * is temporally disabled when JFileChooser is brought up, so that all
-	 * keyboard inputs are isolated to the JFileChooser, and so that nothing
-	 * happens while the user is using the JFileChooser.
-	 */
-	private class MyDispatcher implements KeyEventDispatcher 
-	{
-		@Override
-		public boolean dispatchKeyEvent(KeyEvent e) 
-		{			
-			boolean consumed = false;
-
-			if (e.getID() == KeyEvent.KEY_PRESSED) 
-			{
-				int key = e.getKeyCode();
-				if (key == KeyEvent.VK_CONTROL)
-				{
-					if (select.getText().equals ("Select"))
-					{
-						select.setText("Cancel");
-						plane.startSelection ();
-					}            			
-				}
-				else if (e.getKeyCode() == KeyEvent.VK_SHIFT)
-				{
-					if (move.getText().equals("Move"))
-					{
-						move.setText("Edit");
-						plane.startMoving();
-					}					
-				}
-				else if (key == KeyEvent.VK_F1)
-				{
-					populate ();
-				}
-				else if (key == KeyEvent.VK_F2)
-				{
-					eradicate ();
-				}				
-				else if (key == KeyEvent.VK_N)
-				{
-					advance();
-				}	
-				else if (key == KeyEvent.VK_SPACE)
-				{
-					toggleTimer();	
-					consumed = true; // to prevent buttons from being pressed
-				}
-				else if (key == KeyEvent.VK_T)
-				{
-					int rate = speed.getValue();
-					rate++;
-					speed.setValue(rate);
-				}
-				else if (key == KeyEvent.VK_R)
-				{
-					int rate = speed.getValue();
-					rate--;
-					speed.setValue(rate);
-				}	
-				else if (key == KeyEvent.VK_EQUALS)
-				{
-					int n = plane.colony.getZoom() + 1;
-					zoom.setValue(n);
-					plane.setZoom(getMousePosition(), n);
-				}
-				else if (key == KeyEvent.VK_MINUS)
-				{
-					int n = plane.colony.getZoom() - 1;
-					zoom.setValue(n);
-					plane.setZoom(getMousePosition(), n);
-				}				
-			} 
-			else if (e.getID() == KeyEvent.KEY_RELEASED) 
-			{
-				if (e.getKeyCode() == KeyEvent.VK_CONTROL)
-				{
-					select.setText("Select");
-					plane.finalizeSelection();					
-					if (plane.getSelection().getCurrentPoint() == null)
-						plane.cancelSelection();
-				}  
-				else if (e.getKeyCode() == KeyEvent.VK_SHIFT)
-				{
-					move.setText("Move");
-					plane.stopMoving();
-				}
-			}  
-			updateUI();
-			return consumed;
-		}
-	}
-}
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Insets;
+import java.awt.KeyEventDispatcher;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+/** The GUI for this implementation of Conway's Game of Life.
+ * Contains a LifePlane object, which contains a Colony object,
+ * which contains the actual grid of life forms. 
+ * 
+ * @author Jiayin
+ * @date CE 2013-12-12
+ */
+public class GraphicUI extends JFrame 
+{	
+	public JPanel content;
+	public LifePlane plane;
+
+	private JLabel iteration;
+	private JButton select;
+	private JButton move;
+	private JButton simulate;
+
+	protected JSlider speed;
+	protected JSlider efficiency;
+	protected JSlider zoom;
+
+	private JTextField _width;
+	private JTextField _height;
+
+	private KeyboardFocusManager manager;
+	private MyDispatcher keyDispatcher;
+	private boolean cycleNoticed = false;
+
+	private JTextArea controls;	
+
+	private File directory = new File ("."); // initialize dir to current dir
+
+	/** Creates a new GraphicUI of the specified title, width, 
+	 * and height.
+	 * 
+	 * @param title		the title of the GUI
+	 * @param width		the width of the GUI
+	 * @param height	the height of the GUI
+	 */
+	public GraphicUI (String title, int width, int height)
+	{
+		super (title);	
+
+		setDefaultCloseOperation (EXIT_ON_CLOSE);
+		setExtendedState(MAXIMIZED_BOTH);
+		setSize (width, height);		
+
+		initContent ();			
+		setContentPane (content);
+		setVisible (true);
+		plane.centerOnGrid();
+		toggleShowControls();
+		plane.simulation.start ();
+	}
+
+	/** Initializes the content pane, including the LifePlane and 
+	 * the toolbar. Also initializes and sets a custom KeyEventDispatcher
+	 * to deal with inputed keys.
+	 */
+	private void initContent ()
+	{
+		content = new JPanel (new BorderLayout ());
+		plane = new LifePlane (this);		
+		content.add (plane, "Center");	
+
+		initToolBar ();			
+
+		manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+		keyDispatcher = new MyDispatcher ();
+		manager.addKeyEventDispatcher(keyDispatcher);	
+	}
+
+	/** Initializes the toolbar, including both rows of sliders and
+	 * buttons. Adds the sliders, buttons, as well as action listeners 
+	 * for each individual component as necessary.
+	 */
+	private void initToolBar ()
+	{
+		// Declaration of Variables
+
+		ButtonListener buttonListener = new ButtonListener ();
+
+		JPanel toolbars = new JPanel (new BorderLayout());		
+		JPanel bar1 = new JPanel ();	
+		JPanel bar2 = new JPanel ();
+		bar1.setLayout (new FlowLayout (FlowLayout.LEFT));
+		bar2.setLayout (new FlowLayout (FlowLayout.LEFT));
+
+		JButton button;
+		JLabel label;
+
+		// TOP ROW:			
+		// File Buttons
+
+		button = new JButton ("Save");
+		button.addActionListener (buttonListener);	
+		bar1.add (button);
+
+		button = new JButton ("Load");
+		button.addActionListener (buttonListener);	
+		bar1.add (button);	
+
+		// Simulation Buttons
+
+		button = new JButton ("Next");
+		button.addActionListener (buttonListener);	
+		bar1.add (button);
+
+		simulate = new JButton ("Start Timer");
+		simulate.addActionListener (buttonListener);	
+		bar1.add (simulate);
+
+		// Simulation Speed Slider
+
+		label = new JLabel ("Speed:  Slow");
+		bar1.add (label);
+
+		speed = new JSlider (0, 21, 2); // 2^value generations per second; unthrottled at the top		
+		speed.setMajorTickSpacing (4);
+		speed.setMinorTickSpacing (1);
+		speed.setPaintTicks (true);
+		speed.setPreferredSize (new Dimension (150, 30));
+		speed.addChangeListener(new SliderListener());				
+		bar1.add(speed);
+
+		label = new JLabel ("Fast             ");
+		bar1.add (label);
+
+
+		// Zoom slider
+
+		label = new JLabel ("Zoom:  Small");
+		bar1.add (label);
+
+		zoom = new JSlider (1, 50, 7);
+		zoom.setMajorTickSpacing (5);
+		zoom.setMinorTickSpacing (1);
+		zoom.setPaintTicks (true);
+		zoom.setSnapToTicks(true);
+		zoom.setPreferredSize (new Dimension (150, 30));
+		zoom.addMouseListener(new MyMouseListener ());
+		zoom.addMouseMotionListener(new MyMouseListener ());
+		bar1.add(zoom);
+
+		label = new JLabel ("Large");
+		bar1.add (label);
+
+		// Iteration Counter
+
+		label = new JLabel ("                     Iteration: ");
+		bar1.add (label);
+
+		iteration = new JLabel ("" + plane.colony.getItt());
+		bar1.add (iteration);
+
+
+		// BOTTOM ROW:
+
+		// Move Button
+
+		move = new JButton ("Move");		
+		move.addActionListener (buttonListener);	
+		bar2.add (move);
+
+		// Selection Buttons	
+
+		select = new JButton ("Select");
+		select.addActionListener (buttonListener);	
+		bar2.add (select);
+
+		button = new JButton ("Eradicate");
+		button.addActionListener (buttonListener);	
+		bar2.add (button);
+
+		button = new JButton ("Populate");
+		button.addActionListener (buttonListener);	
+		bar2.add (button);
+
+		// Eradicate and Populate Efficiency Slider
+
+		label = new JLabel ("Efficiency:  0.0");
+		bar2.add (label);
+
+		efficiency = new JSlider (0, 1000, 1000); // Conversion factor = 0.001
+		efficiency.setMajorTickSpacing (200);
+		efficiency.setMinorTickSpacing (50);
+		efficiency.setPaintTicks (true);
+		efficiency.setPreferredSize (new Dimension (150, 30));								
+		bar2.add(efficiency);
+
+		label = new JLabel ("1.0           ");
+		bar2.add (label);	
+		
+		// Colony Grid Size Text Fields
+
+		label = new JLabel ("Width:");
+		bar2.add (label);
+		_width = new JTextField ("" + plane.colony.getWidth(), 3);		
+		bar2.add (_width);
+
+		label = new JLabel ("Height:");
+		bar2.add (label);
+		_height = new JTextField ("" + plane.colony.getHeight(), 3);		
+		bar2.add (_height);
+
+		button = new JButton ("Set Size");
+		button.addActionListener (buttonListener);	
+		bar2.add (button);
+
+		button = new JButton ("Controls...");
+		button.addActionListener (buttonListener);	
+		bar2.add (button);
+
+
+		// Putting Everything Together
+
+		toolbars.add (bar1, "North");
+		toolbars.add (bar2, "South");
+		content.add(toolbars, "North");		
+	}
+	
+	/** Advances the current iteration, or generation,
+	 * of the colony by 1. The UI is updated once the
+	 * simulation has drawn the new colony state. 
+	 */
+	public void advance ()
+	{
+		plane.simulation.advance();
+	}	
+	
+	/** Eradicates the cells within the area bounded by
+	 * the shape specified by the select Shape in the 
+	 * LifePlane instance. The eradication efficiency
+	 * is specified by the current value of the efficiency
+	 * slider component. 
+	 */
+	public void eradicate ()
+	{
+		double density = efficiency.getValue() / 1000.0;
+
+		boolean successful = plane.eradicateSelection (density);
+		select.setText ("Select");
+		if (!successful)
+		{
+			String message = "Please finish selecting an area first.\n(Double click to finalize a selection.)";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Eradicate", type);
+		}
+	}
+	
+	/** Copies the cells within the area bounded by the
+	 * select Shape in the LifePlane instance onto the
+	 * clipboard, so that they can be pasted later. 
+	 */
+	public void copy ()
+	{
+		boolean successful = plane.copySelection ();
+		select.setText ("Select");
+		if (!successful)
+		{
+			String message = "Please finish selecting an area first.\n(Double click to finalize a selection.)";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Copy", type);
+		}
+	}
+
+	/** Moves the cells within the area bounded by the
+	 * select Shape in the LifePlane instance onto the
+	 * clipboard, so that they can be pasted later. 
+	 */
+	public void cut ()
+	{
+		boolean successful = plane.cutSelection ();
+		select.setText ("Select");
+		if (!successful)
+		{
+			String message = "Please finish selecting an area first.\n(Double click to finalize a selection.)";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Cut", type);
+		}
+	}
+
+	/** Starts or stops pasting the clipboard wherever
+	 * the LifePlane is clicked.
+	 */
+	public void togglePaste ()
+	{
+		if (plane.isPasting ())
+			plane.stopPasting ();
+		else if (!plane.startPasting ())
+		{
+			String message = "Please copy or cut a selection first.";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Paste", type);
+		}
+	}
+
+	/** Stops the simulation timer, and goes back to the
+	 * previous generation, or to before the last edit.
+	 */
+	public void undo ()
+	{
+		stopTimer ();
+		plane.simulation.submit (new Rewind (Rewind.UNDO));
+	}
+
+	/** Stops the simulation timer, and goes forward again
+	 * to the generation that was last undone.
+	 */
+	public void redo ()
+	{
+		stopTimer ();
+		plane.simulation.submit (new Rewind (Rewind.REDO));
+	}
+
+	/** Stops the simulation timer, and asks for a generation
+	 * to go back to. Pops up an alert if that is not a valid
+	 * iteration, or if that generation is no longer kept.
+	 */
+	public void rewind ()
+	{
+		stopTimer ();
+		Colony.Snapshot cells = plane.simulation.getSnapshot ();
+		String message = "Go back to iteration (earliest kept: " + cells.getTimelineStart () + "):";
+		String text = JOptionPane.showInputDialog (GraphicUI.this, message, "" + cells.getItt ());
+		if (text == null)
+			return;
+
+		try
+		{
+			long target = Long.parseLong (text.trim ());
+			if (target < 0)
+				throw new NumberFormatException ();
+			plane.simulation.submit (new Rewind (target));
+		}
+		catch (NumberFormatException ex)
+		{
+			message = "Please enter a valid iteration number.";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Rewind", type);
+		}
+	}
+
+	/** Goes back or forward in the timeline of the colony,
+	 * and tells the user if the generation is not kept.
+	 */
+	private class Rewind implements Simulation.Command, Runnable
+	{
+		public static final long UNDO = -2;
+		public static final long REDO = -3;
+
+		private final long target;
+
+		/** Creates a command to go to the given generation.
+		 * 
+		 * @param target	the iteration to go to, or UNDO or REDO
+		 */
+		public Rewind (long target)
+		{
+			this.target = target;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			if (target == UNDO)
+				colony.undo ();
+			else if (target == REDO)
+				colony.redo ();
+			else if (!colony.rewind (target))
+				SwingUtilities.invokeLater (this);
+		}
+
+		@Override
+		public void run ()
+		{
+			String message = "That iteration is not in the timeline.";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Rewind", type);
+		}
+	}
+
+	/** Populates the cells within the area bounded by
+	 * the shape specified by the select Shape in the 
+	 * LifePlane instance. The population efficiency
+	 * is specified by the current value of the efficiency
+	 * slider component. 
+	 */
+	public void populate ()
+	{
+		double density = efficiency.getValue() / 1000.0;
+
+		boolean successful = plane.populateSelection (density);
+		select.setText ("Select");
+		if (!successful)
+		{
+			String message = "Please finish selecting an area first.\n(Double click to finalize a selection.)";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Populate", type);
+		}
+	}
+
+
+	/** Opens a JFileChooser to select a text or binary save file,
+	 * or a pattern in the RLE format. 
+	 * Attempts to load that file into the Colony object contained
+	 * by the LifePlane panel contained in this JFrame. Pops
+	 * up an alert if there was an error in loading the file.
+	 */
+	public void loadFile ()
+	{	
+		// Set up JFileChooser
+		
+		JFileChooser fc = new JFileChooser ();		
+		fc.setFileFilter(new FileNameExtensionFilter ("Save file (*.txt, *.life, *.rle)", "txt", "life", "rle"));		
+		fc.setAcceptAllFileFilterUsed(false);		
+		fc.setCurrentDirectory(directory);
+
+		// Show JFileChooser dialog
+		
+		int result = fc.showOpenDialog(this);
+		
+		// Act upon JFileChooser result
+
+		if (result == JFileChooser.APPROVE_OPTION)
+		{
+			File load = fc.getSelectedFile();
+			directory = load;
+			if (load.canRead())
+			{
+				plane.simulation.submit (new Load (load));
+			}
+		}		
+	}
+
+	/** Loads a save file into the colony, reading it as a stream,
+	 * and shows an error dialog on the event dispatch thread if it
+	 * could not be read or is corrupt. Binary saves are told apart
+	 * from text saves by their first bytes, whatever their names, 
+	 * and files whose names end with ".rle" are read as patterns.
+	 * The offset, zoom and colors of a save are handed back to the
+	 * event dispatch thread, which owns them, to be applied there.
+	 */
+	private class Load implements Simulation.Command, Runnable
+	{
+		private final File path;
+		private Colony.View view;
+		private String message;
+
+		/** Creates a command to load a save file.
+		 * 
+		 * @param path	the file to be read
+		 */
+		public Load (File path)
+		{
+			this.path = path;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			boolean binary = false;
+
+			try (InputStream in = new BufferedInputStream (new FileInputStream (path), 1 << 16)) // try loading the file
+			{					
+				binary = Colony.isBinary (in);
+				if (binary)
+					view = colony.loadBinary (in);
+				else if (path.getName ().toLowerCase ().endsWith (".rle"))
+					colony.loadRLE (in);
+				else
+					view = colony.load (in);
+
+				if (view != null)
+					SwingUtilities.invokeLater (this);
+			}
+			catch (IOException e) // show error dialog
+			{
+				message = "Error. Could not read file:" + path;
+				SwingUtilities.invokeLater (this);
+			}
+			catch (Exception e)
+			{
+				message = "Error: Corrupt save file.\n";
+				if (binary)
+					message += e.getMessage ();
+				else
+					message += "Could not parse file at line and column " + e.getMessage ();					
+				SwingUtilities.invokeLater (this);
+			}
+		}
+
+		@Override
+		public void run ()
+		{
+			if (message == null) // apply the view of the save
+			{
+				plane.colony.setView (view);
+				plane.repaint ();
+				return;
+			}
+
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Load", type);
+		}
+	}
+
+	/** Opens a JFileChooser to select a location to save
+	 * a text, binary or RLE file, depending on the file type chosen.
+	 * Writes the current state of the colony to the indicated
+	 * path. This method prompts the user for an overwrite if a
+	 * file of the indicated name already exists. 
+	 */
+	public void saveFile ()
+	{		
+		// Set up JFileChooser 
+		
+		JFileChooser fc = new JFileChooser ();
+		FileNameExtensionFilter text = new FileNameExtensionFilter ("Text file (*.txt)", "txt");
+		FileNameExtensionFilter binary = new FileNameExtensionFilter ("Compressed binary file (*.life)", "life");
+		FileNameExtensionFilter pattern = new FileNameExtensionFilter ("RLE pattern (*.rle)", "rle");
+		fc.addChoosableFileFilter(text);
+		fc.addChoosableFileFilter(binary);
+		fc.addChoosableFileFilter(pattern);
+		fc.setFileFilter(text);
+		fc.setAcceptAllFileFilterUsed(false);
+		fc.setCurrentDirectory(directory);
+
+		// Show JFileChosoer dialog
+		
+		int result = fc.showSaveDialog(this);
+		
+		// Act upon JFileChooser result
+		
+		if (result == JFileChooser.APPROVE_OPTION)
+		{
+			File save = fc.getSelectedFile();
+			String extension = fc.getFileFilter() == binary ? ".life" : fc.getFileFilter() == pattern ? ".rle" : ".txt";
+			if (!save.getName().endsWith (extension))
+				save = new File (save + extension);
+			directory = save;
+
+			if (save.canRead()) // prompt overwrite if file exists
+			{
+				String message = "Overwrite file?";
+				int type = JOptionPane.YES_NO_OPTION;
+				result = JOptionPane.showConfirmDialog(GraphicUI.this, message, "Save file", type);				
+			}
+			
+			// Write the file
+
+			if (result == JFileChooser.APPROVE_OPTION || result == JOptionPane.YES_OPTION)
+				writeSave (save);
+		}
+	}
+		
+
+	/** Writes the current state of the colony to the file at
+	 * the indicated path, as a deflated binary save if its name
+	 * ends with ".life", as an RLE pattern of the live cells if
+	 * it ends with ".rle", or otherwise as a text save encoded in
+	 * UTF-8 format. The file is written on the simulation 
+	 * thread, between generations, with the view as it is now.
+	 * 
+	 * @param path	the file to write to
+	 */
+	public void writeSave (File path)
+	{
+		plane.simulation.submit (new Save (path, plane.colony.getView ()));
+	}
+
+	/** Writes the colony to a file, and shows an error
+	 * dialog on the event dispatch thread if it fails.
+	 */
+	private class Save implements Simulation.Command, Runnable
+	{
+		private final File path;
+		private final Colony.View view;
+
+		/** Creates a command to save the colony.
+		 * 
+		 * @param path	the file to write to
+		 * @param view	the offset, zoom and colors to save, taken
+		 * on the event dispatch thread
+		 */
+		public Save (File path, Colony.View view)
+		{
+			this.path = path;
+			this.view = view;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			try (OutputStream out = new FileOutputStream (path)) // stream the save to the file
+			{
+				if (path.getName ().endsWith (".life"))
+					colony.writeBinary (out, Colony.Compression.DEFLATE, view);
+				else if (path.getName ().endsWith (".rle"))
+				{
+					Writer writer = new BufferedWriter (new OutputStreamWriter (out, StandardCharsets.UTF_8), 1 << 16);
+					colony.writeRLE (writer);
+				}
+				else
+					colony.writeTo (out, view);
+			}
+			catch (IOException e) // show error dialog
+			{
+				SwingUtilities.invokeLater (this);
+			}
+		}
+
+		@Override
+		public void run ()
+		{
+			String message = "Error. Could not write file.";
+			int type = JOptionPane.INFORMATION_MESSAGE;
+			JOptionPane.showMessageDialog(GraphicUI.this, message, "Save", type);
+		}
+	}
+	
+	/** Attempts to resize the colony to the dimensions
+	 * specified in the _width and _height JTextFields.
+	 * Sets the text of the two JTextFields to the current
+	 * dimensions of the colony if the text in either of 
+	 * those JTextFields are invalid dimensions. 
+	 */
+	public void setSize ()
+	{
+		int width;
+		int height;
+
+		stopTimer();		
+
+		try
+		{
+			width = Integer.parseInt(_width.getText());
+			height = Integer.parseInt(_height.getText());	
+			if (width <= 0 || height <= 0)
+				throw new NumberFormatException ();						
+			plane.simulation.submit (new Resize (new Dimension (width, height)));
+			plane.centerOnGrid(new Dimension (width, height));
+		}
+		catch (NumberFormatException ex)
+		{		
+			width = plane.simulation.getSnapshot().getWidth();
+			height = plane.simulation.getSnapshot().getHeight();
+		}	
+
+		_width.setText ("" + width);
+		_height.setText ("" + height);
+		updateUI();	
+	}
+
+	/** Resizes the colony.
+	 */
+	private static class Resize implements Simulation.Command
+	{
+		private final Dimension size;
+
+		/** Creates a command to resize the colony.
+		 * 
+		 * @param size	the dimensions of the new colony
+		 */
+		public Resize (Dimension size)
+		{
+			this.size = size;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			colony.setSize (size);
+		}
+	}
+
+	/** Toggles the state of the JTextArea that displays
+	 * the list of keyboard and mouse controls. Removes the
+	 * list from the contentPane if the list is currently visible.
+	 * Adds the list to the contentPane if the list is not 
+	 * currently visible.  
+	 */
+	public void toggleShowControls ()
+	{
+		if (controls == null)
+		{	
+			controls = new JTextArea ();
+			controls.setBackground(new Color (238, 238, 238));
+			controls.setPreferredSize(new Dimension (200, 600));			
+			controls.setMargin(new Insets (2,5,5,2));
+			controls.setEditable(false);
+
+			controls.append("Mouse Functions:\n");
+			controls.append("CLICK\tToggle Cell\n");	
+			controls.append("SCROLL\tZoom\n");
+			controls.append("SHIFT+DRAG\tMove\n");
+			controls.append("CTRL+MOUSE\tSelect\n\n");
+
+
+			controls.append("Keyboard Shortcuts:\n");
+
+			controls.append("=\tZoom in\n");
+			controls.append("-\tZoom out\n");	
+			controls.append("N\tNext iteration\n");
+			controls.append("SPACE\tStart/Stop Timer\n");			
+			controls.append("T\tIncrease speed\n");
+			controls.append("R\tDecrease speed\n");		
+			controls.append("F1\tPopulate\n");
+			controls.append("F2\tEradicate\n");
+			controls.append("C\tCopy selection\n");
+			controls.append("X\tCut selection\n");
+			controls.append("V\tStart/Stop pasting\n");
+			controls.append("P\tNext paste mode\n");
+			controls.append("[  ]\tRotate clipboard\n");
+			controls.append("M\tMirror clipboard\n");
+			controls.append("F\tFlip clipboard\n");
+			controls.append("Z\tUndo / Step back\n");
+			controls.append("Y\tRedo\n");
+			controls.append("G\tGo back to iteration\n");
+
+			content.add (controls, "East");
+		}
+		else
+		{
+			content.remove (controls);
+			controls = null;
+		}
+		setContentPane (content);
+	}
+	
+	/** Starts the simulation timer. The rate of the
+	 * timer is determined by the current value of the
+	 * speed slider component. Specifically, the number of
+	 * generations per second is 2 to the power of the
+	 * current slider value, or as many as possible when
+	 * the slider is at its maximum. The screen is redrawn
+	 * at most Simulation.FPS times a second, however
+	 * fast the colony advances. 
+	 */
+	public void startTimer ()
+	{
+		simulate.setText("Stop Timer");
+		long rate = 1L << speed.getValue();
+		if (speed.getValue() == speed.getMaximum())
+			rate = Simulation.UNTHROTTLED;
+		plane.simulation.setRate (rate);		
+	}	
+
+	/** Stops the simulation timer if it is not stopped.
+	 */
+	public void stopTimer ()
+	{
+		if (plane.simulation.isAdvancing ())
+		{
+			simulate.setText("Start Timer");
+			plane.simulation.setRate (0);
+		}
+	}	
+	
+	/** Enables moving mode if moving mode is disabled.
+	 * Disables moving mode if moving mode is enabled. 
+	 */
+	public void toggleMove ()
+	{
+		if (move.getText().equals ("Move"))
+		{
+			move.setText("Edit");
+			plane.startMoving ();
+		}
+		else if (move.getText().equals("Edit"))
+		{
+			move.setText("Move");
+			plane.stopMoving ();					
+		}
+	}
+
+	/** Starts the simulation timer if it is currently stopped.
+	 * Stops the simulation timer if it is currently running. 
+	 */
+	public void toggleTimer ()
+	{
+		if (simulate.getText().equals("Start Timer"))		
+			startTimer ();		
+		else if (simulate.getText().equals("Stop Timer"))		
+			stopTimer ();		
+	}
+		
+	/** Repaints the LifePlane panel, and updates the
+	 * iteration JLabel in the toolbar with the colony's
+	 * current iteration value, and the number of generations
+	 * per second achieved while the timer is running. If the 
+	 * colony has settled into a cycle, its period is shown as
+	 * well, and the first time
+	 * this happens while the timer is running, the user is asked
+	 * whether to stop the timer.
+	 */
+	public void updateUI ()
+	{				
+		Colony.Snapshot cells = plane.simulation.getSnapshot ();
+		int period = cells.getPeriod ();
+
+		if (period > 0)
+		{
+			iteration.setText ("" + cells.getItt() + "   (stable, period " + period + ")" + rateStatus () + pasteStatus ());
+			if (plane.simulation.isAdvancing () && !cycleNoticed)
+			{
+				cycleNoticed = true;
+				SwingUtilities.invokeLater (new CycleNotice ());
+			}
+		}
+		else
+		{
+			iteration.setText ("" + cells.getItt() + rateStatus () + pasteStatus ());
+			cycleNoticed = false;
+		}
+		plane.repaint();
+	}
+
+	/** Describes the number of generations per second that the
+	 * colony is actually advancing by, for the iteration counter.
+	 * 
+	 * @return the rate, or an empty String if the timer is stopped
+	 */
+	private String rateStatus ()
+	{
+		if (!plane.simulation.isAdvancing ())
+			return "";
+		return "   (" + Math.round (plane.simulation.getAchievedRate ()) + " gen/s)";
+	}
+
+	/** Describes the current paste mode, for the iteration counter.
+	 * 
+	 * @return the paste mode, or an empty String if not pasting
+	 */
+	private String pasteStatus ()
+	{
+		return plane.isPasting () ? "   (pasting, " + plane.getPasteMode () + ")" : "";
+	}
+
+	/** Tells the user that the colony has settled into a cycle,
+	 * and offers to stop the simulation timer. Run on the event
+	 * dispatch thread, so that the timer is not held up. 
+	 */
+	private class CycleNotice implements Runnable
+	{
+		@Override
+		public void run ()
+		{
+			Colony.Snapshot cells = plane.simulation.getSnapshot ();
+			int period = cells.getPeriod ();
+			if (!plane.simulation.isAdvancing () || period == 0)
+				return;
+
+			String message = "The colony has been stable since iteration " 
+					+ cells.getCycleStart () + ", with a period of " + period + ".\n"
+					+ "Stop the timer?";
+			int type = JOptionPane.YES_NO_OPTION;
+			int result = JOptionPane.showConfirmDialog(GraphicUI.this, message, "Stable", type);
+
+			if (result == JOptionPane.YES_OPTION)
+				stopTimer ();
+		}
+	}
+
+	/** Listens to and acts upon the clicking of various
+	 * buttons in the toolbar.
+	 */
+	private class ButtonListener implements ActionListener
+	{
+		@Override
+		public void actionPerformed(ActionEvent e) 
+		{			
+			JButton button = (JButton) e.getSource();
+
+			if (button.getText().equals("Save"))
+			{
+				stopTimer ();
+				manager.removeKeyEventDispatcher(keyDispatcher);					
+				saveFile ();
+				manager.addKeyEventDispatcher(keyDispatcher);
+			}
+			else if (button.getText().equals("Load"))
+			{
+				stopTimer ();
+				manager.removeKeyEventDispatcher(keyDispatcher);					
+				loadFile ();
+				updateUI ();					
+				manager.addKeyEventDispatcher(keyDispatcher);
+			}				
+			else if (button.getText().equals ("Next"))
+			{
+				advance ();
+			}
+			else if (button.getText().equals("Start Timer")
+					|| button.getText().equals("Stop Timer"))
+			{
+				toggleTimer ();
+			}
+			else if (button.getText().equals("Select"))
+			{
+				button.setText("Cancel");
+				plane.startSelection ();
+			}
+			else if (button.getText().equals("Cancel"))
+			{
+				button.setText("Select");
+				plane.cancelSelection ();					
+			}
+			else if (button.getText().equals("Move")
+					|| button.getText().equals("Edit"))
+			{
+				toggleMove();
+			}			
+			else if (button.getText().equals("Eradicate"))
+			{
+				eradicate ();
+			}
+			else if (button.getText().equals("Populate"))
+			{
+				populate ();
+			}
+			else if (button.getText().equals("Set Size"))
+			{
+				setSize();										
+			}
+			else if (button.getText().equals("Controls..."))
+			{
+				toggleShowControls();
+			}
+		}		
+	}
+	
+	/** Listens to and acts upon changes in the speed slider component.
+	 */
+	private class SliderListener implements ChangeListener
+	{
+		@Override
+		public void stateChanged(ChangeEvent e) 
+		{
+			JSlider source = (JSlider)e.getSource();
+			if (source.equals(speed))
+			{
+				if (plane.simulation.isAdvancing ())
+				{
+					// Reset timer to update the rate
+					stopTimer();
+					startTimer();
+				}
+			}
+		}
+	}
+
+	/** Listens to and acts upon changes in the zoom slider component.
+	 */
+	private class MyMouseListener extends MouseAdapter
+	{
+		@Override
+		public void mouseClicked (MouseEvent e)	
+		{
+			plane.setZoom (zoom.getValue());
+		}
+
+		@Override
+		public void mouseDragged (MouseEvent e)
+		{
+			plane.setZoom(zoom.getValue());
+		}
+	}
+
+	/** Listens to and acts upon keyboard inputs. This KeyEventDispatcher
+	 * is temporally disabled when JFileChooser is brought up, so that all
+	 * keyboard inputs are isolated to the JFileChooser, and so that nothing
+	 * happens while the user is using the JFileChooser.
+	 */
+	private class MyDispatcher implements KeyEventDispatcher 
+	{
+		@Override
+		public boolean dispatchKeyEvent(KeyEvent e) 
+		{			
+			boolean consumed = false;
+
+			if (e.getID() == KeyEvent.KEY_PRESSED) 
+			{
+				int key = e.getKeyCode();
+				if (key == KeyEvent.VK_CONTROL)
+				{
+					if (select.getText().equals ("Select"))
+					{
+						select.setText("Cancel");
+						plane.startSelection ();
+					}            			
+				}
+				else if (e.getKeyCode() == KeyEvent.VK_SHIFT)
+				{
+					if (move.getText().equals("Move"))
+					{
+						move.setText("Edit");
+						plane.startMoving();
+					}					
+				}
+				else if (key == KeyEvent.VK_F1)
+				{
+					populate ();
+				}
+				else if (key == KeyEvent.VK_F2)
+				{
+					eradicate ();
+				}				
+				else if (key == KeyEvent.VK_N)
+				{
+					advance();
+				}	
+				else if (key == KeyEvent.VK_C)
+				{
+					copy ();
+				}
+				else if (key == KeyEvent.VK_X)
+				{
+					cut ();
+				}
+				else if (key == KeyEvent.VK_V)
+				{
+					togglePaste ();
+				}
+				else if (key == KeyEvent.VK_P)
+				{
+					Pattern.Mode[] modes = Pattern.Mode.values ();
+					plane.setPasteMode (modes[(plane.getPasteMode ().ordinal () + 1) % modes.length]);
+				}
+				else if (key == KeyEvent.VK_OPEN_BRACKET)
+				{
+					plane.rotateClipboard (false);
+				}
+				else if (key == KeyEvent.VK_CLOSE_BRACKET)
+				{
+					plane.rotateClipboard (true);
+				}
+				else if (key == KeyEvent.VK_M)
+				{
+					plane.mirrorClipboard (true);
+				}
+				else if (key == KeyEvent.VK_F)
+				{
+					plane.mirrorClipboard (false);
+				}
+				else if (key == KeyEvent.VK_Z)
+				{
+					undo ();
+				}
+				else if (key == KeyEvent.VK_Y)
+				{
+					redo ();
+				}
+				else if (key == KeyEvent.VK_G)
+				{
+					rewind ();
+				}
+				else if (key == KeyEvent.VK_SPACE)
+				{
+					toggleTimer();	
+					consumed = true; // to prevent buttons from being pressed
+				}
+				else if (key == KeyEvent.VK_T)
+				{
+					int rate = speed.getValue();
+					rate++;
+					speed.setValue(rate);
+				}
+				else if (key == KeyEvent.VK_R)
+				{
+					int rate = speed.getValue();
+					rate--;
+					speed.setValue(rate);
+				}	
+				else if (key == KeyEvent.VK_EQUALS)
+				{
+					int n = plane.colony.getZoom() + 1;
+					zoom.setValue(n);
+					plane.setZoom(getMousePosition(), n);
+				}
+				else if (key == KeyEvent.VK_MINUS)
+				{
+					int n = plane.colony.getZoom() - 1;
+					zoom.setValue(n);
+					plane.setZoom(getMousePosition(), n);
+				}				
+			} 
+			else if (e.getID() == KeyEvent.KEY_RELEASED) 
+			{
+				if (e.getKeyCode() == KeyEvent.VK_CONTROL)
+				{
+					select.setText("Select");
+					plane.finalizeSelection();					
+					if (plane.getSelection().getCurrentPoint() == null)
+						plane.cancelSelection();
+				}  
+				else if (e.getKeyCode() == KeyEvent.VK_SHIFT)
+				{
+					move.setText("Move");
+					plane.stopMoving();
+				}
+			}  
+			updateUI();
+			return consumed;
+		}
+	}
+}
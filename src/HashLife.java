@@ -0,0 +1,496 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** An implementation of Gosper's HashLife algorithm.
+ *
+ * The universe is stored as a quadtree in which identical subtrees
+ * are shared, so that a node only exists once no matter how many times
+ * it appears. Each node remembers its own future, which means that a
+ * regular pattern only ever has to be simulated once, and can then be
+ * advanced by 2^k generations in about as many steps as it has levels.
+ *
+ * Unlike a Colony, the universe is unbounded; cells are addressed by
+ * long coordinates, and nothing dies at an edge.
+ */
+public class HashLife
+{
+	/** The number of nodes above which the cache is dropped before the next jump or load */
+	private static final int MAX_NODES = 1 << 21;
+
+	private static final Node DEAD = new Node (0);
+	private static final Node ALIVE = new Node (1);
+
+	private final HashMap<Node, Node> nodes = new HashMap<Node, Node> ();
+	private final ArrayList<Node> empty = new ArrayList<Node> ();
+
+	private final Rule rule;
+
+	private Node root;
+	private long originRow;
+	private long originCol;
+
+	/** Creates an empty universe that follows the given rule.
+	 * 
+	 * @param rule	the rule to apply
+	 */
+	public HashLife (Rule rule)
+	{
+		this.rule = rule;
+		empty.add (DEAD);
+		root = empty (3);
+	}
+
+	/** Advances the universe by the specified number of generations.
+	 * The number is broken into powers of two, and each of those is
+	 * done in a single jump. Before each jump, the cache is dropped if
+	 * it has grown too large, so that a long run of a chaotic pattern
+	 * does not run out of memory. Does nothing if the number is not
+	 * positive.
+	 *
+	 * @param generations	the number of generations to advance by
+	 */
+	public void advance (long generations)
+	{
+		for (int j = 0; generations > 0; j++, generations >>>= 1)
+			if ((generations & 1) != 0)
+			{
+				trim ();
+				jump (j);
+			}
+	}
+
+	/** Gets the rule that this universe follows. Since results are
+	 * remembered, a universe can only ever follow a single rule.
+	 *
+	 * @return the rule
+	 */
+	public Rule getRule ()
+	{
+		return rule;
+	}
+
+	/** Gets the number of live cells in the universe.
+	 *
+	 * @return the population
+	 */
+	public long getPopulation ()
+	{
+		return root.population;
+	}
+
+	/** Replaces the contents of this universe with the cells of the
+	 * given sparse universe, at the same coordinates.
+	 *
+	 * @param universe	the universe to copy from
+	 */
+	public void load (SparseUniverse universe)
+	{
+		trim ();
+
+		ArrayList<SparseUniverse.Chunk> chunks = universe.chunks ();
+		int size = SparseUniverse.SHIFT;
+
+		long top = 0, left = 0, bottom = 0, right = 0;
+		for (int i = 0; i < chunks.size (); i++)
+		{
+			SparseUniverse.Chunk chunk = chunks.get (i);
+			top = i == 0 ? chunk.cy : Math.min (top, chunk.cy);
+			left = i == 0 ? chunk.cx : Math.min (left, chunk.cx);
+			bottom = i == 0 ? chunk.cy : Math.max (bottom, chunk.cy);
+			right = i == 0 ? chunk.cx : Math.max (right, chunk.cx);
+		}
+
+		// Find the smallest node that covers every chunk, then drop the chunks into it
+
+		int level = Math.max (3, size);
+		while (1L << (level - size) <= Math.max (bottom - top, right - left))
+			level++;
+
+		root = empty (level);
+		originRow = top << size;
+		originCol = left << size;
+
+		for (SparseUniverse.Chunk chunk : chunks)
+		{
+			Node node = build (chunk.cells, size, 0, 0);
+			root = insert (root, (chunk.cy - top) << size, (chunk.cx - left) << size, node);
+		}
+	}
+
+	/** Replaces the contents of the given sparse universe with the
+	 * cells of this universe, at the same coordinates.
+	 *
+	 * @param universe	the universe to copy into
+	 */
+	public void store (SparseUniverse universe)
+	{
+		universe.clear ();
+		write (universe, root, originRow, originCol);
+	}
+
+	/** Builds the node of the given level whose top-left cell is
+	 * at the given location of a block of packed rows, such as
+	 * those of a chunk.
+	 *
+	 * @param rows	the packed rows, 64 cells wide
+	 * @param level	the level of the node, at most 6
+	 * @param row	the row of the top-left cell
+	 * @param col	the column of the top-left cell
+	 * @return the canonical node
+	 */
+	private Node build (long[] rows, int level, int row, int col)
+	{
+		if (level == 0)
+			return (rows[row] >>> col & 1) != 0 ? ALIVE : DEAD;
+
+		int half = 1 << (level - 1);
+		return join (build (rows, level - 1, row, col),
+				build (rows, level - 1, row, col + half),
+				build (rows, level - 1, row + half, col),
+				build (rows, level - 1, row + half, col + half));
+	}
+
+	/** Creates a node one level higher than the given one,
+	 * with the given node in its centre and dead cells around it.
+	 *
+	 * @param node	the node to centre
+	 * @return the canonical node
+	 */
+	private Node centre (Node node)
+	{
+		Node e = empty (node.level - 1);
+		return join (join (e, e, e, node.nw), join (e, e, node.ne, e),
+				join (e, node.sw, e, e), join (node.se, e, e, e));
+	}
+
+	/** Determines whether all of the live cells of the given node
+	 * are within its central quarter.
+	 *
+	 * @param node	the node to check, of level 2 or more
+	 * @return true if the border of the node is empty; false otherwise
+	 */
+	private boolean centred (Node node)
+	{
+		return node.nw.se.population + node.ne.sw.population
+				+ node.sw.ne.population + node.se.nw.population == node.population;
+	}
+
+	/** Gets the empty node of the given level.
+	 *
+	 * @param level		the level of the node
+	 * @return the canonical empty node
+	 */
+	private Node empty (int level)
+	{
+		while (empty.size () <= level)
+		{
+			Node e = empty.get (empty.size () - 1);
+			empty.add (join (e, e, e, e));
+		}
+		return empty.get (level);
+	}
+
+	/** Advances the universe by 2^j generations in a single step.
+	 *
+	 * @param j		the base 2 logarithm of the number of generations
+	 */
+	private void jump (int j)
+	{
+		// Make sure that the pattern has enough room to grow into
+
+		while (root.level < j + 2 || !centred (root))
+			grow ();
+		grow ();
+
+		originRow += 1L << (root.level - 2);
+		originCol += 1L << (root.level - 2);
+		root = successor (root, j);
+
+		// Drop empty borders again
+
+		while (root.level > 3 && centred (root))
+		{
+			originRow += 1L << (root.level - 2);
+			originCol += 1L << (root.level - 2);
+			root = join (root.nw.se, root.ne.sw, root.sw.ne, root.se.nw);
+		}
+	}
+
+	/** Doubles the size of the root node, keeping its contents centred.
+	 */
+	private void grow ()
+	{
+		originRow -= 1L << (root.level - 1);
+		originCol -= 1L << (root.level - 1);
+		root = centre (root);
+	}
+
+	/** Replaces the part of a node at the given location
+	 * with another, smaller node.
+	 *
+	 * @param node	the node to insert into
+	 * @param row	the row of the part, relative to the node
+	 * @param col	the column of the part, relative to the node
+	 * @param part	the node to insert, aligned to its own size
+	 * @return the canonical node with the part replaced
+	 */
+	private Node insert (Node node, long row, long col, Node part)
+	{
+		if (node.level == part.level)
+			return part;
+
+		long half = 1L << (node.level - 1);
+		if (row < half)
+			return col < half
+					? join (insert (node.nw, row, col, part), node.ne, node.sw, node.se)
+					: join (node.nw, insert (node.ne, row, col - half, part), node.sw, node.se);
+		else
+			return col < half
+					? join (node.nw, node.ne, insert (node.sw, row - half, col, part), node.se)
+					: join (node.nw, node.ne, node.sw, insert (node.se, row - half, col - half, part));
+	}
+
+	/** Gets the canonical node with the given quadrants.
+	 *
+	 * @param nw	the north-west quadrant
+	 * @param ne	the north-east quadrant
+	 * @param sw	the south-west quadrant
+	 * @param se	the south-east quadrant
+	 * @return the canonical node
+	 */
+	private Node join (Node nw, Node ne, Node sw, Node se)
+	{
+		Node key = new Node (nw, ne, sw, se);
+		Node node = nodes.get (key);
+		if (node == null)
+		{
+			nodes.put (key, key);
+			node = key;
+		}
+		return node;
+	}
+
+	/** Computes the central 2x2 cells of a level 2 node
+	 * after one generation.
+	 *
+	 * @param node	the level 2 node
+	 * @return the level 1 result
+	 */
+	private Node step4x4 (Node node)
+	{
+		// Read the 16 cells into a bit mask, row by row
+
+		int bits = 0;
+		for (int row = 0; row < 4; row++)
+			for (int col = 0; col < 4; col++)
+			{
+				Node quad = row < 2 ? (col < 2 ? node.nw : node.ne) : (col < 2 ? node.sw : node.se);
+				Node cell = (row & 1) == 0 ? ((col & 1) == 0 ? quad.nw : quad.ne) : ((col & 1) == 0 ? quad.sw : quad.se);
+				bits |= cell.population == 0 ? 0 : 1 << (row * 4 + col);
+			}
+
+		Node[] result = new Node [4];
+		for (int i = 0; i < 4; i++)
+		{
+			int row = 1 + (i >> 1);
+			int col = 1 + (i & 1);
+			int count = 0;
+
+			for (int r = row - 1; r <= row + 1; r++)
+				for (int c = col - 1; c <= col + 1; c++)
+					if ((r != row || c != col) && (bits >>> (r * 4 + c) & 1) != 0)
+						count++;
+
+			boolean alive = (bits >>> (row * 4 + col) & 1) != 0;
+			result[i] = rule.next (alive, count) ? ALIVE : DEAD;
+		}
+		return join (result[0], result[1], result[2], result[3]);
+	}
+
+	/** Computes the central half of the given node, 2^j generations
+	 * into the future. The result is remembered in the node, so that
+	 * asking again for the same j does no work.
+	 *
+	 * @param node	the node, of level 2 or more
+	 * @param j		the base 2 logarithm of the number of generations;
+	 * 				values above the level of the node minus 2 are
+	 * 				treated as the level minus 2
+	 * @return the node one level lower holding the result
+	 */
+	private Node successor (Node node, int j)
+	{
+		j = Math.min (j, node.level - 2);
+
+		if (node.nextStep == j)
+			return node.next;
+
+		Node result;
+
+		if (node.population == 0)
+			result = empty (node.level - 1);
+		else if (node.level == 2)
+			result = step4x4 (node);
+		else
+		{
+			Node a = node.nw, b = node.ne, c = node.sw, d = node.se;
+
+			// Nine overlapping sub-squares, each advanced by up to 2^j generations
+
+			Node c1 = successor (a, j);
+			Node c2 = successor (join (a.ne, b.nw, a.se, b.sw), j);
+			Node c3 = successor (b, j);
+			Node c4 = successor (join (a.sw, a.se, c.nw, c.ne), j);
+			Node c5 = successor (join (a.se, b.sw, c.ne, d.nw), j);
+			Node c6 = successor (join (b.sw, b.se, d.nw, d.ne), j);
+			Node c7 = successor (c, j);
+			Node c8 = successor (join (c.ne, d.nw, c.se, d.sw), j);
+			Node c9 = successor (d, j);
+
+			if (j < node.level - 2)
+			{
+				// Already far enough; just take the centres
+
+				result = join (join (c1.se, c2.sw, c4.ne, c5.nw),
+						join (c2.se, c3.sw, c5.ne, c6.nw),
+						join (c4.se, c5.sw, c7.ne, c8.nw),
+						join (c5.se, c6.sw, c8.ne, c9.nw));
+			}
+			else
+			{
+				// Each sub-square only got half way, so advance them again
+
+				result = join (successor (join (c1, c2, c4, c5), j),
+						successor (join (c2, c3, c5, c6), j),
+						successor (join (c4, c5, c7, c8), j),
+						successor (join (c5, c6, c8, c9), j));
+			}
+		}
+
+		node.next = result;
+		node.nextStep = j;
+		return result;
+	}
+
+	/** Writes the live cells of the given node into a sparse universe.
+	 *
+	 * @param universe	the universe to write into
+	 * @param node		the node to write
+	 * @param row		the row of the top-left cell of the node
+	 * @param col		the column of the top-left cell of the node
+	 */
+	private void write (SparseUniverse universe, Node node, long row, long col)
+	{
+		if (node.population == 0)
+			return;
+
+		if (node.level == 0)
+			universe.setCell (row, col, true);
+		else
+		{
+			long half = 1L << (node.level - 1);
+			write (universe, node.nw, row, col);
+			write (universe, node.ne, row, col + half);
+			write (universe, node.sw, row + half, col);
+			write (universe, node.se, row + half, col + half);
+		}
+	}
+
+	/** Puts a node and the nodes under it back into the cache after it
+	 * was dropped. Their results are forgotten, since those may be nodes
+	 * that were dropped.
+	 *
+	 * @param node	the node to keep
+	 */
+	private void keep (Node node)
+	{
+		if (node.level == 0 || nodes.containsKey (node))
+			return;
+
+		node.next = null;
+		node.nextStep = -1;
+		nodes.put (node, node);
+		keep (node.nw);
+		keep (node.ne);
+		keep (node.sw);
+		keep (node.se);
+	}
+
+	/** Drops all of the nodes and results if there are too many of them,
+	 * except for the nodes of the root, which are put back so that they
+	 * are still canonical.
+	 */
+	private void trim ()
+	{
+		if (nodes.size () > MAX_NODES)
+		{
+			nodes.clear ();
+			empty.clear ();
+			empty.add (DEAD);
+			keep (root);
+		}
+	}
+
+	/** A square block of 2^level by 2^level cells. Nodes are
+	 * compared by the identity of their quadrants, which is
+	 * enough because the quadrants themselves are canonical.
+	 */
+	private static class Node
+	{
+		final Node nw;
+		final Node ne;
+		final Node sw;
+		final Node se;
+		final int level;
+		final long population;
+		final int hash;
+
+		Node next;
+		int nextStep = -1;
+
+		/** Creates a single cell.
+		 *
+		 * @param population	1 for a live cell; 0 for a dead one
+		 */
+		Node (int population)
+		{
+			nw = ne = sw = se = null;
+			level = 0;
+			this.population = population;
+			hash = population;
+		}
+
+		/** Creates a node from its four quadrants.
+		 *
+		 * @param nw	the north-west quadrant
+		 * @param ne	the north-east quadrant
+		 * @param sw	the south-west quadrant
+		 * @param se	the south-east quadrant
+		 */
+		Node (Node nw, Node ne, Node sw, Node se)
+		{
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			level = nw.level + 1;
+			population = nw.population + ne.population + sw.population + se.population;
+			hash = ((System.identityHashCode (nw) * 31 + System.identityHashCode (ne)) * 31
+					+ System.identityHashCode (sw)) * 31 + System.identityHashCode (se);
+		}
+
+		@Override
+		public boolean equals (Object o)
+		{
+			if (!(o instanceof Node))
+				return false;
+			Node other = (Node) o;
+			return nw == other.nw && ne == other.ne && sw == other.sw && se == other.se;
+		}
+
+		@Override
+		public int hashCode ()
+		{
+			return hash;
+		}
+	}
+}
@@ -1,398 +1,725 @@
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Graphics;
-import java.awt.Point;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseWheelEvent;
-import java.awt.geom.GeneralPath;
-import java.awt.geom.Point2D;
-
-import javax.swing.JPanel;
-
-/** The class representing the JPanel that contains
- * and handles the Colony class.
- * 
- * @author Jiayin
- * @date 2013-12-12
- */
-public class LifePlane extends JPanel 
-{
-	public Colony colony;
-
-	private Color background = new Color (128, 128, 128);
-
-	private int prevRow;
-	private int prevCol;
-
-	private boolean setMode = true;
-	private boolean selected = false;
-	private boolean selecting = false;
-	private boolean moving = false;
-
-	private GeneralPath select;
-
-	private Point click;
-	private Point selectCurrent;
-	private Point start;
-
-	private GraphicUI gui;
-
-	/** Creates a new LifePlane.
-	 * 
-	 * @param parent	the GraphicUI object that parents this LifePlane
-	 */
-	public LifePlane (GraphicUI parent)
-	{		
-		gui = parent;		
-		setBackground (background);
-		colony = new Colony (0, 250, 150);
-
-		addMouseListener (new MyMouseListener ());
-		addMouseMotionListener (new MyMouseListener ());
-		addMouseWheelListener (new MyMouseListener());
-	}
-
-	/** Sets the colony offset such that the center of
-	 * the grid is positioned at the center of this panel. 
-	 */
-	public void centerOnGrid ()
-	{
-		Dimension grid = colony.getSize();
-		Dimension panel = getSize();
-		int zoom = colony.getZoom();
-		colony.offset.x = panel.width / 2 - grid.width * zoom / 2;
-		colony.offset.y = panel.height / 2 - grid.height * zoom / 2;
-	}
-
-
-
-
-	/** Completely eradicates any living cells
-	 * contained within the area specified by the
-	 * select shape. Does nothing if there is currently
-	 * no selection.
-	 * 
-	 * @return true if the eradication was carried out;
-	 * false if no selection currently exists 
-	 */	
-	public boolean eradicateSelection ()
-	{
-		return eradicateSelection (1.0);
-	}
-
-	/** Eradicates any living cells contained within the 
-	 * area specified by the select shape. The probability 
-	 * of success of each individual eradication is specified
-	 * by the given efficiency value. 1.0 specifies certain success.
-	 * 0.0 specifies certain failure. Does nothing if there is currently no selection.
-	 * 
-	 * @param efficiency	he probability of any individual cell being successfully eradicated
-	 * @return true if the eradication was carried out;
-	 * false if no selection currently exists 
-	 */	
-	public boolean eradicateSelection (double efficiency)
-	{
-		boolean successful = false;
-		if (selected)
-		{
-			successful = true;
-			colony.eradicate(select, efficiency);
-			cancelSelection ();
-		}	
-		return successful;
-	}
-
-	/** Completely populates any living cells
-	 * contained within the area specified by the
-	 * select shape. Does nothing if there is currently
-	 * no selection.
-	 * 
-	 * @return true if the populates was carried out;
-	 * false if no selection currently exists 
-	 */	
-	public boolean populateSelection ()
-	{
-		return populateSelection (1.0);
-	}
-
-	/** Populates any living cells contained within the 
-	 * area specified by the select shape. The probability 
-	 * of success of each individual population is specified
-	 * by the given efficiency value. 1.0 specifies certain success.
-	 * 0.0 specifies certain failure. Does nothing if there is currently no selection.
-	 * 
-	 * @param efficiency	he probability of any individual cell being successfully populated
-	 * @return true if the population was carried out;
-	 * false if no selection currently exists 
-	 */	
-	public boolean populateSelection (double efficiency)
-	{
-		boolean successful = false;
-		if (selected)
-		{
-			successful = true;
-			colony.populate(select, efficiency);
-			cancelSelection ();
-		}		
-		return successful;
-	}
-
-	/** Draws the colony onto the panel to the offset specified
-	 * in the colony object.	
-	 */
-	@Override
-	public void paintComponent (Graphics g)
-	{
-		super.paintComponent(g);
-		colony.show (g, getSize());			
-
-		if (selecting || selected)
-		{
-			GeneralPath preview = new GeneralPath (select);
-			if (selectCurrent != null) // draw preview selection of mouse hover, if valid
-				preview.lineTo(selectCurrent.x, selectCurrent.y);
-
-			colony.showSelection(g, preview);
-		}
-
-		if (colony.getZoom() > 2) // only draw grids if zoom is greater than 2
-			colony.showGrid (g, getSize());		
-	}	
-
-	/** Sets the background color of this panel
-	 * to the specified color.
-	 * 
-	 * @param bg	the new background color
-	 */
-	@Override
-	public void setBackground (Color bg)
-	{
-		super.setBackground (bg);
-		background = bg;
-	}
-
-	/** Sets the colony zoom to the specified value.
-	 * Sets the colony offset such that that the cell 
-	 * at the center of the screen before the zoom change
-	 * remains at the center of the screen after the zoom. 
-	 * 
-	 * @param zoom	the new zoom value
-	 */
-	public void setZoom (int zoom)
-	{
-		setZoom (new Point (getWidth() / 2, getHeight() / 2), zoom);
-	}
-
-	/** Sets the colony zoom to the specified value.
-	 * Sets the colony offset such that that the cell 
-	 * at the specified location on the panel before 
-	 * the zoom change remains at the same location on
-	 * the screen after the zoom. 
-	 * 
-	 * @param focus		the anchor point for the zoom, in pixels
-	 * @param zoom		the new zoom value
-	 */
-	public void setZoom (Point focus, int zoom)
-	{
-		if (zoom > 0)
-		{
-			double scale = zoom * 1.0 / colony.getZoom();
-			int dx = (int) ((focus.x - colony.offset.x) - scale * (focus.x - colony.offset.x));
-			int dy = (int) ((focus.y - colony.offset.y) - scale * (focus.y - colony.offset.y));
-			colony.setZoom (zoom);
-			colony.offset.translate(dx, dy);
-			repaint();
-		}
-	}
-
-	/** Enables selection mode; Starts a new selection.  
-	 */
-	public void startSelection ()
-	{
-		select = new GeneralPath ();
-		selecting = true;
-		selected = false;
-	}
-
-	/** Finalizes the current selection, thereby
-	 * allowing it to be used for processes such as
-	 * population or eradication.
-	 */
-	public void finalizeSelection ()
-	{
-		cancelSelection ();		
-		selected = true;
-		repaint ();
-	}
-
-	/** Disables selection mode; Terminates the current selection 
-	 *process if  a selection process is ongoing. Also sets the
-	 * selection thus far to null, thereby removing it from the
-	 * screen and preventing it from being used for anything. 
-	 */
-	public void cancelSelection ()
-	{
-		if (select.getCurrentPoint() != null)
-			select.closePath ();
-		selecting = false;
-		selected = false;
-		start = null;
-		selectCurrent = null;
-		repaint ();
-	}
-	
-	public GeneralPath getSelection ()
-	{
-		return select;
-	}
-
-	/** Enables moving mode. Sets it so that clicking 
-	 * and dragging will navigate around the colony, 
-	 * rather than adding or removing live cells. 
-	 */
-	public void startMoving ()
-	{
-		moving = true;
-	}
-
-	/** Called by the MouseListener for this panel.
-	 * Updates the current colony offset by comparing 
-	 * the current mouse location and the location of 
-	 * the last checked mouse location. Does nothing if 
-	 * currently not in moving mode. 
-	 * 
-	 * @param now	the current location of the mouse
-	 */
-	public void updateMove (Point now)
-	{
-		if (moving)
-		{
-			int dx = now.x - click.x;
-			int dy = now.y - click.y;
-
-			click = now;
-			colony.offset.translate(dx, dy);
-		}
-	}
-
-	/** Disables moving mode. Sets it so that clicking
-	 * and dragging will add and remove live cells, 
-	 * rather than navigating around the colony. 
-	 * 
-	 */
-	public void stopMoving ()
-	{
-		moving = false;
-	}
-
-	/** Class for MouseEvents. This class receives
-	 * and acts upon various MouseEvents.
-	 */
-	private class MyMouseListener extends MouseAdapter
-	{	
-		public void mousePressed (MouseEvent e)
-		{
-			click = e.getPoint();		
-			int row = colony.getRow (click.y);
-			int col = colony.getCol (click.x);
-
-			if (!moving) // if not in moving mode
-			{
-				if (!selecting) // if not in selection mode
-				{
-					if (colony.rowValid(row) && colony.colValid(col)) // do normal bit flip						 
-					{
-						colony.flipCell (row, col);
-						setMode = colony.getCell(row, col);
-					}
-				}
-				else // if currently in selection mode
-				{							
-					if (start == null) // if selection currently has no points
-					{
-						// Initialize initial point
-						select.moveTo (col, row);
-						Point2D temp = select.getCurrentPoint();
-						start = new Point ((int)temp.getX (), (int)temp.getY());
-					}
-					else 
-					{
-						// Finalize selection if last clicked cell equals the current selected cell;
-						// i.e. Quit selection mode if double clicked.s
-						Point2D temp = select.getCurrentPoint();
-						Point cell = new Point (col, row);
-						if (cell.equals(start) || cell.equals(temp))
-							finalizeSelection ();	
-						else
-							select.lineTo (col, row);											
-					}					
-				}
-				prevRow = row;
-				prevCol = col;	
-
-				repaint();
-			}
-		}		
-
-		public void mouseDragged (MouseEvent e)
-		{	
-			Point now = e.getPoint();
-
-			if (moving) // if in moving mode
-				updateMove (now);	
-			else // if not in moving mode
-			{
-				int row = colony.getRow (now.y);
-				int col = colony.getCol (now.x);
-
-				if (!selecting) // if not in selection mode
-				{
-					if (colony.rowValid (row) && colony.colValid(col)) // if valid
-					{
-						if (row != prevRow || col != prevCol) // if this is a different cell
-						{
-							prevRow = row;
-							prevCol = col;			
-							
-							// Flip cell state, if necessary, so that this cell's state
-							// becomes equal to the state of the cell of the original click
-
-							if (colony.getCell(row, col) != setMode)							
-								colony.flipCell (row, col);						
-						}
-					}					
-				}
-				else // if in selection mode
-				{							
-					select.lineTo (col, row);
-					selectCurrent = new Point (col, row);											
-				}
-			}	
-			repaint();
-		}
-
-		public void mouseMoved (MouseEvent e)
-		{
-			Point now = e.getPoint ();
-			int row = colony.getRow (now.y);
-			int col = colony.getCol (now.x);
-
-			if (selecting && start != null) // if in selection mode
-			{
-				selectCurrent = new Point (col, row); // for preview selection
-				repaint ();
-			}		
-		}
-
-		public void mouseWheelMoved (MouseWheelEvent e)
-		{
-			// Increase or decrease zoom value, as necessary
-			
-			int newZoom = -e.getWheelRotation() + colony.getZoom ();
-			gui.zoom.setValue (newZoom);
-			setZoom (e.getPoint(), newZoom);
-			repaint();
-		}
-	}
-}
\ No newline at end of file
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/** The class representing the JPanel that contains
+ * and handles the Colony class.
+ * 
+ * The colony is advanced on the thread of a Simulation. This
+ * panel only uses it directly for its zoom, offset and colors;
+ * its cells are drawn from snapshots, and changed by submitting
+ * commands to the simulation.
+ * 
+ * @author Jiayin
+ * @date 2013-12-12
+ */
+public class LifePlane extends JPanel 
+{
+	public Colony colony;
+	public Simulation simulation;
+
+	private Color background = new Color (128, 128, 128);
+
+	private int prevRow;
+	private int prevCol;
+
+	private boolean setMode = true;
+	private boolean selected = false;
+	private boolean selecting = false;
+	private boolean moving = false;
+	private boolean pasting = false;
+
+	private Selection select;
+
+	private Pattern clipboard;
+	private Pattern.Mode pasteMode = Pattern.Mode.OR;
+
+	private Point click;
+	private Point selectCurrent;
+	private Point pasteCurrent;
+	private Point start;
+
+	private GraphicUI gui;
+
+	/** Creates a new LifePlane.
+	 * 
+	 * @param parent	the GraphicUI object that parents this LifePlane
+	 */
+	public LifePlane (GraphicUI parent)
+	{		
+		gui = parent;		
+		setBackground (background);
+		colony = new Colony (0, 250, 150);
+		colony.setTimelineBudget (64L << 20); // keep up to 64 MB of past generations
+		simulation = new Simulation (colony, new Refresh ());
+
+		addMouseListener (new MyMouseListener ());
+		addMouseMotionListener (new MyMouseListener ());
+		addMouseWheelListener (new MyMouseListener());
+	}
+
+	/** Sets the colony offset such that the center of
+	 * the grid is positioned at the center of this panel. 
+	 */
+	public void centerOnGrid ()
+	{
+		Colony.Snapshot cells = simulation.getSnapshot ();
+		centerOnGrid (new Dimension (cells.getWidth (), cells.getHeight ()));
+	}
+
+	/** Sets the colony offset such that the center of a grid
+	 * of the given size is positioned at the center of this
+	 * panel, such as for a grid that is about to be resized.
+	 * 
+	 * @param grid	the size of the grid
+	 */
+	public void centerOnGrid (Dimension grid)
+	{
+		Dimension panel = getSize();
+		int zoom = colony.getZoom();
+		colony.offset.x = panel.width / 2 - grid.width * zoom / 2;
+		colony.offset.y = panel.height / 2 - grid.height * zoom / 2;
+	}
+
+
+
+
+	/** Copies the cells contained within the area 
+	 * specified by the select shape onto the clipboard.
+	 * Does nothing if there is currently no selection.
+	 * 
+	 * @return true if the copy was carried out;
+	 * false if no selection currently exists 
+	 */
+	public boolean copySelection ()
+	{
+		boolean successful = false;
+		if (selected)
+		{
+			successful = true;
+			simulation.submit (new Copy (select, false));
+			cancelSelection ();
+		}
+		return successful;
+	}
+
+	/** Moves the cells contained within the area 
+	 * specified by the select shape onto the clipboard,
+	 * killing them in the colony. Does nothing if there
+	 * is currently no selection.
+	 * 
+	 * @return true if the cut was carried out;
+	 * false if no selection currently exists 
+	 */
+	public boolean cutSelection ()
+	{
+		boolean successful = false;
+		if (selected)
+		{
+			successful = true;
+			simulation.submit (new Copy (select, true));
+			cancelSelection ();
+		}
+		return successful;
+	}
+
+	/** Completely eradicates any living cells
+	 * contained within the area specified by the
+	 * select shape. Does nothing if there is currently
+	 * no selection.
+	 * 
+	 * @return true if the eradication was carried out;
+	 * false if no selection currently exists 
+	 */	
+	public boolean eradicateSelection ()
+	{
+		return eradicateSelection (1.0);
+	}
+
+	/** Eradicates any living cells contained within the 
+	 * area specified by the select shape. The probability 
+	 * of success of each individual eradication is specified
+	 * by the given efficiency value. 1.0 specifies certain success.
+	 * 0.0 specifies certain failure. Does nothing if there is currently no selection.
+	 * 
+	 * @param efficiency	he probability of any individual cell being successfully eradicated
+	 * @return true if the eradication was carried out;
+	 * false if no selection currently exists 
+	 */	
+	public boolean eradicateSelection (double efficiency)
+	{
+		boolean successful = false;
+		if (selected)
+		{
+			successful = true;
+			simulation.submit (new Fill (select, efficiency, false));
+			cancelSelection ();
+		}	
+		return successful;
+	}
+
+	/** Gets the pattern that was last copied or cut.
+	 * 
+	 * @return the clipboard, or null if nothing has been copied
+	 */
+	public Pattern getClipboard ()
+	{
+		return clipboard;
+	}
+
+	/** Gets the way in which the clipboard is combined with
+	 * the cells it is pasted over.
+	 * 
+	 * @return the current paste mode
+	 */
+	public Pattern.Mode getPasteMode ()
+	{
+		return pasteMode;
+	}
+
+	/** Determines whether clicking currently pastes the clipboard.
+	 * 
+	 * @return true if in pasting mode; false otherwise
+	 */
+	public boolean isPasting ()
+	{
+		return pasting;
+	}
+
+	/** Flips the clipboard, either from left to right
+	 * or upside down. Does nothing if the clipboard is empty.
+	 * 
+	 * @param horizontally	true to flip from left to right;
+	 * false to flip upside down
+	 */
+	public void mirrorClipboard (boolean horizontally)
+	{
+		if (clipboard != null)
+		{
+			clipboard = horizontally ? clipboard.mirrorHorizontally () : clipboard.mirrorVertically ();
+			repaint ();
+		}
+	}
+
+	/** Turns the clipboard by a quarter turn. Does nothing
+	 * if the clipboard is empty.
+	 * 
+	 * @param clockwise		true to turn clockwise; false to
+	 * turn counterclockwise
+	 */
+	public void rotateClipboard (boolean clockwise)
+	{
+		if (clipboard != null)
+		{
+			clipboard = clockwise ? clipboard.rotateClockwise () : clipboard.rotateCounterclockwise ();
+			repaint ();
+		}
+	}
+
+	/** Sets the way in which the clipboard is combined with
+	 * the cells it is pasted over. Ignores null values.
+	 * 
+	 * @param mode	the new paste mode
+	 */
+	public void setPasteMode (Pattern.Mode mode)
+	{
+		if (mode != null)
+			pasteMode = mode;
+	}
+
+	/** Enables pasting mode. Sets it so that clicking pastes 
+	 * the clipboard, centred on the clicked cell, rather than
+	 * toggling cells. Does nothing if the clipboard is empty.
+	 * 
+	 * @return true if pasting mode was enabled;
+	 * false if nothing has been copied yet
+	 */
+	public boolean startPasting ()
+	{
+		pasting = clipboard != null;
+		return pasting;
+	}
+
+	/** Disables pasting mode. 
+	 */
+	public void stopPasting ()
+	{
+		pasting = false;
+		pasteCurrent = null;
+		repaint ();
+	}
+
+	/** Completely populates any living cells
+	 * contained within the area specified by the
+	 * select shape. Does nothing if there is currently
+	 * no selection.
+	 * 
+	 * @return true if the populates was carried out;
+	 * false if no selection currently exists 
+	 */	
+	public boolean populateSelection ()
+	{
+		return populateSelection (1.0);
+	}
+
+	/** Populates any living cells contained within the 
+	 * area specified by the select shape. The probability 
+	 * of success of each individual population is specified
+	 * by the given efficiency value. 1.0 specifies certain success.
+	 * 0.0 specifies certain failure. Does nothing if there is currently no selection.
+	 * 
+	 * @param efficiency	he probability of any individual cell being successfully populated
+	 * @return true if the population was carried out;
+	 * false if no selection currently exists 
+	 */	
+	public boolean populateSelection (double efficiency)
+	{
+		boolean successful = false;
+		if (selected)
+		{
+			successful = true;
+			simulation.submit (new Fill (select, efficiency, true));
+			cancelSelection ();
+		}		
+		return successful;
+	}
+
+	/** Draws the colony onto the panel to the offset specified
+	 * in the colony object.	
+	 */
+	@Override
+	public void paintComponent (Graphics g)
+	{
+		super.paintComponent(g);
+
+		// Ask for the cells in view, and draw the latest ones to hand
+
+		Rectangle view = new Rectangle (colony.getCol (0), colony.getRow (0), 0, 0);
+		view.add (colony.getCol (getWidth()) + 1, colony.getRow (getHeight()) + 1);
+		simulation.setView (view);
+
+		Colony.Snapshot cells = simulation.getSnapshot ();
+		colony.show (g, getSize(), cells);			
+
+		if (selecting || selected) // draw preview selection of mouse hover, if valid
+			colony.showSelection(g, select, selectCurrent, cells);
+
+		if (pasting && pasteCurrent != null) // draw the clipboard where it would be pasted
+			colony.showPattern(g, clipboard, pasteCurrent.y - clipboard.getHeight() / 2,
+					pasteCurrent.x - clipboard.getWidth() / 2, cells);
+
+		if (colony.getZoom() > 2) // only draw grids if zoom is greater than 2
+			colony.showGrid (g, getSize(), cells);		
+	}	
+
+	/** Sets the background color of this panel
+	 * to the specified color.
+	 * 
+	 * @param bg	the new background color
+	 */
+	@Override
+	public void setBackground (Color bg)
+	{
+		super.setBackground (bg);
+		background = bg;
+	}
+
+	/** Sets the colony zoom to the specified value.
+	 * Sets the colony offset such that that the cell 
+	 * at the center of the screen before the zoom change
+	 * remains at the center of the screen after the zoom. 
+	 * 
+	 * @param zoom	the new zoom value
+	 */
+	public void setZoom (int zoom)
+	{
+		setZoom (new Point (getWidth() / 2, getHeight() / 2), zoom);
+	}
+
+	/** Sets the colony zoom to the specified value.
+	 * Sets the colony offset such that that the cell 
+	 * at the specified location on the panel before 
+	 * the zoom change remains at the same location on
+	 * the screen after the zoom. 
+	 * 
+	 * @param focus		the anchor point for the zoom, in pixels
+	 * @param zoom		the new zoom value
+	 */
+	public void setZoom (Point focus, int zoom)
+	{
+		if (zoom > 0)
+		{
+			double scale = zoom * 1.0 / colony.getZoom();
+			int dx = (int) ((focus.x - colony.offset.x) - scale * (focus.x - colony.offset.x));
+			int dy = (int) ((focus.y - colony.offset.y) - scale * (focus.y - colony.offset.y));
+			colony.setZoom (zoom);
+			colony.offset.translate(dx, dy);
+			repaint();
+		}
+	}
+
+	/** Enables selection mode; Starts a new selection.  
+	 */
+	public void startSelection ()
+	{
+		select = new Selection ();
+		pasting = false;
+		pasteCurrent = null;
+		selecting = true;
+		selected = false;
+	}
+
+	/** Finalizes the current selection, thereby
+	 * allowing it to be used for processes such as
+	 * population or eradication.
+	 */
+	public void finalizeSelection ()
+	{
+		cancelSelection ();		
+		selected = true;
+		repaint ();
+	}
+
+	/** Disables selection mode; Terminates the current selection 
+	 *process if  a selection process is ongoing. Also sets the
+	 * selection thus far to null, thereby removing it from the
+	 * screen and preventing it from being used for anything. 
+	 */
+	public void cancelSelection ()
+	{
+		selecting = false;
+		selected = false;
+		start = null;
+		selectCurrent = null;
+		repaint ();
+	}
+	
+	public Selection getSelection ()
+	{
+		return select;
+	}
+
+	/** Enables moving mode. Sets it so that clicking 
+	 * and dragging will navigate around the colony, 
+	 * rather than adding or removing live cells. 
+	 */
+	public void startMoving ()
+	{
+		moving = true;
+	}
+
+	/** Called by the MouseListener for this panel.
+	 * Updates the current colony offset by comparing 
+	 * the current mouse location and the location of 
+	 * the last checked mouse location. Does nothing if 
+	 * currently not in moving mode. 
+	 * 
+	 * @param now	the current location of the mouse
+	 */
+	public void updateMove (Point now)
+	{
+		if (moving)
+		{
+			int dx = now.x - click.x;
+			int dy = now.y - click.y;
+
+			click = now;
+			colony.offset.translate(dx, dy);
+		}
+	}
+
+	/** Disables moving mode. Sets it so that clicking
+	 * and dragging will add and remove live cells, 
+	 * rather than navigating around the colony. 
+	 * 
+	 */
+	public void stopMoving ()
+	{
+		moving = false;
+	}
+
+	/** Class for MouseEvents. This class receives
+	 * and acts upon various MouseEvents.
+	 */
+	private class MyMouseListener extends MouseAdapter
+	{	
+		public void mousePressed (MouseEvent e)
+		{
+			click = e.getPoint();		
+			int row = colony.getRow (click.y);
+			int col = colony.getCol (click.x);
+
+			if (!moving) // if not in moving mode
+			{
+				if (pasting) // stamp the clipboard, centred on the clicked cell
+				{
+					simulation.submit (new Paste (clipboard, row - clipboard.getHeight() / 2, col - clipboard.getWidth() / 2, pasteMode));
+				}
+				else if (!selecting) // if not in selection mode
+				{
+					Colony.Snapshot cells = simulation.getSnapshot ();
+					if (cells.rowValid(row) && cells.colValid(col)) // do normal bit flip						 
+					{
+						setMode = !cells.getCell(row, col);
+						simulation.submit (new SetCell (row, col, setMode));
+					}
+				}
+				else // if currently in selection mode
+				{							
+					if (start == null) // if selection currently has no points
+					{
+						// Initialize initial point
+						select.moveTo (col, row);
+						start = select.getStart();
+					}
+					else 
+					{
+						// Finalize selection if last clicked cell equals the current selected cell;
+						// i.e. Quit selection mode if double clicked.s
+						Point temp = select.getCurrentPoint();
+						Point cell = new Point (col, row);
+						if (cell.equals(start) || cell.equals(temp))
+							finalizeSelection ();	
+						else
+							select.lineTo (col, row);											
+					}					
+				}
+				prevRow = row;
+				prevCol = col;	
+
+				repaint();
+			}
+		}		
+
+		public void mouseDragged (MouseEvent e)
+		{	
+			Point now = e.getPoint();
+
+			if (moving) // if in moving mode
+				updateMove (now);	
+			else if (!pasting) // if not in moving or pasting mode
+			{
+				int row = colony.getRow (now.y);
+				int col = colony.getCol (now.x);
+
+				if (!selecting) // if not in selection mode
+				{
+					Colony.Snapshot cells = simulation.getSnapshot ();
+					if (cells.rowValid (row) && cells.colValid(col)) // if valid
+					{
+						if (row != prevRow || col != prevCol) // if this is a different cell
+						{
+							prevRow = row;
+							prevCol = col;			
+							
+							// Set the cell so that its state becomes equal to
+							// the state of the cell of the original click
+
+							simulation.submit (new SetCell (row, col, setMode));
+						}
+					}					
+				}
+				else // if in selection mode
+				{							
+					select.lineTo (col, row);
+					selectCurrent = new Point (col, row);											
+				}
+			}	
+			repaint();
+		}
+
+		public void mouseReleased (MouseEvent e)
+		{
+			// A whole stroke of flipped cells is undone at once
+
+			simulation.submit (new CommitEdit ());
+		}
+
+		public void mouseMoved (MouseEvent e)
+		{
+			Point now = e.getPoint ();
+			int row = colony.getRow (now.y);
+			int col = colony.getCol (now.x);
+
+			if (selecting && start != null) // if in selection mode
+			{
+				selectCurrent = new Point (col, row); // for preview selection
+				repaint ();
+			}		
+			else if (pasting) // for preview of the clipboard
+			{
+				pasteCurrent = new Point (col, row);
+				repaint ();
+			}
+		}
+
+		public void mouseWheelMoved (MouseWheelEvent e)
+		{
+			// Increase or decrease zoom value, as necessary
+			
+			int newZoom = -e.getWheelRotation() + colony.getZoom ();
+			gui.zoom.setValue (newZoom);
+			setZoom (e.getPoint(), newZoom);
+			repaint();
+		}
+	}
+
+	/** Brings the UI up to date with a new snapshot. Called by the
+	 * simulation thread, and passed on to the event dispatch thread.
+	 */
+	private class Refresh implements Runnable
+	{
+		@Override
+		public void run ()
+		{
+			if (SwingUtilities.isEventDispatchThread ())
+				gui.updateUI ();
+			else
+				SwingUtilities.invokeLater (this);
+		}
+	}
+
+	/** Ends an edit, so that it is undone as a whole.
+	 */
+	private static class CommitEdit implements Simulation.Command
+	{
+		@Override
+		public void run (Colony colony)
+		{
+			colony.commitEdit ();
+		}
+	}
+
+	/** Copies or cuts a selection, then puts it on the clipboard
+	 * on the event dispatch thread.
+	 */
+	private class Copy implements Simulation.Command, Runnable
+	{
+		private final Selection area;
+		private final boolean cut;
+		private Pattern pattern;
+
+		/** Creates a command to copy or cut a selection.
+		 * 
+		 * @param area	the selection
+		 * @param cut	true to kill the copied cells; false to leave them
+		 */
+		public Copy (Selection area, boolean cut)
+		{
+			this.area = area;
+			this.cut = cut;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			pattern = cut ? colony.cut (area) : colony.copy (area);
+			SwingUtilities.invokeLater (this);
+		}
+
+		@Override
+		public void run ()
+		{
+			clipboard = pattern;
+		}
+	}
+
+	/** Populates or eradicates the cells of a selection.
+	 */
+	private static class Fill implements Simulation.Command
+	{
+		private final Selection area;
+		private final double efficiency;
+		private final boolean populate;
+
+		/** Creates a command to populate or eradicate a selection.
+		 * 
+		 * @param area			the selection
+		 * @param efficiency	the probability of any individual cell being changed
+		 * @param populate		true to populate; false to eradicate
+		 */
+		public Fill (Selection area, double efficiency, boolean populate)
+		{
+			this.area = area;
+			this.efficiency = efficiency;
+			this.populate = populate;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			if (populate)
+				colony.populate (area, efficiency);
+			else
+				colony.eradicate (area, efficiency);
+		}
+	}
+
+	/** Pastes a pattern into the colony.
+	 */
+	private static class Paste implements Simulation.Command
+	{
+		private final Pattern pattern;
+		private final int row;
+		private final int col;
+		private final Pattern.Mode mode;
+
+		/** Creates a command to paste a pattern.
+		 * 
+		 * @param pattern	the pattern to paste
+		 * @param row		the row at which to put the top of the pattern
+		 * @param col		the column at which to put the left of the pattern
+		 * @param mode		the way in which to combine the cells
+		 */
+		public Paste (Pattern pattern, int row, int col, Pattern.Mode mode)
+		{
+			this.pattern = pattern;
+			this.row = row;
+			this.col = col;
+			this.mode = mode;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			colony.paste (pattern, row, col, mode);
+		}
+	}
+
+	/** Sets the state of a cell, if it is still within the grid.
+	 */
+	private static class SetCell implements Simulation.Command
+	{
+		private final int row;
+		private final int col;
+		private final boolean state;
+
+		/** Creates a command to set a cell.
+		 * 
+		 * @param row		the row of the cell
+		 * @param col		the column of the cell
+		 * @param state		the state to which to set the cell
+		 */
+		public SetCell (int row, int col, boolean state)
+		{
+			this.row = row;
+			this.col = col;
+			this.state = state;
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			if (colony.rowValid (row) && colony.colValid (col))
+				colony.setCell (row, col, state);
+		}
+	}
+}
@@ -1,9 +1,17 @@
-
-public class LifeSimulation 
-{          
-	public static void main(String[] args) 
-	{
-		GraphicUI gui = new GraphicUI ("Life 1.0", 1200, 720);		
-	}
-
-}
+
+public class LifeSimulation 
+{          
+	public static void main(String[] args) 
+	{
+		// With arguments, run a save file without opening a window
+
+		if (args.length > 0)
+		{
+			BatchRun.main (args);
+			return;
+		}
+
+		GraphicUI gui = new GraphicUI ("Life 1.0", 1200, 720);		
+	}
+
+}
@@ -0,0 +1,309 @@
+/** A rectangular block of cells, copied or cut out of a colony, to
+ * be pasted back into it or stamped into another one.
+ *
+ * The cells are packed 64 to a long in the same way as in a BitGrid,
+ * so that a pattern can be copied out of and pasted into a grid a word
+ * at a time, with only a shift to line up the columns. Rotating and
+ * mirroring give new patterns; rotations transpose the cells in blocks
+ * of 64 by 64, which takes six rounds of shifts and masks per block
+ * instead of one step per cell.
+ */
+public class Pattern
+{
+	/** The ways in which the cells of a pattern are combined
+	 * with the cells they are pasted over.
+	 */
+	public enum Mode
+	{
+		/** Cells are born where the pattern is alive, and left alone elsewhere. */
+		OR,
+
+		/** Cells are flipped where the pattern is alive. */
+		XOR,
+
+		/** Cells only survive where the pattern is also alive. */
+		AND,
+
+		/** Cells are replaced by the cells of the pattern. */
+		OVERWRITE;
+
+		/** Combines 64 cells with the cells pasted over them.
+		 *
+		 * @param old		the packed cells that are there already
+		 * @param cells		the packed cells of the pattern
+		 * @return the packed cells after pasting
+		 */
+		public long apply (long old, long cells)
+		{
+			switch (this)
+			{
+				case OR:
+					return old | cells;
+				case XOR:
+					return old ^ cells;
+				case AND:
+					return old & cells;
+				default:
+					return cells;
+			}
+		}
+	}
+
+	private final int width;
+	private final int height;
+	private final int stride;
+	private final long lastMask;
+	private final long[] words;
+
+	/** Creates a pattern of the given size, with every cell dead.
+	 *
+	 * @param width		the number of columns
+	 * @param height	the number of rows
+	 * @throws IllegalArgumentException if either dimension is negative
+	 */
+	public Pattern (int width, int height)
+	{
+		if (width < 0 || height < 0)
+			throw new IllegalArgumentException ("Invalid pattern size: " + width + "x" + height);
+
+		this.width = width;
+		this.height = height;
+		stride = (width + 63) >>> 6;
+		lastMask = (width & 63) == 0 ? -1L : (1L << width) - 1;
+		words = new long [stride * height];
+	}
+
+	/** Gets the cell at the specified location.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return true if the cell is alive; false otherwise
+	 * @throws IndexOutOfBoundsException if the row or column is out of bounds
+	 */
+	public boolean getCell (int row, int col)
+	{
+		checkCell (row, col);
+		return (words[row * stride + (col >>> 6)] >>> col & 1) != 0;
+	}
+
+	/** Gets the number of rows of this pattern.
+	 *
+	 * @return the height
+	 */
+	public int getHeight ()
+	{
+		return height;
+	}
+
+	/** Gets the number of live cells in this pattern.
+	 *
+	 * @return the population
+	 */
+	public long getPopulation ()
+	{
+		long population = 0;
+		for (long bits : words)
+			population += Long.bitCount (bits);
+		return population;
+	}
+
+	/** Gets the number of words in each row.
+	 *
+	 * @return the number of words per row
+	 */
+	public int getStride ()
+	{
+		return stride;
+	}
+
+	/** Gets the number of columns of this pattern.
+	 *
+	 * @return the width
+	 */
+	public int getWidth ()
+	{
+		return width;
+	}
+
+	/** Gets the packed word holding the cells in columns
+	 * 64 * w to 64 * w + 63 of the given row.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @return the packed cells
+	 */
+	public long getWord (int row, int w)
+	{
+		return words[row * stride + w];
+	}
+
+	/** Gives a copy of this pattern flipped from left to right.
+	 *
+	 * @return the mirrored pattern
+	 */
+	public Pattern mirrorHorizontally ()
+	{
+		// Reversing a whole row of words leaves it padded on the left instead
+
+		Pattern mirror = new Pattern (width, height);
+		int pad = stride * 64 - width;
+		long[] reversed = new long [stride + 1];
+
+		for (int row = 0; row < height; row++)
+		{
+			int off = row * stride;
+			for (int w = 0; w < stride; w++)
+				reversed[w] = Long.reverse (words[off + stride - 1 - w]);
+
+			for (int w = 0; w < stride; w++)
+				mirror.words[off + w] = pad == 0 ? reversed[w] : reversed[w] >>> pad | reversed[w + 1] << (64 - pad);
+		}
+		return mirror;
+	}
+
+	/** Gives a copy of this pattern flipped upside down.
+	 *
+	 * @return the mirrored pattern
+	 */
+	public Pattern mirrorVertically ()
+	{
+		Pattern mirror = new Pattern (width, height);
+		for (int row = 0; row < height; row++)
+			System.arraycopy (words, row * stride, mirror.words, (height - 1 - row) * stride, stride);
+		return mirror;
+	}
+
+	/** Gives a copy of this pattern turned a quarter turn clockwise.
+	 * The top row of this pattern becomes the right-hand column of the
+	 * result.
+	 *
+	 * @return the rotated pattern
+	 */
+	public Pattern rotateClockwise ()
+	{
+		return transpose ().mirrorHorizontally ();
+	}
+
+	/** Gives a copy of this pattern turned a quarter turn counterclockwise.
+	 * The top row of this pattern becomes the left-hand column of the
+	 * result.
+	 *
+	 * @return the rotated pattern
+	 */
+	public Pattern rotateCounterclockwise ()
+	{
+		return transpose ().mirrorVertically ();
+	}
+
+	/** Sets the state of the cell at the specified location.
+	 *
+	 * @param row		the row of the cell
+	 * @param col		the column of the cell
+	 * @param state		the state to which to set the cell
+	 * @throws IndexOutOfBoundsException if the row or column is out of bounds
+	 */
+	public void setCell (int row, int col, boolean state)
+	{
+		checkCell (row, col);
+		if (state)
+			words[row * stride + (col >>> 6)] |= 1L << col;
+		else
+			words[row * stride + (col >>> 6)] &= ~(1L << col);
+	}
+
+	/** Sets the packed word holding the cells in columns
+	 * 64 * w to 64 * w + 63 of the given row. Bits past the
+	 * last column are ignored.
+	 *
+	 * @param row	the row of the word
+	 * @param w		the index of the word within the row
+	 * @param bits	the packed cells
+	 */
+	public void setWord (int row, int w, long bits)
+	{
+		words[row * stride + w] = w == stride - 1 ? bits & lastMask : bits;
+	}
+
+	/** Gets 64 cells of a row, starting at any column. Cells
+	 * to either side of the pattern are dead.
+	 *
+	 * @param row	the row of the cells
+	 * @param col	the column of the first cell, which may be negative
+	 * @return the packed cells, with the cell in column col in bit 0
+	 */
+	long getBits (int row, long col)
+	{
+		if (col >= width || col <= -64)
+			return 0;
+
+		int w = (int) Math.floorDiv (col, 64);
+		int shift = Math.floorMod (col, 64);
+		int off = row * stride;
+
+		long lo = w >= 0 ? words[off + w] : 0;
+		if (shift == 0)
+			return lo;
+
+		long hi = w + 1 < stride ? words[off + w + 1] : 0;
+		return lo >>> shift | hi << (64 - shift);
+	}
+
+	/** Makes sure that the given cell is within this pattern.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @throws IndexOutOfBoundsException if the row or column is out of bounds
+	 */
+	private void checkCell (int row, int col)
+	{
+		if (row < 0 || row >= height || col < 0 || col >= width)
+			throw new IndexOutOfBoundsException ("Cell out of bounds: " + row + ", " + col);
+	}
+
+	/** Gives a copy of this pattern with its rows and columns swapped,
+	 * working on blocks of 64 by 64 cells.
+	 *
+	 * @return the transposed pattern
+	 */
+	private Pattern transpose ()
+	{
+		Pattern result = new Pattern (height, width);
+		long[] block = new long [64];
+
+		for (int by = 0; by < result.stride; by++)
+			for (int bx = 0; bx < stride; bx++)
+			{
+				// Row i of the block holds columns 64 * bx onwards of row 64 * by + i
+
+				int rows = Math.min (64, height - 64 * by);
+				for (int i = 0; i < 64; i++)
+					block[i] = i < rows ? words[(64 * by + i) * stride + bx] : 0;
+
+				transpose (block);
+
+				int cols = Math.min (64, width - 64 * bx);
+				for (int j = 0; j < cols; j++)
+					result.words[(64 * bx + j) * result.stride + by] = block[j];
+			}
+		return result;
+	}
+
+	/** Transposes a 64 by 64 block of cells in place, so that bit j of
+	 * word i ends up as bit i of word j. The block is split into quarters,
+	 * the two off the diagonal are swapped, and the same is done within
+	 * each quarter, down to single cells.
+	 *
+	 * @param block		the 64 words of the block
+	 */
+	private static void transpose (long[] block)
+	{
+		long mask = 0x00000000FFFFFFFFL;
+		for (int j = 32; j != 0; j >>>= 1, mask ^= mask << j)
+			for (int k = 0; k < 64; k = ((k | j) + 1) & ~j)
+			{
+				long t = (block[k] >>> j ^ block[k | j]) & mask;
+				block[k] ^= t << j;
+				block[k | j] ^= t;
+			}
+	}
+}
@@ -0,0 +1,250 @@
+/** A life-like cellular automaton rule, written as a rulestring in
+ * B/S notation such as "B3/S23" for Conway's Game of Life. The digits
+ * after the B are the neighbour counts with which a dead cell is born,
+ * and the digits after the S are the counts with which a live cell
+ * survives. The older S/B notation, such as "23/3", is also accepted.
+ *
+ * Rules are compiled once, into a table of the 18 possible cases for
+ * single cells, and into a bitwise formula for packed words, so that
+ * the rule costs the same for every cell no matter what it is.
+ *
+ * Rules in which a dead cell with no neighbours is born (B0) are not
+ * supported, since they would fill the empty space around a pattern.
+ */
+public final class Rule
+{
+	/** Conway's Game of Life, B3/S23 */
+	public static final Rule LIFE = parse ("B3/S23");
+
+	/** HighLife, B36/S23, which has a replicator */
+	public static final Rule HIGHLIFE = parse ("B36/S23");
+
+	/** Seeds, B2/S, in which every cell dies each generation */
+	public static final Rule SEEDS = parse ("B2/S");
+
+	/** Day & Night, B3678/S34678, which is symmetric under inversion */
+	public static final Rule DAY_AND_NIGHT = parse ("B3678/S34678");
+
+	private final int birth;
+	private final int survival;
+	private final boolean life;
+
+	/** Creates a rule from the sets of neighbour counts for birth
+	 * and survival, with bit n set for a count of n.
+	 *
+	 * @param birth		the counts with which a dead cell is born
+	 * @param survival	the counts with which a live cell survives
+	 */
+	private Rule (int birth, int survival)
+	{
+		this.birth = birth;
+		this.survival = survival;
+		life = birth == 1 << 3 && survival == (1 << 2 | 1 << 3);
+	}
+
+	/** Parses a rulestring in B/S notation, such as "B36/S23", or in
+	 * S/B notation, such as "23/36". Letters may be in either case.
+	 *
+	 * @param rule	the rulestring
+	 * @return the rule
+	 * @throws IllegalArgumentException if the rulestring is not valid,
+	 * or if it includes B0
+	 */
+	public static Rule parse (String rule)
+	{
+		String[] parts = rule.trim ().toUpperCase ().split ("/", -1);
+		if (parts.length != 2)
+			throw new IllegalArgumentException ("Invalid rule: " + rule);
+
+		int birth;
+		int survival;
+
+		if (parts[0].startsWith ("B") && parts[1].startsWith ("S"))
+		{
+			birth = counts (parts[0].substring (1), rule);
+			survival = counts (parts[1].substring (1), rule);
+		}
+		else if (parts[0].startsWith ("S") && parts[1].startsWith ("B"))
+		{
+			survival = counts (parts[0].substring (1), rule);
+			birth = counts (parts[1].substring (1), rule);
+		}
+		else
+		{
+			survival = counts (parts[0], rule);
+			birth = counts (parts[1], rule);
+		}
+
+		if ((birth & 1) != 0)
+			throw new IllegalArgumentException ("B0 rules are not supported: " + rule);
+
+		return new Rule (birth, survival);
+	}
+
+	/** Determines the next state of a single cell.
+	 *
+	 * @param alive		the current state of the cell
+	 * @param count		the number of live neighbours, from 0 to 8
+	 * @return true if the cell will be alive; false otherwise
+	 */
+	public boolean next (boolean alive, int count)
+	{
+		return ((alive ? survival : birth) >>> count & 1) != 0;
+	}
+
+	/** Computes the next generation of 64 cells at once, given their
+	 * neighbour counts as four bit planes, so that the count of the
+	 * cell in bit j is made up of bit j of each of the planes.
+	 *
+	 * @param c			the word holding the cells
+	 * @param ones		the 1s bit of the neighbour counts
+	 * @param twos		the 2s bit of the neighbour counts
+	 * @param fours		the 4s bit of the neighbour counts
+	 * @param eights	the 8s bit of the neighbour counts
+	 * @return the next generation of the cells in c
+	 */
+	public long apply (long c, long ones, long twos, long fours, long eights)
+	{
+		// Conway's Game of Life has a much shorter formula
+
+		if (life)
+			return ~(fours | eights) & twos & (ones | c);
+
+		// The count is (low + 4 * high), with low in 0..3 and high in 0..2
+
+		long low0 = ~(ones | twos);
+		long low1 = ones & ~twos;
+		long low2 = ~ones & twos;
+		long low3 = ones & twos;
+		long high0 = ~(fours | eights);
+		long high1 = fours;
+		long high2 = eights;
+
+		long born = select (birth, low0, low1, low2, low3, high0, high1, high2);
+		long kept = select (survival, low0, low1, low2, low3, high0, high1, high2);
+
+		return ~c & born | c & kept;
+	}
+
+	/** Gets the neighbour counts with which a dead cell is born.
+	 *
+	 * @return a set of counts, with bit n set for a count of n
+	 */
+	public int getBirth ()
+	{
+		return birth;
+	}
+
+	/** Determines whether this is Conway's Game of Life, B3/S23.
+	 *
+	 * @return true if this rule is B3/S23; false otherwise
+	 */
+	public boolean isLife ()
+	{
+		return life;
+	}
+
+	/** Gets the neighbour counts with which a live cell survives.
+	 *
+	 * @return a set of counts, with bit n set for a count of n
+	 */
+	public int getSurvival ()
+	{
+		return survival;
+	}
+
+	@Override
+	public boolean equals (Object o)
+	{
+		return o instanceof Rule && ((Rule) o).birth == birth && ((Rule) o).survival == survival;
+	}
+
+	@Override
+	public int hashCode ()
+	{
+		return birth << 9 | survival;
+	}
+
+	/** Returns the rulestring of this rule in B/S notation,
+	 * such as "B3/S23".
+	 *
+	 * @return the rulestring
+	 */
+	@Override
+	public String toString ()
+	{
+		return "B" + digits (birth) + "/S" + digits (survival);
+	}
+
+	/** Parses a string of neighbour counts, such as "236".
+	 *
+	 * @param digits	the counts
+	 * @param rule		the whole rulestring, for error messages
+	 * @return a set of counts, with bit n set for a count of n
+	 * @throws IllegalArgumentException if a character is not a digit from 0 to 8
+	 */
+	private static int counts (String digits, String rule)
+	{
+		int set = 0;
+		for (int i = 0; i < digits.length (); i++)
+		{
+			int n = digits.charAt (i) - '0';
+			if (n < 0 || n > 8)
+				throw new IllegalArgumentException ("Invalid rule: " + rule);
+			set |= 1 << n;
+		}
+		return set;
+	}
+
+	/** Writes a set of neighbour counts as a string of digits.
+	 *
+	 * @param set	a set of counts, with bit n set for a count of n
+	 * @return the counts, in increasing order
+	 */
+	private static String digits (int set)
+	{
+		String str = "";
+		for (int n = 0; n <= 8; n++)
+			if ((set >>> n & 1) != 0)
+				str += n;
+		return str;
+	}
+
+	/** Combines the masks of the counts that are in the given set.
+	 *
+	 * @param set	a set of counts, with bit n set for a count of n
+	 * @param low0	the cells whose count modulo 4 is 0
+	 * @param low1	the cells whose count modulo 4 is 1
+	 * @param low2	the cells whose count modulo 4 is 2
+	 * @param low3	the cells whose count modulo 4 is 3
+	 * @param high0	the cells whose count is below 4
+	 * @param high1	the cells whose count is from 4 to 7
+	 * @param high2	the cells whose count is 8
+	 * @return the cells whose count is in the set
+	 */
+	private static long select (int set, long low0, long low1, long low2, long low3,
+			long high0, long high1, long high2)
+	{
+		long mask = 0;
+
+		for (int high = 0; high < 3; high++)
+		{
+			int part = set >>> (4 * high) & 15;
+			if (part == 0)
+				continue;
+
+			long low = 0;
+			if ((part & 1) != 0)
+				low |= low0;
+			if ((part & 2) != 0)
+				low |= low1;
+			if ((part & 4) != 0)
+				low |= low2;
+			if ((part & 8) != 0)
+				low |= low3;
+
+			mask |= low & (high == 0 ? high0 : high == 1 ? high1 : high2);
+		}
+		return mask;
+	}
+}
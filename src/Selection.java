@@ -0,0 +1,395 @@
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/** A freehand selection of cells: a polygon of cell coordinates,
+ * together with the cells inside it, rasterised into a bit mask.
+ *
+ * The mask is packed 64 cells to a long in the same bit order as a
+ * BitGrid, and is filled by scanline with the non-zero winding rule of
+ * a GeneralPath: a cell is inside if the edges of the outline to its
+ * left, counted as +1 going down and -1 going up, do not add up to 0, so
+ * that a loop drawn over the outline does not leave a hole. A cell on the
+ * outline is inside when the polygon lies to its right or below it, in
+ * the same way as for Shape.contains. The outline is always taken to be
+ * closed by a line from the last point back to the first.
+ *
+ * Adding a point p to a polygon that starts at p0 and ends at pn only
+ * changes the cells of the triangle pn p p0, since the new closing edges
+ * differ from the old one by exactly that triangle. So each lineTo adds 1
+ * to the winding number of every cell of one triangle, or takes 1 away,
+ * depending on which way round it goes, and the mask never has to be
+ * filled again from scratch. The winding numbers are kept bit-sliced, as
+ * 16 words of two's complement bits for every word of the mask, so they
+ * are added to 64 cells at a time, and wrap around past 32767 windings.
+ * The same trick gives a preview of the polygon with one more point
+ * without changing the mask.
+ */
+public class Selection
+{
+	private static final int PLANES = 16;
+
+	private Point start;
+	private Point current;
+
+	private int minRow, minCol, maxRow, maxCol;
+
+	private long[] bits = new long [0];
+	private long[] winding = new long [0];
+	private int top = 0;
+	private int rows = 0;
+	private int leftWord = 0;
+	private int words = 0;
+
+	/** Determines whether the given cell is selected.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return true if the cell is inside the selection; false otherwise
+	 */
+	public boolean contains (int row, int col)
+	{
+		int r = row - top;
+		int w = Math.floorDiv (col, 64) - leftWord;
+		if (r < 0 || r >= rows || w < 0 || w >= words)
+			return false;
+		return (bits[r * words + w] >>> col & 1) != 0;
+	}
+
+	/** Gets the smallest rectangle that contains every point of the
+	 * outline, with x as the column and y as the row. Every selected
+	 * cell is within it.
+	 *
+	 * @return the bounds, or an empty rectangle if there are no points
+	 */
+	public Rectangle getBounds ()
+	{
+		if (start == null)
+			return new Rectangle ();
+		return new Rectangle (minCol, minRow, maxCol - minCol + 1, maxRow - minRow + 1);
+	}
+
+	/** Gets the last point of the outline.
+	 *
+	 * @return the point, with x as the column and y as the row,
+	 * or null if there are no points yet
+	 */
+	public Point getCurrentPoint ()
+	{
+		return current == null ? null : new Point (current);
+	}
+
+	/** Gets the selected cells of a row, packed 64 to a long. Bit j of
+	 * word w stands for the cell in column (base + 64 * w + j).
+	 *
+	 * @param row		the row to get
+	 * @param dst		the array in which to store the cells
+	 * @param base		the column of bit 0 of the first word
+	 * @param preview	a point to add to the outline for this call only,
+	 * or null to get the selection as it is
+	 */
+	public void getRow (int row, long[] dst, int base, Point preview)
+	{
+		Arrays.fill (dst, 0);
+
+		int r = row - top;
+		int offset = base - leftWord * 64;
+		int shift = Math.floorMod (offset, 64);
+		int first = Math.floorDiv (offset, 64);
+
+		if (r >= 0 && r < rows)
+		{
+			for (int w = 0; w < dst.length; w++)
+			{
+				long lo = word (r, first + w);
+				long hi = shift == 0 ? 0 : word (r, first + w + 1);
+				dst[w] = shift == 0 ? lo : lo >>> shift | hi << (64 - shift);
+			}
+		}
+
+		// Cells of the preview triangle are selected unless it unwinds them
+
+		if (preview != null && current != null)
+		{
+			long[] span = triangleSpan (start, current, preview, row);
+			int turn = orientation (current, preview, start);
+			if (span == null || turn == 0)
+				return;
+
+			long from = Math.max (span[0] - base, 0);
+			long to = Math.min (span[1] - base, 64L * dst.length);
+			for (int w = (int) (from >> 6); from < to && w <= (to - 1) >> 6; w++)
+			{
+				long lo = once (r, first + w, -turn);
+				long hi = shift == 0 ? 0 : once (r, first + w + 1, -turn);
+				long unwound = shift == 0 ? lo : lo >>> shift | hi << (64 - shift);
+				long mask = range (w, from, to);
+				dst[w] = dst[w] & ~mask | ~unwound & mask;
+			}
+		}
+	}
+
+	/** Gets the first point of the outline.
+	 *
+	 * @return the point, with x as the column and y as the row,
+	 * or null if there are no points yet
+	 */
+	public Point getStart ()
+	{
+		return start == null ? null : new Point (start);
+	}
+
+	/** Adds a point to the outline, and winds the cells of the
+	 * triangle that it adds to or cuts from the polygon once more
+	 * one way or the other. Starts the outline at the point if 
+	 * there are no points yet.
+	 *
+	 * @param col	the column of the point
+	 * @param row	the row of the point
+	 */
+	public void lineTo (int col, int row)
+	{
+		if (start == null)
+		{
+			moveTo (col, row);
+			return;
+		}
+
+		Point next = new Point (col, row);
+		include (row, col);
+
+		int turn = orientation (current, next, start);
+		for (int y = Math.min (Math.min (start.y, current.y), row); turn != 0 && y < Math.max (Math.max (start.y, current.y), row); y++)
+		{
+			long[] span = triangleSpan (start, current, next, y);
+			if (span != null)
+				wind (y - top, span[0] - leftWord * 64, span[1] - leftWord * 64, turn);
+		}
+
+		current = next;
+	}
+
+	/** Clears the selection and starts a new outline at the given point.
+	 *
+	 * @param col	the column of the point
+	 * @param row	the row of the point
+	 */
+	public void moveTo (int col, int row)
+	{
+		start = new Point (col, row);
+		current = start;
+		minRow = maxRow = row;
+		minCol = maxCol = col;
+
+		top = row;
+		rows = 1;
+		leftWord = Math.floorDiv (col, 64);
+		words = 1;
+		bits = new long [1];
+		winding = new long [PLANES];
+	}
+
+	/** Makes room in the mask for the given cell, growing it by at least
+	 * half of its size in whichever directions it grows, so that drawing
+	 * an outline away from its start takes linear time overall.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 */
+	private void include (int row, int col)
+	{
+		minRow = Math.min (minRow, row);
+		maxRow = Math.max (maxRow, row);
+		minCol = Math.min (minCol, col);
+		maxCol = Math.max (maxCol, col);
+
+		int w = Math.floorDiv (col, 64);
+		if (row >= top && row < top + rows && w >= leftWord && w < leftWord + words)
+			return;
+
+		int newTop = top;
+		int newRows = rows;
+		if (row < top)
+		{
+			newTop = Math.min (row, top - rows / 2);
+			newRows += top - newTop;
+		}
+		else if (row >= top + rows)
+			newRows = Math.max (row - top + 1, rows + rows / 2);
+
+		int newLeft = leftWord;
+		int newWords = words;
+		if (w < leftWord)
+		{
+			newLeft = Math.min (w, leftWord - words / 2);
+			newWords += leftWord - newLeft;
+		}
+		else if (w >= leftWord + words)
+			newWords = Math.max (w - leftWord + 1, words + words / 2);
+
+		long[] grown = new long [newRows * newWords];
+		long[] planes = new long [grown.length * PLANES];
+		for (int r = 0; r < rows; r++)
+		{
+			int to = (r + top - newTop) * newWords + leftWord - newLeft;
+			System.arraycopy (bits, r * words, grown, to, words);
+			System.arraycopy (winding, r * words * PLANES, planes, to * PLANES, words * PLANES);
+		}
+
+		bits = grown;
+		winding = planes;
+		top = newTop;
+		rows = newRows;
+		leftWord = newLeft;
+		words = newWords;
+	}
+
+	/** Gets a word of the mask, or 0 outside of it.
+	 *
+	 * @param r		the row within the mask
+	 * @param w		the word within the row of the mask
+	 * @return the word
+	 */
+	private long word (int r, int w)
+	{
+		return w >= 0 && w < words ? bits[r * words + w] : 0;
+	}
+
+	/** Adds 1 to or takes 1 from the winding numbers of a range of
+	 * cells of a row of the mask, a word at a time, by rippling a carry
+	 * or a borrow up through the bit planes of each word. The cells of
+	 * the mask are then those with any bit set in any plane. Cells
+	 * outside of the row are ignored.
+	 *
+	 * @param r			the row within the mask
+	 * @param from		the first cell of the row, inclusive
+	 * @param to		the last cell of the row, exclusive
+	 * @param turn		1 to add, or -1 to take away
+	 */
+	private void wind (int r, long from, long to, int turn)
+	{
+		from = Math.max (from, 0);
+		to = Math.min (to, 64L * words);
+
+		for (int w = (int) (from >> 6); from < to && w <= (to - 1) >> 6; w++)
+		{
+			int i = (r * words + w) * PLANES;
+			long carry = range (w, from, to);
+			for (int k = 0; k < PLANES && carry != 0; k++)
+			{
+				long plane = winding[i + k];
+				winding[i + k] = plane ^ carry;
+				carry &= turn > 0 ? plane : ~plane;
+			}
+
+			long any = 0;
+			for (int k = 0; k < PLANES; k++)
+				any |= winding[i + k];
+			bits[r * words + w] = any;
+		}
+	}
+
+	/** Finds the cells of a word of the mask that are wound exactly
+	 * once, one way or the other.
+	 *
+	 * @param r			the row within the mask
+	 * @param w			the word within the row of the mask
+	 * @param value		1 or -1, the winding number to look for
+	 * @return the cells with that winding number, or 0 outside of the mask
+	 */
+	private long once (int r, int w, int value)
+	{
+		if (r < 0 || r >= rows || w < 0 || w >= words)
+			return 0;
+
+		int i = (r * words + w) * PLANES;
+		long all = -1L;
+		long rest = 0;
+		for (int k = 1; k < PLANES; k++)
+		{
+			all &= winding[i + k];
+			rest |= winding[i + k];
+		}
+		return value < 0 ? winding[i] & all : winding[i] & ~rest;
+	}
+
+	/** Gets the bits of a word of a packed row that are within a range.
+	 *
+	 * @param w			the index of the word within the row
+	 * @param from		the first bit of the range, inclusive
+	 * @param to		the last bit of the range, exclusive
+	 * @return the bits of the word within the range
+	 */
+	private static long range (int w, long from, long to)
+	{
+		long lo = Math.max (from - 64L * w, 0);
+		long hi = Math.min (to - 64L * w, 64);
+		if (lo >= hi)
+			return 0;
+		return -1L << lo & -1L >>> (64 - hi);
+	}
+
+	/** Finds which way round a triangle goes.
+	 *
+	 * @param a		the first corner
+	 * @param b		the second corner
+	 * @param c		the third corner
+	 * @return 1 or -1 for either way round, or 0 if the
+	 * corners are on one line
+	 */
+	private static int orientation (Point a, Point b, Point c)
+	{
+		long cross = (long) (b.x - a.x) * (c.y - a.y) - (long) (b.y - a.y) * (c.x - a.x);
+		return Long.signum (cross);
+	}
+
+	/** Finds the column at which an edge crosses a row. The edge
+	 * counts for the rows from its upper end down to just above its
+	 * lower end, so that horizontal edges never count and a vertex
+	 * is only counted once. The column is worked out exactly and
+	 * rounded up, and the same edge always gives the same column
+	 * whichever way round it is given.
+	 *
+	 * @param a		one end of the edge
+	 * @param b		the other end of the edge
+	 * @param y		the row
+	 * @return the first column at or to the right of the crossing,
+	 * or Long.MIN_VALUE if the edge does not cross the row
+	 */
+	private static long crossing (Point a, Point b, int y)
+	{
+		if (a.y > b.y || a.y == b.y && a.x > b.x)
+		{
+			Point temp = a;
+			a = b;
+			b = temp;
+		}
+		if (y < a.y || y >= b.y)
+			return Long.MIN_VALUE;
+
+		long num = (long) (y - a.y) * (b.x - a.x);
+		return a.x - Math.floorDiv (-num, (long) (b.y - a.y));
+	}
+
+	/** Finds the cells of a row that are inside a triangle.
+	 *
+	 * @param a		the first corner
+	 * @param b		the second corner
+	 * @param c		the third corner
+	 * @param y		the row
+	 * @return the first column inside, inclusive, and the last, exclusive,
+	 * or null if the row does not cross the triangle
+	 */
+	private static long[] triangleSpan (Point a, Point b, Point c, int y)
+	{
+		long[] xs = new long [2];
+		int n = 0;
+		for (long x : new long[] {crossing (a, b, y), crossing (b, c, y), crossing (c, a, y)})
+			if (x != Long.MIN_VALUE && n < 2)
+				xs[n++] = x;
+
+		if (n < 2 || xs[0] == xs[1])
+			return null;
+		return new long[] {Math.min (xs[0], xs[1]), Math.max (xs[0], xs[1])};
+	}
+}
@@ -0,0 +1,320 @@
+import java.awt.Rectangle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/** Runs a colony on a thread of its own, so that drawing and editing
+ * it never have to wait for a generation to finish, and never see one
+ * half done.
+ *
+ * Only the simulation thread ever touches the cells of the colony.
+ * Other threads change them by submitting commands, which are queued
+ * and run between generations, in the order in which they came in.
+ * The cells are shown through snapshots: after a generation or a
+ * command, the simulation thread copies the cells around the view
+ * into an immutable snapshot, and publishes it through an atomic
+ * reference. A new snapshot is only made once the last one has been
+ * taken, and no more often than the frame rate while the colony is
+ * advancing, so at most one copy is made for each frame that is drawn,
+ * however fast the colony is advancing. Neither side ever waits for
+ * a lock held by the other.
+ *
+ * The rate at which the colony advances is separate from the frame
+ * rate. Up to FPS generations per second, one generation is stepped
+ * at a time; beyond that, a batch of generations is stepped once per
+ * frame. If stepping falls behind, the ticks that were missed are 
+ * dropped rather than made up, so that a slow generation never leaves
+ * a backlog. An unthrottled colony is advanced as fast as it can be,
+ * in batches that are sized to take a small part of a frame, so that
+ * commands still get run promptly.
+ */
+public class Simulation implements Runnable
+{
+	/** An action on a colony, run on the simulation thread.
+	 */
+	public interface Command
+	{
+		/** Carries out this command.
+		 *
+		 * @param colony	the colony to act on
+		 */
+		void run (Colony colony);
+	}
+
+	/** The rate at which snapshots are published while advancing, per second */
+	public static final int FPS = 60;
+
+	/** The rate at which to advance as fast as possible */
+	public static final long UNTHROTTLED = Long.MAX_VALUE;
+
+	private static final long SECOND = 1000000000L;
+	private static final long FRAME = SECOND / FPS;
+
+	private final Colony colony;
+	private final Runnable listener;
+	private final Thread thread;
+
+	private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command> ();
+	private final AtomicReference<Colony.Snapshot> snapshot = new AtomicReference<Colony.Snapshot> ();
+	private volatile boolean taken = true;
+	private volatile long rate = 0;
+	private volatile double achieved = 0;
+
+	// Only used by the simulation thread
+
+	private Rectangle view = new Rectangle ();
+	private boolean changed = true;
+
+	// Only used by the thread that draws the snapshots
+
+	private Rectangle requested = new Rectangle ();
+
+	/** Creates a simulation of the given colony, which should no
+	 * longer be touched by any other thread once it is started.
+	 *
+	 * @param colony	the colony to run
+	 * @param listener	called on the simulation thread whenever a new
+	 * snapshot is published; it should hand off any real work to another
+	 * thread, such as with SwingUtilities.invokeLater
+	 */
+	public Simulation (Colony colony, Runnable listener)
+	{
+		this.colony = colony;
+		this.listener = listener;
+		snapshot.set (colony.snapshot (view));
+		thread = new Thread (this, "Simulation");
+		thread.setDaemon (true);
+	}
+
+	/** Advances the colony by one generation, after any
+	 * commands that are already queued.
+	 */
+	public void advance ()
+	{
+		submit (new Advance ());
+	}
+
+	/** Gets the number of generations per second that the colony
+	 * actually advanced by, over the last half second or so.
+	 *
+	 * @return the achieved rate, or 0 if stopped
+	 */
+	public double getAchievedRate ()
+	{
+		return achieved;
+	}
+
+	/** Gets the number of generations per second that the colony
+	 * is meant to advance by.
+	 *
+	 * @return the rate, UNTHROTTLED, or 0 if stopped
+	 */
+	public long getRate ()
+	{
+		return rate;
+	}
+
+	/** Takes the latest snapshot of the colony. Once it has been taken,
+	 * the next generation or command publishes a new one.
+	 *
+	 * @return the snapshot
+	 */
+	public Colony.Snapshot getSnapshot ()
+	{
+		taken = true;
+		LockSupport.unpark (thread);
+		return snapshot.get ();
+	}
+
+	/** Determines whether the colony is advancing on its own.
+	 *
+	 * @return true if the rate is positive; false otherwise
+	 */
+	public boolean isAdvancing ()
+	{
+		return rate > 0;
+	}
+
+	/** Runs the simulation loop: the queued commands, then any
+	 * generations that are due, then a new snapshot if the last one
+	 * was taken, then waits until there is something more to do.
+	 */
+	@Override
+	public void run ()
+	{
+		long now = System.nanoTime ();
+		long next = now;
+		long shown = now - FRAME;
+		long batch = 1;
+		long counted = 0;
+		long since = now;
+
+		while (true)
+		{
+			for (Command command = commands.poll (); command != null; command = commands.poll ())
+			{
+				try
+				{
+					command.run (colony);
+				}
+				catch (RuntimeException e) // keep running; the colony is still consistent
+				{
+					thread.getUncaughtExceptionHandler ().uncaughtException (thread, e);
+				}
+				changed = true;
+			}
+
+			long speed = rate;
+			now = System.nanoTime ();
+
+			if (speed == UNTHROTTLED)
+			{
+				// Size the batches to take between an eighth and half of a frame
+
+				colony.advance (batch);
+				counted += batch;
+				changed = true;
+
+				long took = System.nanoTime () - now;
+				if (took < FRAME / 8 && batch < 1 << 20)
+					batch *= 2;
+				else if (took > FRAME / 2 && batch > 1)
+					batch /= 2;
+			}
+			else if (speed > 0 && now - next >= 0)
+			{
+				// One generation a tick, or a batch a frame; missed ticks are dropped
+
+				long generations = Math.max (speed / FPS, 1);
+				colony.advance (generations);
+				counted += generations;
+				changed = true;
+
+				next += Math.max (generations * SECOND / speed, 1);
+				now = System.nanoTime ();
+				if (next - now < 0)
+					next = now;
+			}
+			else if (speed == 0)
+				next = now;
+
+			// Work out the achieved rate about twice a second
+
+			now = System.nanoTime ();
+			if (speed == 0)
+			{
+				achieved = 0;
+				counted = 0;
+				since = now;
+			}
+			else if (now - since >= SECOND / 2)
+			{
+				achieved = counted * (double) SECOND / (now - since);
+				counted = 0;
+				since = now;
+			}
+
+			// While advancing, publish no more than once a frame
+
+			boolean due = speed == 0 || now - shown >= FRAME;
+			if (changed && taken && due)
+			{
+				taken = false;
+				changed = false;
+				shown = now;
+				snapshot.set (colony.snapshot (view));
+				listener.run ();
+			}
+
+			if (commands.isEmpty () && rate != UNTHROTTLED)
+			{
+				long wait = rate > 0 ? next - now : Long.MAX_VALUE;
+				if (changed && taken && !due)
+					wait = Math.min (wait, shown + FRAME - now);
+
+				if (wait == Long.MAX_VALUE)
+					LockSupport.park (this);
+				else if (wait > 0)
+					LockSupport.parkNanos (this, wait);
+			}
+		}
+	}
+
+	/** Starts advancing the colony on its own at the given number 
+	 * of generations per second, or as fast as it can with UNTHROTTLED,
+	 * or stops it with a rate of 0.
+	 *
+	 * @param perSecond		the number of generations per second
+	 */
+	public void setRate (long perSecond)
+	{
+		rate = Math.max (perSecond, 0);
+		LockSupport.unpark (thread);
+	}
+
+	/** Sets the cells that are about to be drawn. Snapshots
+	 * cover a margin around them, so that they need not be
+	 * asked for again every time the view moves a little.
+	 *
+	 * @param visible	the cells in view, with x as the column and y as the row
+	 */
+	public void setView (Rectangle visible)
+	{
+		if (!requested.contains (visible))
+		{
+			requested = new Rectangle (visible);
+			requested.grow (visible.width / 4 + 1, visible.height / 4 + 1);
+			submit (new View (requested));
+		}
+	}
+
+	/** Starts the simulation thread.
+	 */
+	public void start ()
+	{
+		thread.start ();
+	}
+
+	/** Queues a command to be run between generations.
+	 *
+	 * @param command	the command
+	 */
+	public void submit (Command command)
+	{
+		commands.add (command);
+		LockSupport.unpark (thread);
+	}
+
+	/** Advances the colony by one generation.
+	 */
+	private static class Advance implements Command
+	{
+		@Override
+		public void run (Colony colony)
+		{
+			colony.advance ();
+		}
+	}
+
+	/** Sets the cells that snapshots are made of.
+	 */
+	private class View implements Command
+	{
+		private final Rectangle area;
+
+		/** Creates a command to change the view.
+		 *
+		 * @param area	the cells to copy into snapshots
+		 */
+		public View (Rectangle area)
+		{
+			this.area = new Rectangle (area);
+		}
+
+		@Override
+		public void run (Colony colony)
+		{
+			view = area;
+		}
+	}
+}
@@ -0,0 +1,575 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** An unbounded universe of cells, stored as a hash table of
+ * square chunks of 64 by 64 cells.
+ *
+ * Each chunk keeps one long per row, in the same bit order as
+ * a BitGrid. Only chunks that contain live cells, or that live
+ * cells are about to spread into, are kept, so that memory scales
+ * with the area of the live pattern rather than its bounding box.
+ * Cells are addressed by long coordinates.
+ *
+ * The population is kept up to date as cells are set and stepped,
+ * and the bounding box of the live cells is worked out from the
+ * chunks only when it is asked for after it may have shrunk.
+ */
+public class SparseUniverse
+{
+	/** The base 2 logarithm of the side of a chunk */
+	static final int SHIFT = 6;
+
+	private static final int SIZE = 1 << SHIFT;
+	private static final long[] BLANK = new long [SIZE];
+
+	private Chunk[] table = new Chunk [16];
+	private int count = 0;
+
+	private long population = 0;
+	private long top, left, bottom, right;
+	private boolean boundsStale = true;
+
+	/** Removes every cell from the universe.
+	 */
+	public void clear ()
+	{
+		table = new Chunk [16];
+		count = 0;
+		population = 0;
+		boundsStale = true;
+	}
+
+	/** Makes a copy of the live cells of this universe.
+	 *
+	 * @return the copy
+	 */
+	public SparseUniverse copy ()
+	{
+		SparseUniverse copy = new SparseUniverse ();
+		for (Chunk chunk : chunks ())
+			if (!chunk.isEmpty ())
+				System.arraycopy (chunk.cells, 0, copy.ensure (chunk.cy, chunk.cx).cells, 0, SIZE);
+		copy.population = population;
+		return copy;
+	}
+
+	/** Inverts the state of the cell at the specified location.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 */
+	public void flipCell (long row, long col)
+	{
+		setCell (row, col, !getCell (row, col));
+	}
+
+	/** Gets the cell at the specified location.
+	 *
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return true if the cell is alive; false otherwise
+	 */
+	public boolean getCell (long row, long col)
+	{
+		Chunk chunk = get (row >> SHIFT, col >> SHIFT);
+		return chunk != null && (chunk.cells[(int) row & (SIZE - 1)] >>> col & 1) != 0;
+	}
+
+	/** Gets 64 cells of a row, starting at any column, from the
+	 * words of one or two chunks.
+	 *
+	 * @param row	the row of the cells
+	 * @param col	the column of the first cell
+	 * @return the packed cells, with the cell in column col in bit 0
+	 */
+	public long getBits (long row, long col)
+	{
+		long cx = col >> SHIFT;
+		int shift = (int) col & (SIZE - 1);
+		long lo = getWord (row, cx);
+		if (shift == 0)
+			return lo;
+		return lo >>> shift | getWord (row, cx + 1) << (SIZE - shift);
+	}
+
+	/** Gets the bounding box of the live cells, as the rows and columns
+	 * of its corners. This takes constant time, except after stepping or
+	 * after killing a cell, when it is worked out again from the chunks.
+	 *
+	 * @return {top, left, bottom, right}, all inclusive,
+	 * or null if there are no live cells
+	 */
+	public long[] getBounds ()
+	{
+		if (boundsStale)
+			computeBounds ();
+		if (population == 0)
+			return null;
+		return new long[] {top, left, bottom, right};
+	}
+
+	/** Gets the number of chunks currently allocated.
+	 *
+	 * @return the number of chunks
+	 */
+	public int getChunkCount ()
+	{
+		return count;
+	}
+
+	/** Gets the number of live cells.
+	 *
+	 * @return the population
+	 */
+	public long getPopulation ()
+	{
+		return population;
+	}
+
+	/** Gets the packed word holding the cells in columns
+	 * 64 * cx to 64 * cx + 63 of the given row, which is
+	 * one row of a chunk.
+	 *
+	 * @param row	the row of the word
+	 * @param cx	the column of the chunk holding the word
+	 * @return the packed cells
+	 */
+	public long getWord (long row, long cx)
+	{
+		Chunk chunk = get (row >> SHIFT, cx);
+		return chunk == null ? 0 : chunk.cells[(int) row & (SIZE - 1)];
+	}
+
+	/** Computes a 64-bit hash of the live cells of the universe.
+	 * The hash of each chunk depends on its location and its cells,
+	 * and the hashes of the chunks are added up, so that the order
+	 * of the table does not matter.
+	 *
+	 * @return the hash of the cells
+	 */
+	public long hashCells ()
+	{
+		long sum = 0;
+		for (Chunk chunk : table)
+			if (chunk != null)
+			{
+				long h = hash (chunk.cy, chunk.cx);
+				for (long bits : chunk.cells)
+					h = (h ^ bits) * 0x9E3779B97F4A7C15L;
+				sum += h ^ h >>> 31;
+			}
+		return sum;
+	}
+
+	/** Determines whether this universe has exactly the same live
+	 * cells as another. Since the populations are the same, it is
+	 * enough that every chunk of this one matches the other.
+	 *
+	 * @param other	the universe to compare with
+	 * @return true if the cells are the same; false otherwise
+	 */
+	public boolean sameCells (SparseUniverse other)
+	{
+		if (population != other.population)
+			return false;
+
+		for (Chunk chunk : table)
+			if (chunk != null && !Arrays.equals (chunk.cells, other.cells (chunk.cy, chunk.cx)))
+				return false;
+		return true;
+	}
+
+	/** Sets the state of the cell at the specified location.
+	 * Allocates the chunk holding the cell if necessary, and
+	 * frees it if it becomes empty.
+	 *
+	 * @param row		the row of the cell
+	 * @param col		the column of the cell
+	 * @param state		the state to which to set the cell
+	 */
+	public void setCell (long row, long col, boolean state)
+	{
+		long cy = row >> SHIFT;
+		long cx = col >> SHIFT;
+		int r = (int) row & (SIZE - 1);
+
+		if (state)
+		{
+			Chunk chunk = ensure (cy, cx);
+			if ((chunk.cells[r] & 1L << col) == 0)
+			{
+				chunk.cells[r] |= 1L << col;
+				population++;
+				if (!boundsStale)
+				{
+					top = Math.min (top, row);
+					left = Math.min (left, col);
+					bottom = Math.max (bottom, row);
+					right = Math.max (right, col);
+				}
+			}
+		}
+		else
+		{
+			Chunk chunk = get (cy, cx);
+			if (chunk != null && (chunk.cells[r] & 1L << col) != 0)
+			{
+				chunk.cells[r] &= ~(1L << col);
+				population--;
+				boundsStale = true;
+				if (chunk.isEmpty ())
+					remove (chunk);
+			}
+		}
+	}
+
+	/** Sets the packed word holding the cells in columns 64 * cx
+	 * to 64 * cx + 63 of the given row. Allocates the chunk holding
+	 * the word if necessary, and frees it if it becomes empty.
+	 *
+	 * @param row	the row of the word
+	 * @param cx	the column of the chunk holding the word
+	 * @param bits	the packed cells
+	 */
+	public void setWord (long row, long cx, long bits)
+	{
+		long cy = row >> SHIFT;
+		int r = (int) row & (SIZE - 1);
+		Chunk chunk = get (cy, cx);
+		long old = chunk == null ? 0 : chunk.cells[r];
+		if (bits == old)
+			return;
+
+		if (chunk == null)
+			chunk = ensure (cy, cx);
+		chunk.cells[r] = bits;
+		population += Long.bitCount (bits) - Long.bitCount (old);
+
+		if ((old & ~bits) != 0) // cells died
+			boundsStale = true;
+		else if (!boundsStale)
+		{
+			long born = bits & ~old;
+			top = Math.min (top, row);
+			bottom = Math.max (bottom, row);
+			left = Math.min (left, (cx << SHIFT) + Long.numberOfTrailingZeros (born));
+			right = Math.max (right, (cx << SHIFT) + 63 - Long.numberOfLeadingZeros (born));
+		}
+
+		if (bits == 0 && chunk.isEmpty ())
+			remove (chunk);
+	}
+
+	/** Advances the universe by one generation, using the given rule.
+	 * Chunks next to live cells on the edge of an existing chunk are
+	 * allocated first, and chunks that end up empty are freed afterwards.
+	 *
+	 * @param rule	the rule to apply
+	 */
+	public void step (Rule rule)
+	{
+		// Make room for cells spreading out of occupied chunks
+
+		for (Chunk chunk : chunks ())
+		{
+			long[] cells = chunk.cells;
+			long left = 0, right = 0;
+			for (int r = 0; r < SIZE; r++)
+			{
+				left |= cells[r] & 1;
+				right |= cells[r] >>> 63;
+			}
+
+			long top = cells[0];
+			long bottom = cells[SIZE - 1];
+			long cy = chunk.cy, cx = chunk.cx;
+
+			if (top != 0)
+				ensure (cy - 1, cx);
+			if (bottom != 0)
+				ensure (cy + 1, cx);
+			if (left != 0)
+				ensure (cy, cx - 1);
+			if (right != 0)
+				ensure (cy, cx + 1);
+			if ((top & 1) != 0)
+				ensure (cy - 1, cx - 1);
+			if (top < 0)
+				ensure (cy - 1, cx + 1);
+			if ((bottom & 1) != 0)
+				ensure (cy + 1, cx - 1);
+			if (bottom < 0)
+				ensure (cy + 1, cx + 1);
+		}
+
+		// Compute the next generation of every chunk, then swap them all in
+
+		ArrayList<Chunk> all = chunks ();
+		for (Chunk chunk : all)
+			evolve (chunk, rule);
+
+		population = 0;
+		boundsStale = true;
+
+		for (Chunk chunk : all)
+		{
+			long[] temp = chunk.cells;
+			chunk.cells = chunk.next;
+			chunk.next = temp;
+			for (long bits : chunk.cells)
+				population += Long.bitCount (bits);
+			if (chunk.isEmpty ())
+				remove (chunk);
+		}
+	}
+
+	/** Gets a list of all of the allocated chunks.
+	 *
+	 * @return the chunks, in no particular order
+	 */
+	ArrayList<Chunk> chunks ()
+	{
+		ArrayList<Chunk> list = new ArrayList<Chunk> (count);
+		for (Chunk chunk : table)
+			if (chunk != null)
+				list.add (chunk);
+		return list;
+	}
+
+	/** Gets the chunk at the given location, allocating
+	 * an empty one if it does not exist yet.
+	 *
+	 * @param cy	the row of the chunk
+	 * @param cx	the column of the chunk
+	 * @return the chunk
+	 */
+	Chunk ensure (long cy, long cx)
+	{
+		Chunk chunk = get (cy, cx);
+		if (chunk == null)
+		{
+			if (2 * (count + 1) > table.length)
+				rehash (table.length * 2);
+			chunk = new Chunk (cy, cx);
+			insert (chunk);
+			count++;
+		}
+		return chunk;
+	}
+
+	/** Works out the bounding box of the live cells again from the chunks.
+	 */
+	private void computeBounds ()
+	{
+		top = left = Long.MAX_VALUE;
+		bottom = right = Long.MIN_VALUE;
+
+		for (Chunk chunk : table)
+			if (chunk != null)
+			{
+				long cols = 0;
+				int first = -1, last = -1;
+				for (int r = 0; r < SIZE; r++)
+					if (chunk.cells[r] != 0)
+					{
+						cols |= chunk.cells[r];
+						if (first < 0)
+							first = r;
+						last = r;
+					}
+				if (first < 0)
+					continue;
+
+				long y = chunk.cy << SHIFT;
+				long x = chunk.cx << SHIFT;
+				top = Math.min (top, y + first);
+				bottom = Math.max (bottom, y + last);
+				left = Math.min (left, x + Long.numberOfTrailingZeros (cols));
+				right = Math.max (right, x + 63 - Long.numberOfLeadingZeros (cols));
+			}
+
+		boundsStale = false;
+	}
+
+	/** Computes the next generation of the given chunk into
+	 * its spare buffer, using the edges of its neighbours.
+	 *
+	 * @param chunk		the chunk to evolve
+	 * @param rule		the rule to apply
+	 */
+	private void evolve (Chunk chunk, Rule rule)
+	{
+		long cy = chunk.cy, cx = chunk.cx;
+		long[] c = chunk.cells;
+		long[] n = cells (cy - 1, cx);
+		long[] s = cells (cy + 1, cx);
+		long[] w = cells (cy, cx - 1);
+		long[] e = cells (cy, cx + 1);
+		long[] nw = cells (cy - 1, cx - 1);
+		long[] ne = cells (cy - 1, cx + 1);
+		long[] sw = cells (cy + 1, cx - 1);
+		long[] se = cells (cy + 1, cx + 1);
+		long[] next = chunk.next;
+
+		for (int r = 0; r < SIZE; r++)
+		{
+			long uw, u, ue, dw, d, de;
+
+			if (r > 0)
+			{
+				uw = w[r - 1];
+				u = c[r - 1];
+				ue = e[r - 1];
+			}
+			else
+			{
+				uw = nw[SIZE - 1];
+				u = n[SIZE - 1];
+				ue = ne[SIZE - 1];
+			}
+
+			if (r < SIZE - 1)
+			{
+				dw = w[r + 1];
+				d = c[r + 1];
+				de = e[r + 1];
+			}
+			else
+			{
+				dw = sw[0];
+				d = s[0];
+				de = se[0];
+			}
+
+			next[r] = BitGrid.evolve (rule, uw, u, ue, w[r], c[r], e[r], dw, d, de);
+		}
+	}
+
+	/** Gets the cells of the chunk at the given location.
+	 *
+	 * @param cy	the row of the chunk
+	 * @param cx	the column of the chunk
+	 * @return the rows of the chunk, or all dead rows if there is none
+	 */
+	private long[] cells (long cy, long cx)
+	{
+		Chunk chunk = get (cy, cx);
+		return chunk == null ? BLANK : chunk.cells;
+	}
+
+	/** Finds the chunk at the given location.
+	 *
+	 * @param cy	the row of the chunk
+	 * @param cx	the column of the chunk
+	 * @return the chunk, or null if there is none
+	 */
+	private Chunk get (long cy, long cx)
+	{
+		int mask = table.length - 1;
+		for (int i = hash (cy, cx) & mask; table[i] != null; i = (i + 1) & mask)
+			if (table[i].cy == cy && table[i].cx == cx)
+				return table[i];
+		return null;
+	}
+
+	/** Mixes the coordinates of a chunk into a hash code.
+	 *
+	 * @param cy	the row of the chunk
+	 * @param cx	the column of the chunk
+	 * @return the hash code
+	 */
+	private static int hash (long cy, long cx)
+	{
+		long h = cy * 0x9E3779B97F4A7C15L + cx;
+		h ^= h >>> 32;
+		h *= 0xD6E8FEB86659FD93L;
+		return (int) (h ^ h >>> 32);
+	}
+
+	/** Puts the chunk into the first free slot of its probe sequence.
+	 *
+	 * @param chunk		the chunk to insert
+	 */
+	private void insert (Chunk chunk)
+	{
+		int mask = table.length - 1;
+		int i = hash (chunk.cy, chunk.cx) & mask;
+		while (table[i] != null)
+			i = (i + 1) & mask;
+		table[i] = chunk;
+	}
+
+	/** Moves all of the chunks into a table of the given size.
+	 *
+	 * @param capacity	the new size, a power of 2
+	 */
+	private void rehash (int capacity)
+	{
+		Chunk[] old = table;
+		table = new Chunk [capacity];
+		for (Chunk chunk : old)
+			if (chunk != null)
+				insert (chunk);
+	}
+
+	/** Frees the given chunk. The chunks after it in the same run
+	 * of the table are moved back, so that no probe sequence is
+	 * broken by the gap.
+	 *
+	 * @param chunk		the chunk to remove
+	 */
+	private void remove (Chunk chunk)
+	{
+		int mask = table.length - 1;
+		int i = hash (chunk.cy, chunk.cx) & mask;
+		while (table[i] != chunk)
+			i = (i + 1) & mask;
+
+		table[i] = null;
+		count--;
+
+		for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask)
+		{
+			Chunk moved = table[j];
+			table[j] = null;
+			insert (moved);
+		}
+
+		if (table.length > 16 && 8 * count < table.length)
+			rehash (table.length / 2);
+	}
+
+	/** A square block of 64 by 64 cells, with a spare buffer
+	 * for computing its next generation.
+	 */
+	static class Chunk
+	{
+		final long cy;
+		final long cx;
+		long[] cells = new long [SIZE];
+		long[] next = new long [SIZE];
+
+		/** Creates an empty chunk at the given location.
+		 *
+		 * @param cy	the row of the chunk
+		 * @param cx	the column of the chunk
+		 */
+		Chunk (long cy, long cx)
+		{
+			this.cy = cy;
+			this.cx = cx;
+		}
+
+		/** Determines whether every cell of this chunk is dead.
+		 *
+		 * @return true if the chunk is empty; false otherwise
+		 */
+		boolean isEmpty ()
+		{
+			for (long bits : cells)
+				if (bits != 0)
+					return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,495 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** A record of the recent states of a grid, for going back to an
+ * earlier generation or undoing an edit.
+ *
+ * Each entry holds the generation it was recorded at, and either a
+ * keyframe, which is a copy of every nonzero word of the grid, or a
+ * delta, which is the XOR of the grid with the entry before it, kept
+ * as the indices and values of the words that changed. Since most of
+ * a grid stays the same from one generation to the next, deltas are
+ * usually far smaller than the grid.
+ *
+ * A new keyframe is taken once the deltas since the last one add up
+ * to more than a keyframe would take, so going to any entry takes at
+ * most the work of about two keyframes: the nearest keyframe before
+ * it, then the deltas from there. Going between two entries with no
+ * keyframe in between just applies the deltas in between, in either
+ * direction, since a delta undoes itself.
+ *
+ * Once the entries take more than the memory budget, the oldest
+ * keyframe is dropped along with its deltas. Recording after going
+ * back drops the entries after the current one, as for an undo.
+ */
+public class Timeline
+{
+	/** The rough size of an entry without its words, in bytes */
+	private static final int OVERHEAD = 64;
+
+	private final int stride;
+	private final int height;
+	private long budget;
+
+	private final ArrayList<Entry> entries = new ArrayList<Entry> ();
+	private int current = -1;
+	private long size = 0;
+	private long sinceKey = 0;
+
+	private final long[] shadow;
+	private final long[] row;
+	private final int[] tileWords;
+	private long nonzero = 0;
+	private boolean full = true;
+	private int[] indices = new int [1024];
+	private long[] values = new long [1024];
+
+	/** Creates an empty timeline for grids of the given size.
+	 *
+	 * @param stride	the number of words in each row
+	 * @param height	the number of rows
+	 * @param budget	the most memory for the entries to take, in bytes
+	 */
+	public Timeline (int stride, int height, long budget)
+	{
+		this.stride = stride;
+		this.height = height;
+		this.budget = budget;
+		shadow = new long [stride * height];
+		row = new long [stride];
+		tileWords = new int [(height + BitGrid.TILE_ROWS - 1) / BitGrid.TILE_ROWS * stride];
+	}
+
+	/** Determines whether there is an entry after the current one.
+	 *
+	 * @return true if redo would do something; false otherwise
+	 */
+	public boolean canRedo ()
+	{
+		return current + 1 < entries.size ();
+	}
+
+	/** Determines whether there is an entry before the current one.
+	 *
+	 * @return true if undo would do something; false otherwise
+	 */
+	public boolean canUndo ()
+	{
+		return current > 0;
+	}
+
+	/** Removes every entry. Since the grid may then change in ways
+	 * that it does not flag, the next record compares all of it.
+	 */
+	public void clear ()
+	{
+		entries.clear ();
+		current = -1;
+		size = 0;
+		sinceKey = 0;
+		full = true;
+	}
+
+	/** Determines whether this timeline can record grids of the given size.
+	 *
+	 * @param grid	the grid
+	 * @return true if the grid has the same size as this timeline
+	 */
+	public boolean fits (BitGrid grid)
+	{
+		return grid.getStride () == stride && grid.getHeight () == height;
+	}
+
+	/** Gets the most memory that the entries may take.
+	 *
+	 * @return the budget, in bytes
+	 */
+	public long getBudget ()
+	{
+		return budget;
+	}
+
+	/** Gets the generation of the current entry.
+	 *
+	 * @return the generation, or -1 if nothing has been recorded
+	 */
+	public long getCurrent ()
+	{
+		return current < 0 ? -1 : entries.get (current).iteration;
+	}
+
+	/** Gets the generation of the oldest entry still kept.
+	 *
+	 * @return the generation, or -1 if nothing has been recorded
+	 */
+	public long getFirst ()
+	{
+		return entries.isEmpty () ? -1 : entries.get (0).iteration;
+	}
+
+	/** Gets the memory taken by the entries, not counting the
+	 * copy of the current grid that the timeline keeps.
+	 *
+	 * @return the size, in bytes
+	 */
+	public long getSize ()
+	{
+		return size;
+	}
+
+	/** Records the cells of a grid as a new entry after the current one,
+	 * dropping any entries that were after it. Nothing is recorded if
+	 * neither the cells nor the generation changed.
+	 *
+	 * Only the tiles that the grid flags as changed are compared with
+	 * the last state recorded, so that recording a generation in which
+	 * little moved costs little more than stepping it. The whole grid is
+	 * compared the first time, and after the timeline is cleared; in
+	 * between, every cell that changed since the last record must be
+	 * in a flagged tile, as it is when the grid is only stepped once
+	 * between records, or edited.
+	 *
+	 * @param grid		the grid to record, of the same size as this timeline
+	 * @param iteration	the generation of the grid
+	 */
+	public void record (BitGrid grid, long iteration)
+	{
+		while (entries.size () > current + 1)
+			size -= entries.remove (entries.size () - 1).bytes ();
+		sinceKey = 0;
+		for (int i = current; i >= 0 && !entries.get (i).key; i--)
+			sinceKey += entries.get (i).bytes ();
+
+		// Compare the grid with the last state recorded, only in the tiles
+		// that changed unless the grid is not known to match it elsewhere
+
+		int changes = 0;
+		int tiles = grid.getTileCount ();
+
+		for (int tile = 0; tile < tiles; tile++)
+		{
+			if (!full && !grid.isChanged (tile))
+				continue;
+
+			int w = tile % stride;
+			int top = tile / stride * BitGrid.TILE_ROWS;
+			int bottom = Math.min (top + BitGrid.TILE_ROWS, height);
+			for (int r = top; r < bottom; r++)
+			{
+				long word = grid.getWord (r, w);
+				long diff = word ^ shadow[r * stride + w];
+				if (diff != 0)
+				{
+					if (changes == indices.length)
+					{
+						indices = Arrays.copyOf (indices, 2 * changes);
+						values = Arrays.copyOf (values, 2 * changes);
+					}
+					indices[changes] = r * stride + w;
+					values[changes++] = diff;
+					put (r * stride + w, word);
+				}
+			}
+		}
+		full = false;
+
+		if (changes == 0 && current >= 0 && entries.get (current).iteration == iteration)
+			return;
+
+		// Take a keyframe instead once the deltas cost more than one
+
+		long keyBytes = keyBytes ();
+		long deltaBytes = OVERHEAD + 12L * changes;
+		Entry entry;
+
+		if (current < 0 || sinceKey + deltaBytes > keyBytes)
+		{
+			entry = keyframe (iteration);
+			sinceKey = 0;
+		}
+		else
+		{
+			entry = new Entry (iteration, false, Arrays.copyOf (indices, changes), Arrays.copyOf (values, changes));
+			sinceKey += deltaBytes;
+		}
+
+		entries.add (entry);
+		current++;
+		size += entry.bytes ();
+		evict ();
+	}
+
+	/** Goes forward to the entry after the current one.
+	 *
+	 * @param grid	the grid to write the cells into
+	 * @return the generation of the entry, or -1 if there is none
+	 */
+	public long redo (BitGrid grid)
+	{
+		return canRedo () ? seek (grid, current + 1) : -1;
+	}
+
+	/** Goes back or forward to the last entry recorded at or
+	 * before the given generation.
+	 *
+	 * @param grid		the grid to write the cells into
+	 * @param iteration	the generation to go to
+	 * @return the generation of the entry, or -1 if every entry is
+	 * after the given generation
+	 */
+	public long rewind (BitGrid grid, long iteration)
+	{
+		// Entries after the current one may be at earlier generations,
+		// if a jump was undone, so only look on the same side of it
+
+		int target = -1;
+		if (current >= 0 && entries.get (current).iteration <= iteration)
+		{
+			target = current;
+			while (target + 1 < entries.size () && entries.get (target + 1).iteration <= iteration)
+				target++;
+		}
+		else
+		{
+			for (int i = current - 1; i >= 0 && target < 0; i--)
+				if (entries.get (i).iteration <= iteration)
+					target = i;
+		}
+
+		return target < 0 ? -1 : seek (grid, target);
+	}
+
+	/** Sets the most memory that the entries may take, dropping
+	 * the oldest entries if they already take more.
+	 *
+	 * @param budget	the new budget, in bytes
+	 */
+	public void setBudget (long budget)
+	{
+		this.budget = budget;
+		evict ();
+	}
+
+	/** Goes back to the entry before the current one.
+	 *
+	 * @param grid	the grid to write the cells into
+	 * @return the generation of the entry, or -1 if there is none
+	 */
+	public long undo (BitGrid grid)
+	{
+		return canUndo () ? seek (grid, current - 1) : -1;
+	}
+
+	/** Counts the nonzero words of the last state recorded, in all
+	 * and in each tile, after it was replaced as a whole.
+	 */
+	private void count ()
+	{
+		nonzero = 0;
+		Arrays.fill (tileWords, 0);
+		for (int i = 0; i < shadow.length; i++)
+			if (shadow[i] != 0)
+			{
+				tileWords[i / stride / BitGrid.TILE_ROWS * stride + i % stride]++;
+				nonzero++;
+			}
+	}
+
+	/** Drops the oldest keyframes, along with their deltas, while
+	 * the entries take more than the budget. The current entry is
+	 * always kept. If no keyframe comes between the oldest one and
+	 * the current entry, the current entry is made a keyframe, from
+	 * the copy of its cells, so that every entry before it can go.
+	 */
+	private void evict ()
+	{
+		while (size > budget && current > 0)
+		{
+			int next = 1;
+			while (next < entries.size () && !entries.get (next).key)
+				next++;
+
+			if (next > current)
+			{
+				Entry entry = entries.get (current);
+				Entry key = keyframe (entry.iteration);
+				size += key.bytes () - entry.bytes ();
+				entries.set (current, key);
+				next = current;
+			}
+
+			for (int i = 0; i < next; i++)
+				size -= entries.get (i).bytes ();
+			entries.subList (0, next).clear ();
+			current -= next;
+		}
+	}
+
+	/** Works out how much memory a keyframe of the last state
+	 * recorded would take.
+	 *
+	 * @return the size, in bytes
+	 */
+	private long keyBytes ()
+	{
+		return OVERHEAD + Math.min (8L * shadow.length, 12L * nonzero);
+	}
+
+	/** Makes a keyframe of the last state recorded, kept as
+	 * either every word or only the nonzero words, whichever
+	 * is smaller. The nonzero words are only looked for in the
+	 * tiles that have any, so that a sparse keyframe takes about
+	 * as long as a delta of the same size.
+	 *
+	 * @param iteration	the generation of the keyframe
+	 * @return the keyframe
+	 */
+	private Entry keyframe (long iteration)
+	{
+		if (8L * shadow.length <= 12L * nonzero)
+			return new Entry (iteration, true, null, shadow.clone ());
+
+		int[] at = new int [(int) nonzero];
+		long[] bits = new long [(int) nonzero];
+		int n = 0;
+		for (int tile = 0; tile < tileWords.length; tile++)
+		{
+			if (tileWords[tile] == 0)
+				continue;
+
+			int w = tile % stride;
+			int top = tile / stride * BitGrid.TILE_ROWS;
+			int bottom = Math.min (top + BitGrid.TILE_ROWS, height);
+			for (int i = top * stride + w; i < bottom * stride; i += stride)
+				if (shadow[i] != 0)
+				{
+					at[n] = i;
+					bits[n++] = shadow[i];
+				}
+		}
+		return new Entry (iteration, true, at, bits);
+	}
+
+	/** Changes a word of the last state recorded, keeping the
+	 * counts of nonzero words up to date.
+	 *
+	 * @param i		the index of the word
+	 * @param word	the new word
+	 */
+	private void put (int i, long word)
+	{
+		int change = (word != 0 ? 1 : 0) - (shadow[i] != 0 ? 1 : 0);
+		shadow[i] = word;
+		nonzero += change;
+		tileWords[i / stride / BitGrid.TILE_ROWS * stride + i % stride] += change;
+	}
+
+	/** Goes to the given entry, and writes the rows that differ
+	 * from the current entry into the grid.
+	 *
+	 * @param grid		the grid to write the cells into
+	 * @param target	the index of the entry
+	 * @return the generation of the entry
+	 */
+	private long seek (BitGrid grid, int target)
+	{
+		boolean[] dirty = new boolean [height];
+
+		// Deltas can be applied either way; otherwise start from a keyframe
+
+		int from = Math.min (current, target);
+		int to = Math.max (current, target);
+		boolean direct = true;
+		for (int i = from + 1; i <= to; i++)
+			direct &= !entries.get (i).key;
+
+		if (direct)
+		{
+			for (int i = from + 1; i <= to; i++)
+				apply (entries.get (i), dirty);
+		}
+		else
+		{
+			int key = target;
+			while (!entries.get (key).key)
+				key--;
+
+			long[] old = shadow.clone ();
+			Entry frame = entries.get (key);
+			Arrays.fill (shadow, 0);
+			if (frame.indices == null)
+				System.arraycopy (frame.values, 0, shadow, 0, shadow.length);
+			else
+				for (int i = 0; i < frame.indices.length; i++)
+					shadow[frame.indices[i]] = frame.values[i];
+
+			for (int i = key + 1; i <= target; i++)
+				apply (entries.get (i), null);
+
+			count ();
+
+			for (int r = 0; r < height; r++)
+				for (int w = r * stride; w < (r + 1) * stride && !dirty[r]; w++)
+					dirty[r] = old[w] != shadow[w];
+		}
+
+		for (int r = 0; r < height; r++)
+			if (dirty[r])
+			{
+				System.arraycopy (shadow, r * stride, row, 0, stride);
+				grid.blendRow (r, row, null);
+			}
+
+		current = target;
+		return entries.get (target).iteration;
+	}
+
+	/** XORs a delta into the last state recorded.
+	 *
+	 * @param delta		the delta to apply
+	 * @param dirty		the flags of the rows to set for changed words, or null
+	 */
+	private void apply (Entry delta, boolean[] dirty)
+	{
+		for (int i = 0; i < delta.indices.length; i++)
+		{
+			put (delta.indices[i], shadow[delta.indices[i]] ^ delta.values[i]);
+			if (dirty != null)
+				dirty[delta.indices[i] / stride] = true;
+		}
+	}
+
+	/** A keyframe or a delta, with the generation it was recorded at.
+	 */
+	private static class Entry
+	{
+		final long iteration;
+		final boolean key;
+		final int[] indices;
+		final long[] values;
+
+		/** Creates an entry.
+		 *
+		 * @param iteration	the generation of the entry
+		 * @param key		true for a keyframe; false for a delta
+		 * @param indices	the indices of the words, or null if every word is kept
+		 * @param values	the words, or for a delta the XOR of the words
+		 */
+		Entry (long iteration, boolean key, int[] indices, long[] values)
+		{
+			this.iteration = iteration;
+			this.key = key;
+			this.indices = indices;
+			this.values = values;
+		}
+
+		/** Works out roughly how much memory this entry takes.
+		 *
+		 * @return the size, in bytes
+		 */
+		long bytes ()
+		{
+			return OVERHEAD + 8L * values.length + (indices == null ? 0 : 4L * indices.length);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** The word-wide step of BitGrid, done on a whole SIMD register
+ * of words at once with the incubating Vector API.
+ *
+ * This class needs the jdk.incubator.vector module, which has to be
+ * added both when compiling and when running:
+ * <pre>
+ * javac --add-modules jdk.incubator.vector ...
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ * Without it at run time, BitGrid.VECTOR_API is false and this class
+ * is never loaded.
+ */
+final class VectorKernel
+{
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	/** Not instantiable.
+	 */
+	private VectorKernel ()
+	{
+	}
+
+	/** Computes the next generation of a single row of packed cells,
+	 * in the same way as BitGrid.stepRow. The interior of the range is
+	 * done one vector of words at a time; the first word of the row, the
+	 * last word and any leftover words are done by the scalar kernel.
+	 *
+	 * @param up		the words of the row above
+	 * @param upOff		the index of the first word of the row above
+	 * @param mid		the words of the row itself
+	 * @param midOff	the index of the first word of the row itself
+	 * @param down		the words of the row below
+	 * @param downOff	the index of the first word of the row below
+	 * @param out		the array in which to store the next generation
+	 * @param outOff	the index at which to store the first word
+	 * @param words		the number of words in each row
+	 * @param lastMask	the mask of valid bits in the last word
+	 * @param rule		the rule to apply
+	 * @param active	the tiles to recompute, or null to recompute all of them
+	 * @param changed	the tile flags to set for changed words, or null
+	 * @param tileOff	the index of the tile holding the first word of the row
+	 * @param from		the first word to compute, inclusive
+	 * @param to		the last word to compute, exclusive
+	 */
+	static void stepRow (long[] up, int upOff, long[] mid, int midOff, long[] down, int downOff,
+			long[] out, int outOff, int words, long lastMask, Rule rule,
+			boolean[] active, boolean[] changed, int tileOff, int from, int to)
+	{
+		int lanes = SPECIES.length ();
+		int birth = rule.getBirth ();
+		int survival = rule.getSurvival ();
+		boolean life = rule.isLife ();
+
+		// Words 1 to (words - 2) have both of their neighbours in the row,
+		// so they can be loaded as vectors shifted by one word either way
+
+		int start = Math.max (from, 1);
+		int w = start;
+		for (; w + lanes < words && w + lanes <= to; w += lanes)
+		{
+			if (active != null && !anyActive (active, tileOff + w, lanes))
+				continue;
+
+			LongVector c = LongVector.fromArray (SPECIES, mid, midOff + w);
+			LongVector next = evolve (life, birth, survival,
+					LongVector.fromArray (SPECIES, up, upOff + w - 1),
+					LongVector.fromArray (SPECIES, up, upOff + w),
+					LongVector.fromArray (SPECIES, up, upOff + w + 1),
+					LongVector.fromArray (SPECIES, mid, midOff + w - 1),
+					c,
+					LongVector.fromArray (SPECIES, mid, midOff + w + 1),
+					LongVector.fromArray (SPECIES, down, downOff + w - 1),
+					LongVector.fromArray (SPECIES, down, downOff + w),
+					LongVector.fromArray (SPECIES, down, downOff + w + 1));
+
+			next.intoArray (out, outOff + w);
+
+			// The words are compared back in the arrays, since a mask
+			// from comparing the vectors is not always optimised away
+
+			if (changed != null)
+				for (int i = w; i < w + lanes; i++)
+					if (out[outOff + i] != mid[midOff + i])
+						changed[tileOff + i] = true;
+		}
+
+		BitGrid.stepRow (up, upOff, mid, midOff, down, downOff, out, outOff, words, lastMask, rule,
+				active, changed, tileOff, from, Math.min (start, to));
+		BitGrid.stepRow (up, upOff, mid, midOff, down, downOff, out, outOff, words, lastMask, rule,
+				active, changed, tileOff, w, to);
+	}
+
+	/** Determines whether any of a run of tiles is active.
+	 *
+	 * @param active	the active flags of the tiles
+	 * @param from		the index of the first tile
+	 * @param count		the number of tiles
+	 * @return true if at least one of the tiles is active; false otherwise
+	 */
+	private static boolean anyActive (boolean[] active, int from, int count)
+	{
+		for (int i = from; i < from + count; i++)
+			if (active[i])
+				return true;
+		return false;
+	}
+
+	/** Computes the next generation of a vector of words, with the
+	 * same result as BitGrid.evolve and Rule.apply give for a single
+	 * word. The cells are counted a little differently, though: each
+	 * column of three cells is added up first, and then the three
+	 * columns around every cell, which counts the cell itself as well.
+	 * That takes fewer operations, and keeps the whole kernel small
+	 * enough for the JIT compiler to inline, without which every
+	 * vector in it would be allocated on the heap.
+	 *
+	 * @param life		true if the rule is B3/S23
+	 * @param birth		the counts with which a dead cell is born
+	 * @param survival	the counts with which a live cell survives
+	 * @param uw	the words above and to the left
+	 * @param u		the words above
+	 * @param ue	the words above and to the right
+	 * @param cw	the words to the left
+	 * @param c		the words holding the cells
+	 * @param ce	the words to the right
+	 * @param dw	the words below and to the left
+	 * @param d		the words below
+	 * @param de	the words below and to the right
+	 * @return the next generation of the cells in c
+	 */
+	private static LongVector evolve (boolean life, int birth, int survival, LongVector uw, LongVector u, LongVector ue,
+			LongVector cw, LongVector c, LongVector ce,
+			LongVector dw, LongVector d, LongVector de)
+	{
+		// Add up the columns of three cells in each word, as a sum
+		// bit and a carry bit
+
+		LongVector xw = uw.lanewise (VectorOperators.XOR, cw);
+		LongVector sw = xw.lanewise (VectorOperators.XOR, dw);
+		LongVector kw = carry (uw, dw, xw);
+		LongVector x = u.lanewise (VectorOperators.XOR, c);
+		LongVector s = x.lanewise (VectorOperators.XOR, d);
+		LongVector k = carry (u, d, x);
+		LongVector xe = ue.lanewise (VectorOperators.XOR, ce);
+		LongVector se = xe.lanewise (VectorOperators.XOR, de);
+		LongVector ke = carry (ue, de, xe);
+
+		// Add the column to the left, the column itself and the column
+		// to the right of every cell
+
+		LongVector s0 = west (s, sw);
+		LongVector s2 = east (s, se);
+		LongVector k0 = west (k, kw);
+		LongVector k2 = east (k, ke);
+
+		LongVector xs = s0.lanewise (VectorOperators.XOR, s);
+		LongVector ones = xs.lanewise (VectorOperators.XOR, s2);
+		LongVector k1 = carry (s0, s2, xs);
+
+		LongVector xk = k0.lanewise (VectorOperators.XOR, k);
+		LongVector t = xk.lanewise (VectorOperators.XOR, k2);
+		LongVector k3 = carry (k0, k2, xk);
+		LongVector twos = t.lanewise (VectorOperators.XOR, k1);
+		LongVector k4 = t.and (k1);
+
+		LongVector fours = k3.lanewise (VectorOperators.XOR, k4);
+		LongVector eights = k3.and (k4);
+
+		// With the cell itself counted, a live cell survives with a
+		// total of 3 or 4, and a dead one is born with a total of 3
+
+		if (life)
+			return ones.and (twos).and (fours.not ()).or (c.and (fours).and (ones.or (twos).not ()));
+		return apply (birth, survival << 1, c, ones, twos, fours, eights);
+	}
+
+	/** Applies a rule other than B3/S23 to a vector of words, given
+	 * the total of each cell and its neighbours as four bit planes.
+	 * It is kept apart from evolve so that neither is too large to
+	 * be inlined.
+	 *
+	 * @param birth		the totals with which a dead cell is born
+	 * @param survival	the totals with which a live cell survives
+	 * @param c			the words holding the cells
+	 * @param ones		the bits of weight 1 of the totals
+	 * @param twos		the bits of weight 2 of the totals
+	 * @param fours		the bits of weight 4 of the totals
+	 * @param eights	the bits of weight 8 of the totals
+	 * @return the next generation of the cells in c
+	 */
+	private static LongVector apply (int birth, int survival, LongVector c,
+			LongVector ones, LongVector twos, LongVector fours, LongVector eights)
+	{
+		// Each total in either set is picked out by matching the bit
+		// planes against its bits, then taken as born for dead cells
+		// and kept for live ones. A loop keeps this short to compile.
+
+		LongVector next = LongVector.zero (SPECIES);
+
+		for (int total = 0; total <= 9; total++)
+		{
+			long born = -(birth >>> total & 1);
+			long kept = -(survival >>> total & 1);
+			if ((born | kept) == 0)
+				continue;
+
+			LongVector match = ones.lanewise (VectorOperators.XOR, (total & 1) - 1)
+					.and (twos.lanewise (VectorOperators.XOR, (total >>> 1 & 1) - 1))
+					.and (fours.lanewise (VectorOperators.XOR, (total >>> 2 & 1) - 1))
+					.and (eights.lanewise (VectorOperators.XOR, (total >>> 3 & 1) - 1));
+			next = next.or (match.and (c.and (born ^ kept).lanewise (VectorOperators.XOR, born)));
+		}
+		return next;
+	}
+
+	/** Computes the carry of a full adder, given the exclusive or
+	 * of two of its inputs, which the sum needs as well: where those
+	 * two differ, the carry is the third input, and where they are
+	 * the same, it is either one of them.
+	 *
+	 * @param x		the first input
+	 * @param z		the third input
+	 * @param xy	the first input exclusive or the second one
+	 * @return the bits where at least two of the inputs are set
+	 */
+	private static LongVector carry (LongVector x, LongVector z, LongVector xy)
+	{
+		return x.lanewise (VectorOperators.BITWISE_BLEND, z, xy);
+	}
+
+	/** Lines up the left-hand neighbour of each cell.
+	 *
+	 * @param x		the words holding the cells
+	 * @param w		the words to the left
+	 * @return the neighbours
+	 */
+	private static LongVector west (LongVector x, LongVector w)
+	{
+		return x.lanewise (VectorOperators.LSHL, 1).or (w.lanewise (VectorOperators.LSHR, 63));
+	}
+
+	/** Lines up the right-hand neighbour of each cell.
+	 *
+	 * @param x		the words holding the cells
+	 * @param e		the words to the right
+	 * @return the neighbours
+	 */
+	private static LongVector east (LongVector x, LongVector e)
+	{
+		return x.lanewise (VectorOperators.LSHR, 1).or (e.lanewise (VectorOperators.LSHL, 63));
+	}
+}
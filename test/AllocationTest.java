@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks that advancing a colony allocates no memory once it has
+ * warmed up, by reading the bytes allocated by the current thread
+ * before and after a run of generations.
+ *
+ * The colonies are random soups on packed grids with the BITBOARD
+ * engine, kept on or off the heap, since grids off the heap are
+ * stepped through buffers of their own. They are stepped on a
+ * single thread and without a timeline, which
+ * keeps a copy of every generation by design. The soups are large
+ * enough not to settle into a cycle during the test, since finding
+ * one takes a copy of the cells.
+ */
+public class AllocationTest
+{
+	private static final int SIZE = 1024;
+	private static final int STEPS = 100;
+	private static final int WARMUP = 5;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean ();
+
+	@Test
+	public void lifeWithDeadEdges ()
+	{
+		check (Rule.LIFE, Colony.Boundary.DEAD, Colony.Storage.HEAP);
+	}
+
+	@Test
+	public void lifeOnTorus ()
+	{
+		check (Rule.LIFE, Colony.Boundary.TORUS, Colony.Storage.HEAP);
+	}
+
+	@Test
+	public void highLifeOnTorus ()
+	{
+		check (Rule.HIGHLIFE, Colony.Boundary.TORUS, Colony.Storage.HEAP);
+	}
+
+	@Test
+	public void lifeWithDeadEdgesOffHeap ()
+	{
+		check (Rule.LIFE, Colony.Boundary.DEAD, Colony.Storage.OFF_HEAP);
+	}
+
+	@Test
+	public void lifeOnTorusOffHeap ()
+	{
+		check (Rule.LIFE, Colony.Boundary.TORUS, Colony.Storage.OFF_HEAP);
+	}
+
+	/** Advances a soup for a few runs to warm it up, and then checks
+	 * that one more run allocates nothing.
+	 *
+	 * @param rule		the rule to apply
+	 * @param boundary	the edges of the colony
+	 * @param storage	where the cells of the colony are kept
+	 */
+	private static void check (Rule rule, Colony.Boundary boundary, Colony.Storage storage)
+	{
+		Colony colony = new Colony (SIZE, SIZE, storage);
+		colony.setTimelineBudget (0);
+		colony.setRule (rule);
+		colony.setBoundary (boundary);
+		colony.populate (0.3);
+
+		for (int run = 0; run < WARMUP; run++)
+			allocated (colony);
+
+		assertEquals (0, allocated (colony), "bytes allocated by " + STEPS + " generations");
+		assertEquals (0, colony.getPeriod (), "period");
+	}
+
+	/** Advances a colony one generation at a time, and measures the
+	 * memory allocated meanwhile.
+	 *
+	 * @param colony	the colony to advance
+	 * @return the number of bytes allocated
+	 */
+	private static long allocated (Colony colony)
+	{
+		long thread = Thread.currentThread ().getId ();
+		long before = THREADS.getThreadAllocatedBytes (thread);
+
+		for (int i = 0; i < STEPS; i++)
+			colony.advance ();
+
+		return THREADS.getThreadAllocatedBytes (thread) - before;
+	}
+}